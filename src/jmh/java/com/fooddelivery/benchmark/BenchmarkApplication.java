@@ -0,0 +1,36 @@
+package com.fooddelivery.benchmark;
+
+import com.fooddelivery.FoodDeliveryApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+// Поднимает приложение без веб-сервера на отдельной in-memory БД для бенчмарков
+public final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    public static ConfigurableApplicationContext start(Map<String, Object> overrides) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("spring.datasource.url", "jdbc:h2:mem:bench-" + UUID.randomUUID());
+        properties.put("spring.jpa.show-sql", "false");
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.AUDIT", "OFF");
+        properties.put("user.availability.expected-insertions", "100000");
+        properties.putAll(overrides);
+
+        // Передаем как аргументы командной строки: они перекрывают application.properties
+        String[] args = properties.entrySet().stream()
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(FoodDeliveryApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args);
+    }
+}
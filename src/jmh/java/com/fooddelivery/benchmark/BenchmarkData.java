@@ -0,0 +1,93 @@
+package com.fooddelivery.benchmark;
+
+import com.fooddelivery.model.Role;
+import com.fooddelivery.model.User;
+import com.fooddelivery.repository.UserRepository;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Детерминированные наборы пользователей для бенчмарков
+public final class BenchmarkData {
+
+    public static final String PASSWORD = "courier-password-123";
+
+    // Один хеш на весь набор, чтобы подготовка данных не упиралась в BCrypt
+    public static final String PASSWORD_HASH = new BCryptPasswordEncoder(4).encode(PASSWORD);
+
+    // Доли ролей: CUSTOMER, RESTAURANT_MANAGER, COURIER, ADMIN
+    public enum RoleMix {
+        CUSTOMERS(0.97, 0.01, 0.02),
+        BALANCED(0.40, 0.20, 0.39),
+        COURIERS(0.10, 0.05, 0.85);
+
+        private final double customers;
+        private final double managers;
+        private final double couriers;
+
+        RoleMix(double customers, double managers, double couriers) {
+            this.customers = customers;
+            this.managers = managers;
+            this.couriers = couriers;
+        }
+
+        public Role pick(SplittableRandom random) {
+            double value = random.nextDouble();
+            if (value < customers) {
+                return Role.CUSTOMER;
+            }
+            if (value < customers + managers) {
+                return Role.RESTAURANT_MANAGER;
+            }
+            if (value < customers + managers + couriers) {
+                return Role.COURIER;
+            }
+            return Role.ADMIN;
+        }
+    }
+
+    private static final int SEED_CHUNK = 5000;
+
+    private BenchmarkData() {
+    }
+
+    // Сохраняет набор в БД частями и возвращает id в порядке вставки
+    public static long[] seed(UserRepository userRepository, int size, RoleMix roleMix) {
+        List<User> users = newUsers(size, roleMix, "seed");
+        long[] ids = new long[size];
+        for (int from = 0; from < size; from += SEED_CHUNK) {
+            List<User> saved = userRepository.saveAll(users.subList(from, Math.min(from + SEED_CHUNK, size)));
+            for (int i = 0; i < saved.size(); i++) {
+                ids[from + i] = saved.get(i).getId();
+            }
+        }
+        return ids;
+    }
+
+    // Сущности без id, готовые к сохранению
+    public static List<User> newUsers(int size, RoleMix roleMix, String prefix) {
+        SplittableRandom random = new SplittableRandom(42);
+        List<User> users = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            User user = new User(prefix + i, prefix + i + "@bench.local", PASSWORD_HASH,
+                    random.nextInt(4) == 0 ? null : "+7900" + (1000000 + random.nextInt(9000000)));
+            user.setRole(roleMix.pick(random));
+            users.add(user);
+        }
+        return users;
+    }
+
+    // Сущности в том виде, в каком их возвращает Hibernate: с id и updatedAt
+    public static List<User> loadedUsers(int size, RoleMix roleMix) {
+        List<User> users = newUsers(size, roleMix, "user");
+        LocalDateTime updatedAt = LocalDateTime.of(2024, 1, 1, 12, 0);
+        for (int i = 0; i < users.size(); i++) {
+            users.get(i).setId((long) i + 1);
+            users.get(i).setUpdatedAt(i % 3 == 0 ? updatedAt : null);
+        }
+        return users;
+    }
+}
@@ -0,0 +1,69 @@
+package com.fooddelivery.benchmark;
+
+import com.fooddelivery.dto.UserRequest;
+import com.fooddelivery.dto.UserResponse;
+import com.fooddelivery.model.Role;
+import com.fooddelivery.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Полная регистрация (UserService.registerUser на H2) при 4 параллельных клиентах.
+// SampleTime дает распределение, p0.99 в отчете JMH - это p99 задержки регистрации.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Threads(4)
+@Fork(1)
+public class RegistrationLatencyBenchmark {
+
+    @Param({"4", "8", "10", "12"})
+    private int strength;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start(Map.of(
+                "user.password.bcrypt-strength", String.valueOf(strength),
+                "user.password.hashing-queue-capacity", "1024",
+                "user.password.hashing-timeout", "60s"));
+        userService = context.getBean(UserService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public UserResponse registerUser() {
+        long n = sequence.incrementAndGet();
+        UserRequest request = new UserRequest();
+        request.setUsername("courier" + n);
+        request.setEmail("courier" + n + "@bench.local");
+        request.setPassword(BenchmarkData.PASSWORD);
+        request.setRole(Role.COURIER);
+        return userService.registerUser(request);
+    }
+}
@@ -0,0 +1,55 @@
+package com.fooddelivery.benchmark;
+
+import com.fooddelivery.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+// Стоимость создания User. Hibernate при чтении из БД вызывает конструктор без аргументов,
+// и LocalDateTime.now() в нем выполняется впустую: createdAt тут же перезаписывается значением из строки.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class UserConstructionBenchmark {
+
+    private final LocalDateTime createdAt = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    @Benchmark
+    public LocalDateTime clock() {
+        return LocalDateTime.now();
+    }
+
+    @Benchmark
+    public User noArgs() {
+        return new User();
+    }
+
+    // То, что делает Hibernate при гидратации строки
+    @Benchmark
+    public User hydrate() {
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("courier1");
+        user.setEmail("courier1@bench.local");
+        user.setPassword(BenchmarkData.PASSWORD_HASH);
+        user.setCreatedAt(createdAt);
+        return user;
+    }
+
+    @Benchmark
+    public User register() {
+        return new User("courier1", "courier1@bench.local", BenchmarkData.PASSWORD_HASH, "+79001234567");
+    }
+}
@@ -0,0 +1,66 @@
+package com.fooddelivery.benchmark;
+
+import com.fooddelivery.dto.UserResponse;
+import com.fooddelivery.index.UserSearchIndex;
+import com.fooddelivery.model.Role;
+import com.fooddelivery.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Поиск по индексу без БД: префикс username, подстрока телефона, частая подстрока email
+// (есть у всех пользователей набора) и запрос без совпадений.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class UserSearchBenchmark {
+
+    @Param({"10000", "100000"})
+    private int datasetSize;
+
+    @Param({"user123", "4567", "bench", "zzz"})
+    private String query;
+
+    private UserSearchIndex index;
+
+    @Setup(Level.Trial)
+    public void buildIndex() {
+        index = new UserSearchIndex();
+        for (User user : BenchmarkData.loadedUsers(datasetSize, BenchmarkData.RoleMix.BALANCED)) {
+            UserResponse response = new UserResponse();
+            response.setId(user.getId());
+            response.setUsername(user.getUsername());
+            response.setEmail(user.getEmail());
+            response.setPhone(user.getPhone());
+            response.setRole(user.getRole());
+            index.put(response);
+        }
+        System.out.printf("%nindex: %d users, %d terms, %.1f MB%n",
+                index.size(), index.termCount(), index.memoryBytes() / 1024.0 / 1024.0);
+    }
+
+    @Benchmark
+    public List<Long> search() {
+        return index.search(query, null, 20);
+    }
+
+    @Benchmark
+    public List<Long> searchCouriers() {
+        return index.search(query, Role.COURIER, 20);
+    }
+}
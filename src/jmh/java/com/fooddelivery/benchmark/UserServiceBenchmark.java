@@ -0,0 +1,101 @@
+package com.fooddelivery.benchmark;
+
+import com.fooddelivery.cache.UserCache;
+import com.fooddelivery.dto.UserPageResponse;
+import com.fooddelivery.dto.UserRequest;
+import com.fooddelivery.dto.UserResponse;
+import com.fooddelivery.model.Role;
+import com.fooddelivery.repository.UserRepository;
+import com.fooddelivery.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Горячие пути UserService целиком: Spring, Hibernate и H2 в памяти.
+// BCrypt с cost 4, чтобы в registerUser было видно все остальное, кроме хеширования.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class UserServiceBenchmark {
+
+    @Param({"1000", "50000"})
+    private int datasetSize;
+
+    @Param({"CUSTOMERS", "BALANCED"})
+    private BenchmarkData.RoleMix roleMix;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+    private UserCache userCache;
+    private long[] ids;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start(Map.of(
+                "user.password.bcrypt-strength", "4",
+                "user.password.hashing-queue-capacity", "1024"));
+        userService = context.getBean(UserService.class);
+        userCache = context.getBean(UserCache.class);
+
+        ids = BenchmarkData.seed(context.getBean(UserRepository.class), datasetSize, roleMix);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public UserResponse getUserByIdCached() {
+        return userService.getUserById(randomId());
+    }
+
+    // Промах кэша: SELECT по первичному ключу и преобразование в ответ
+    @Benchmark
+    public UserResponse getUserByIdUncached() {
+        long id = randomId();
+        userCache.invalidate(id);
+        return userService.getUserById(id);
+    }
+
+    // Доля курьеров в наборе определяет, сколько строк индекса (role, id) просматривается на страницу
+    @Benchmark
+    public UserPageResponse getCouriersPage() {
+        return userService.getUsersPage(Role.COURIER, null, 50);
+    }
+
+    @Benchmark
+    public UserResponse registerUser() {
+        long n = sequence.incrementAndGet();
+        UserRequest request = new UserRequest();
+        request.setUsername("courier" + n);
+        request.setEmail("courier" + n + "@bench.local");
+        request.setPassword(BenchmarkData.PASSWORD);
+        request.setRole(Role.COURIER);
+        return userService.registerUser(request);
+    }
+
+    private long randomId() {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+}
@@ -0,0 +1,72 @@
+package com.fooddelivery.service;
+
+import com.fooddelivery.benchmark.BenchmarkApplication;
+import com.fooddelivery.benchmark.BenchmarkData;
+import com.fooddelivery.dto.UserResponse;
+import com.fooddelivery.model.Role;
+import com.fooddelivery.repository.UserRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// GET /users?role=CUSTOMER: сущности + convertToResponse против проекции сразу в UserResponse.
+// Аллокации видны с -prof gc (gc.alloc.rate.norm).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgs = "-Xmx1g")
+public class RoleListBenchmark {
+
+    @Param({"10000", "50000"})
+    private int datasetSize;
+
+    @Param({"CUSTOMERS", "BALANCED"})
+    private BenchmarkData.RoleMix roleMix;
+
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+    private UserRepository userRepository;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start(Map.of());
+        userService = context.getBean(UserService.class);
+        userRepository = context.getBean(UserRepository.class);
+        BenchmarkData.seed(userRepository, datasetSize, roleMix);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    // Прежний путь getUsersByRole
+    @Benchmark
+    public List<UserResponse> entities() {
+        return userRepository.findByRole(Role.CUSTOMER).stream()
+                .map(userService::convertToResponse)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<UserResponse> projection() {
+        return userService.getUsersByRole(Role.CUSTOMER);
+    }
+}
@@ -0,0 +1,81 @@
+package com.fooddelivery.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fooddelivery.benchmark.BenchmarkData;
+import com.fooddelivery.dto.UserResponse;
+import com.fooddelivery.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// Преобразование User -> UserResponse и сериализация ответа Jackson.
+// Лежит в пакете service, потому что convertToResponse доступен только внутри пакета.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class UserResponseBenchmark {
+
+    @Param({"1", "100", "1000"})
+    private int size;
+
+    @Param({"CUSTOMERS", "BALANCED"})
+    private BenchmarkData.RoleMix roleMix;
+
+    private final UserService userService = new UserService();
+
+    // Те же настройки, что у ObjectMapper Spring Boot
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    private List<User> users;
+    private UserResponse response;
+    private List<UserResponse> responses;
+
+    @Setup
+    public void setUp() {
+        users = BenchmarkData.loadedUsers(size, roleMix);
+        responses = convertList();
+        response = responses.get(0);
+    }
+
+    @Benchmark
+    public UserResponse convertOne() {
+        return userService.convertToResponse(users.get(0));
+    }
+
+    @Benchmark
+    public List<UserResponse> convertList() {
+        return users.stream()
+                .map(userService::convertToResponse)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public byte[] serializeOne() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] serializeList() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(responses);
+    }
+}
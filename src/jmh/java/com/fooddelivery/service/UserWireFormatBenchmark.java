@@ -0,0 +1,103 @@
+package com.fooddelivery.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fooddelivery.benchmark.BenchmarkData;
+import com.fooddelivery.config.ContentNegotiationConfiguration;
+import com.fooddelivery.dto.UserResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Список GET /users?role=COURIER в JSON, Smile и CBOR: время сериализации и чтения,
+// с gzip и без. Размеры тел печатаются при старте каждого набора параметров
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class UserWireFormatBenchmark {
+
+    public enum Format {
+        JSON, SMILE, CBOR
+    }
+
+    private static final TypeReference<List<UserResponse>> LIST = new TypeReference<>() {
+    };
+
+    @Param({"100", "1000"})
+    private int size;
+
+    @Param({"JSON", "SMILE", "CBOR"})
+    private Format format;
+
+    @Param({"false", "true"})
+    private boolean gzip;
+
+    private ObjectMapper objectMapper;
+    private List<UserResponse> responses;
+    private byte[] body;
+
+    @Setup
+    public void setUp() throws IOException {
+        // Те же настройки, что у ObjectMapper Spring Boot и конвертеров ContentNegotiationConfiguration
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        if (format == Format.SMILE) {
+            builder.factory(ContentNegotiationConfiguration.smileFactory());
+        } else if (format == Format.CBOR) {
+            builder.factory(ContentNegotiationConfiguration.cborFactory());
+        }
+        objectMapper = builder.build();
+
+        UserService userService = new UserService();
+        responses = BenchmarkData.loadedUsers(size, BenchmarkData.RoleMix.COURIERS).stream()
+                .map(userService::convertToResponse)
+                .collect(Collectors.toList());
+        body = serialize();
+        System.out.printf("%n%s, size=%d, gzip=%b: %d bytes%n", format, size, gzip, body.length);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(responses);
+        if (!gzip) {
+            return bytes;
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+            out.write(bytes);
+        }
+        return buffer.toByteArray();
+    }
+
+    @Benchmark
+    public List<UserResponse> deserialize() throws IOException {
+        if (!gzip) {
+            return objectMapper.readValue(body, LIST);
+        }
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return objectMapper.readValue(in, LIST);
+        }
+    }
+}
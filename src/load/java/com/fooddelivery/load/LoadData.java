@@ -0,0 +1,79 @@
+package com.fooddelivery.load;
+
+import com.fooddelivery.index.UserAvailabilityIndex;
+import com.fooddelivery.index.UserSearchIndex;
+import com.fooddelivery.model.Role;
+import com.fooddelivery.model.User;
+import com.fooddelivery.repository.UserRepository;
+import org.springframework.context.ApplicationContext;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Синтетический набор пользователей. Те же доли ролей, что и в BenchmarkData из src/jmh
+final class LoadData {
+
+    // Доли ролей: CUSTOMER, RESTAURANT_MANAGER, COURIER, остальное - ADMIN
+    enum RoleMix {
+        CUSTOMERS(0.97, 0.01, 0.02),
+        BALANCED(0.40, 0.20, 0.39),
+        COURIERS(0.10, 0.05, 0.85);
+
+        private final double customers;
+        private final double managers;
+        private final double couriers;
+
+        RoleMix(double customers, double managers, double couriers) {
+            this.customers = customers;
+            this.managers = managers;
+            this.couriers = couriers;
+        }
+
+        Role pick(SplittableRandom random) {
+            double value = random.nextDouble();
+            if (value < customers) {
+                return Role.CUSTOMER;
+            }
+            if (value < customers + managers) {
+                return Role.RESTAURANT_MANAGER;
+            }
+            if (value < customers + managers + couriers) {
+                return Role.COURIER;
+            }
+            return Role.ADMIN;
+        }
+    }
+
+    private static final int CHUNK = 5000;
+
+    private LoadData() {
+    }
+
+    // Сохраняет набор частями, затем перестраивает индексы, построенные при старте на пустой таблице.
+    // Возвращает id сохраненных пользователей
+    static long[] seed(ApplicationContext context, int size, RoleMix roleMix) {
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        // Один хеш на весь набор, чтобы подготовка не упиралась в BCrypt
+        String passwordHash = new BCryptPasswordEncoder(4).encode("load-password-123");
+        SplittableRandom random = new SplittableRandom(42);
+        long[] ids = new long[size];
+        for (int from = 0; from < size; from += CHUNK) {
+            List<User> chunk = new ArrayList<>(CHUNK);
+            for (int i = from; i < Math.min(from + CHUNK, size); i++) {
+                User user = new User("seed" + i, "seed" + i + "@load.local", passwordHash,
+                        random.nextInt(4) == 0 ? null : "+7900" + (1000000 + random.nextInt(9000000)));
+                user.setRole(roleMix.pick(random));
+                chunk.add(user);
+            }
+            List<User> saved = userRepository.saveAll(chunk);
+            for (int i = 0; i < saved.size(); i++) {
+                ids[from + i] = saved.get(i).getId();
+            }
+        }
+        context.getBean(UserAvailabilityIndex.class).rebuild();
+        context.getBean(UserSearchIndex.class).rebuild();
+        return ids;
+    }
+}
@@ -0,0 +1,73 @@
+package com.fooddelivery.load;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+// Параметры прогона: --users=10000 --role-mix=BALANCED --rate=200 --duration=60s --warmup=30s
+// --mix=get:70,list:10,register:5,update:15 --stack=servlet. Остальные аргументы --key=value передаются приложению
+final class LoadOptions {
+
+    // servlet - FoodDeliveryApplication, reactive - ReactiveUserApplication (нужен профиль Maven reactive)
+    enum Stack { SERVLET, REACTIVE }
+
+    int users = 10_000;
+    LoadData.RoleMix roleMix = LoadData.RoleMix.BALANCED;
+    double rate = 200;
+    Duration duration = Duration.ofSeconds(60);
+    Duration warmup = Duration.ofSeconds(30);
+    Map<Operation, Integer> mix = parseMix("get:70,list:10,register:5,update:15");
+    // Сколько запросов может ждать ответа; сверх этого запрос не отправляется и считается ошибкой
+    int maxInFlight = 2000;
+    Path output = Path.of("target", "load");
+    Stack stack = Stack.SERVLET;
+    final List<String> applicationArgs = new ArrayList<>();
+
+    static LoadOptions parse(String[] args) {
+        LoadOptions options = new LoadOptions();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --key=value, got " + arg);
+            }
+            String key = arg.substring(2, eq);
+            String value = arg.substring(eq + 1);
+            switch (key) {
+                case "users" -> options.users = Integer.parseInt(value);
+                case "role-mix" -> options.roleMix = LoadData.RoleMix.valueOf(value);
+                case "rate" -> options.rate = Double.parseDouble(value);
+                case "duration" -> options.duration = DurationStyle.detectAndParse(value);
+                case "warmup" -> options.warmup = DurationStyle.detectAndParse(value);
+                case "mix" -> options.mix = parseMix(value);
+                case "max-in-flight" -> options.maxInFlight = Integer.parseInt(value);
+                case "output" -> options.output = Path.of(value);
+                case "stack" -> options.stack = Stack.valueOf(value.toUpperCase());
+                default -> options.applicationArgs.add(arg);
+            }
+        }
+        if (options.users < 1 || options.rate <= 0) {
+            throw new IllegalArgumentException("users and rate must be positive");
+        }
+        return options;
+    }
+
+    private static Map<Operation, Integer> parseMix(String value) {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (String part : value.split(",")) {
+            String[] weight = part.trim().split(":");
+            if (weight.length != 2) {
+                throw new IllegalArgumentException("Expected operation:weight in mix, got " + part);
+            }
+            mix.put(Operation.valueOf(weight[0].trim().toUpperCase()), Integer.parseInt(weight[1].trim()));
+        }
+        if (mix.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+            throw new IllegalArgumentException("Mix weights must add up to a positive number");
+        }
+        return mix;
+    }
+}
@@ -0,0 +1,147 @@
+package com.fooddelivery.load;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Задержки по операциям. latency считается от запланированного момента отправки (с учетом очереди
+// генератора, без coordinated omission), service - от фактической отправки запроса.
+// Раз в секунду интервальные гистограммы пишутся в latency.hlog и добавляются к итоговым
+final class LoadStats {
+
+    private static final double NANOS_PER_MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Map<Operation, OperationStats> operations = new EnumMap<>(Operation.class);
+    private final HistogramLogWriter log;
+    private final PrintStream logStream;
+    private long measureFrom;
+    private long measuredNanos;
+
+    LoadStats(Path directory) throws IOException {
+        for (Operation operation : Operation.values()) {
+            operations.put(operation, new OperationStats());
+        }
+        logStream = new PrintStream(Files.newOutputStream(directory.resolve("latency.hlog")));
+        log = new HistogramLogWriter(logStream);
+        log.outputLogFormatVersion();
+        log.outputLegend();
+    }
+
+    void completed(Operation operation, long intended, long sent, int status) {
+        long now = System.nanoTime();
+        OperationStats stats = operations.get(operation);
+        stats.latency.recordValue(now - intended);
+        stats.service.recordValue(now - sent);
+        if (status >= 400) {
+            stats.errors.increment();
+        }
+    }
+
+    // Ответа нет: ошибка соединения, таймаут или запрос, не отправленный из-за max-in-flight
+    void failed(Operation operation) {
+        operations.get(operation).failed.increment();
+    }
+
+    // Начало измеряемой части: все, что записано до этого (прогрев), отбрасывается
+    synchronized void startMeasurement(long now) {
+        for (OperationStats stats : operations.values()) {
+            stats.latency.reset();
+            stats.service.reset();
+            stats.errors.reset();
+            stats.failed.reset();
+        }
+        measureFrom = now;
+        log.setBaseTime(System.currentTimeMillis());
+    }
+
+    // Снимает интервальные гистограммы и возвращает строку прогресса
+    synchronized String interval(long now, int inFlight) {
+        Histogram all = new Histogram(3);
+        long count = 0;
+        for (Map.Entry<Operation, OperationStats> entry : operations.entrySet()) {
+            OperationStats stats = entry.getValue();
+            Histogram latency = stats.latency.getIntervalHistogram();
+            Histogram service = stats.service.getIntervalHistogram();
+            stats.totalLatency.add(latency);
+            stats.totalService.add(service);
+            if (latency.getTotalCount() > 0) {
+                latency.setTag(entry.getKey().name());
+                log.outputIntervalHistogram(latency);
+            }
+            all.add(latency);
+            count += latency.getTotalCount();
+        }
+        measuredNanos = now - measureFrom;
+        return String.format("%5.0f s  %7d req  p50 %8.2f ms  p99 %8.2f ms  max %8.2f ms  in flight %d",
+                measuredNanos / 1e9, count, ms(all.getValueAtPercentile(50)), ms(all.getValueAtPercentile(99)),
+                ms(all.getMaxValue()), inFlight);
+    }
+
+    // Итоговый отчет: таблица в report.txt и распределения по операциям в <operation>.hgrm (мс)
+    synchronized String report(Path directory, String header) throws IOException {
+        double seconds = measuredNanos / 1e9;
+        Histogram allLatency = new Histogram(3);
+        Histogram allService = new Histogram(3);
+        long allErrors = 0;
+        long allFailed = 0;
+        StringBuilder table = new StringBuilder(header).append('\n');
+        table.append(String.format("%-9s %9s %9s %7s %7s %9s %9s %9s %9s %9s %11s %11s%n", "operation", "requests", "req/s",
+                "errors", "failed", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "svc p50 ms", "svc p99 ms"));
+        for (Map.Entry<Operation, OperationStats> entry : operations.entrySet()) {
+            OperationStats stats = entry.getValue();
+            if (stats.totalLatency.getTotalCount() == 0 && stats.failed.sum() == 0) {
+                continue;
+            }
+            row(table, entry.getKey().name().toLowerCase(), stats.totalLatency, stats.totalService,
+                    stats.errors.sum(), stats.failed.sum(), seconds);
+            allLatency.add(stats.totalLatency);
+            allService.add(stats.totalService);
+            allErrors += stats.errors.sum();
+            allFailed += stats.failed.sum();
+            try (PrintStream out = new PrintStream(Files.newOutputStream(
+                    directory.resolve(entry.getKey().name().toLowerCase() + ".hgrm")))) {
+                stats.totalLatency.outputPercentileDistribution(out, NANOS_PER_MS);
+            }
+        }
+        row(table, "all", allLatency, allService, allErrors, allFailed, seconds);
+        try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve("all.hgrm")))) {
+            allLatency.outputPercentileDistribution(out, NANOS_PER_MS);
+        }
+        Files.writeString(directory.resolve("report.txt"), table);
+        logStream.close();
+        return table.toString();
+    }
+
+    private static void row(StringBuilder table, String name, Histogram latency, Histogram service,
+                            long errors, long failed, double seconds) {
+        table.append(String.format("%-9s %9d %9.1f %7d %7d %9.2f %9.2f %9.2f %9.2f %9.2f %11.2f %11.2f%n", name,
+                latency.getTotalCount(), latency.getTotalCount() / seconds, errors, failed,
+                ms(latency.getValueAtPercentile(50)), ms(latency.getValueAtPercentile(90)),
+                ms(latency.getValueAtPercentile(99)), ms(latency.getValueAtPercentile(99.9)), ms(latency.getMaxValue()),
+                ms(service.getValueAtPercentile(50)), ms(service.getValueAtPercentile(99))));
+    }
+
+    private static double ms(long nanos) {
+        return nanos / NANOS_PER_MS;
+    }
+
+    private static final class OperationStats {
+        // Гистограммы с автоматическим расширением диапазона, 3 значащие цифры
+        private final Recorder latency = new Recorder(3);
+        private final Recorder service = new Recorder(3);
+        private final Histogram totalLatency = new Histogram(3);
+        private final Histogram totalService = new Histogram(3);
+        // Ответы 4xx/5xx (их задержки тоже в гистограммах) и запросы без ответа
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+    }
+}
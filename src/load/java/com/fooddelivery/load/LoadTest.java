@@ -0,0 +1,185 @@
+package com.fooddelivery.load;
+
+import com.fooddelivery.FoodDeliveryApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+// Нагрузочный прогон: поднимает приложение на случайном порту с синтетическим набором и подает
+// открытую нагрузку - запросы уходят по расписанию rate в секунду независимо от того, ответил ли
+// сервер на предыдущие. ./mvnw -o -Pload verify -Dload.args="--rate=300 --duration=60s"
+// С --stack=reactive (./mvnw -o -Pload,reactive verify) набор по-прежнему заполняет сервлетное
+// приложение, а запросы идут в ReactiveUserApplication, поднятое в той же JVM над той же БД H2
+public final class LoadTest {
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options = LoadOptions.parse(args);
+        Path directory = options.output.resolve(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")));
+        Files.createDirectories(directory);
+
+        try (ConfigurableApplicationContext context = start(options, directory);
+             ConfigurableApplicationContext reactive = options.stack == LoadOptions.Stack.REACTIVE
+                     ? startReactive(context, options) : null) {
+            long seedStart = System.nanoTime();
+            long[] ids = LoadData.seed(context, options.users, options.roleMix);
+            System.out.printf("Seeded %d users (%s) in %d ms%n", ids.length, options.roleMix,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - seedStart));
+
+            ConfigurableApplicationContext target = reactive != null ? reactive : context;
+            String baseUrl = "http://localhost:" + target.getEnvironment().getProperty("local.server.port");
+            String header = String.format("%s stack, rate %.0f req/s, mix %s, %d users (%s), warmup %s, measured %s",
+                    options.stack.name().toLowerCase(), options.rate, options.mix, options.users, options.roleMix,
+                    options.warmup, options.duration);
+            System.out.println(header);
+            LoadStats stats = new LoadStats(directory);
+            run(options, new Operation.Target(baseUrl, ids, options.roleMix), stats);
+            System.out.println();
+            System.out.print(stats.report(directory, header));
+            System.out.println("Reports: " + directory.toAbsolutePath());
+        }
+    }
+
+    private static ConfigurableApplicationContext start(LoadOptions options, Path directory) {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("server.port", "0");
+        properties.put("spring.jpa.show-sql", "false");
+        properties.put("spring.main.banner-mode", "off");
+        // Вся нагрузка идет с одного адреса
+        properties.put("user.rate-limit.enabled", "false");
+        properties.put("audit.log.dir", directory.resolve("logs").toString());
+        properties.put("user.outbox.file", directory.resolve("events").resolve("user-events.ndjson").toString());
+        List<String> args = new ArrayList<>();
+        properties.forEach((key, value) -> args.add("--" + key + "=" + value));
+        // Аргументы пользователя идут последними и перекрывают значения выше
+        args.addAll(options.applicationArgs);
+        return new SpringApplicationBuilder(FoodDeliveryApplication.class).run(args.toArray(String[]::new));
+    }
+
+    // Реактивный вариант собирается только профилем Maven reactive, поэтому класс ищется по имени.
+    // R2DBC подключается к той же БД H2 в памяти, что и пул JDBC сервлетного приложения
+    private static ConfigurableApplicationContext startReactive(ConfigurableApplicationContext servlet,
+                                                                LoadOptions options) throws Exception {
+        Class<?> application;
+        try {
+            application = Class.forName("com.fooddelivery.reactive.ReactiveUserApplication");
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("--stack=reactive needs the reactive Maven profile: ./mvnw -Pload,reactive verify", e);
+        }
+        String jdbcUrl = servlet.getEnvironment().getProperty("spring.datasource.url", "");
+        if (!jdbcUrl.startsWith("jdbc:h2:mem:")) {
+            throw new IllegalStateException("--stack=reactive needs an in-memory H2 datasource, got " + jdbcUrl);
+        }
+        List<String> args = new ArrayList<>();
+        args.add("--server.port=0");
+        args.add("--spring.main.banner-mode=off");
+        args.add("--spring.r2dbc.url=r2dbc:h2:mem:///" + jdbcUrl.substring("jdbc:h2:mem:".length()));
+        args.addAll(options.applicationArgs);
+        SpringApplicationBuilder builder = (SpringApplicationBuilder) application.getMethod("builder").invoke(null);
+        return builder.run(args.toArray(String[]::new));
+    }
+
+    private static void run(LoadOptions options, Operation.Target target, LoadStats stats) throws InterruptedException {
+        Operation[] wheel = wheel(options.mix);
+        SplittableRandom random = new SplittableRandom(7);
+        AtomicInteger inFlight = new AtomicInteger();
+        ExecutorService responses = Executors.newFixedThreadPool(2, daemon("load-client"));
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(responses)
+                .build();
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(daemon("load-reporter"));
+
+        long start = System.nanoTime();
+        long measureFrom = start + options.warmup.toNanos();
+        long end = measureFrom + options.duration.toNanos();
+        reporter.schedule(() -> {
+            stats.startMeasurement(measureFrom);
+            reporter.scheduleAtFixedRate(() -> System.out.println(stats.interval(System.nanoTime(), inFlight.get())),
+                    1, 1, TimeUnit.SECONDS);
+        }, measureFrom - System.nanoTime(), TimeUnit.NANOSECONDS);
+
+        for (long intended = start; intended < end; intended += nextInterval(options, intended - start)) {
+            long delay = intended - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+            }
+            Operation operation = wheel[random.nextInt(wheel.length)];
+            if (inFlight.get() >= options.maxInFlight) {
+                stats.failed(operation);
+                continue;
+            }
+            HttpRequest request = operation.request(target, random);
+            inFlight.incrementAndGet();
+            long sent = System.nanoTime();
+            long scheduled = intended;
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                inFlight.decrementAndGet();
+                if (error != null) {
+                    stats.failed(operation);
+                } else {
+                    stats.completed(operation, scheduled, sent, response.statusCode());
+                }
+            });
+        }
+
+        // Ответы на последние запросы тоже входят в отчет
+        long drainUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (inFlight.get() > 0 && System.nanoTime() < drainUntil) {
+            Thread.sleep(10);
+        }
+        reporter.shutdownNow();
+        reporter.awaitTermination(5, TimeUnit.SECONDS);
+        stats.interval(Math.min(System.nanoTime(), end), inFlight.get());
+        responses.shutdownNow();
+    }
+
+    // Во время прогрева частота растет линейно от 10% до rate: на холодном JIT полная нагрузка
+    // создает очередь, которую сервер на одном ядре уже не разбирает. Расписание от ответов не зависит
+    private static long nextInterval(LoadOptions options, long elapsed) {
+        long warmup = options.warmup.toNanos();
+        double rate = elapsed < warmup ? options.rate * Math.max(0.1, (double) elapsed / warmup) : options.rate;
+        return (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+    }
+
+    // Операции, повторенные по весам смеси: случайный элемент дает нужные доли
+    private static Operation[] wheel(Map<Operation, Integer> mix) {
+        List<Operation> wheel = new ArrayList<>();
+        mix.forEach((operation, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                wheel.add(operation);
+            }
+        });
+        return wheel.toArray(Operation[]::new);
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
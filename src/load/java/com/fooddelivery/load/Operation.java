@@ -0,0 +1,91 @@
+package com.fooddelivery.load;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.SplittableRandom;
+
+// Запросы к UserController, из которых складывается смесь нагрузки
+enum Operation {
+
+    // GET /users/{id} по случайному id из набора
+    GET {
+        @Override
+        HttpRequest request(Target target, SplittableRandom random) {
+            return builder(target, "/users/" + target.randomId(random)).GET().build();
+        }
+    },
+
+    // Первая страница списка по роли: GET /users?role=...&limit=20
+    LIST {
+        @Override
+        HttpRequest request(Target target, SplittableRandom random) {
+            return builder(target, "/users?limit=20&role=" + target.roleMix().pick(random)).GET().build();
+        }
+    },
+
+    // POST /users с новым уникальным username
+    REGISTER {
+        @Override
+        HttpRequest request(Target target, SplittableRandom random) {
+            long n = target.nextUser();
+            String body = "{\"username\":\"load" + n + "\",\"email\":\"load" + n + "@load.local\","
+                    + "\"password\":\"load-password-123\",\"role\":\"" + target.roleMix().pick(random) + "\"}";
+            return builder(target, "/users")
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+        }
+    },
+
+    // Смена телефона через PATCH /users/{id} (application/merge-patch+json)
+    UPDATE {
+        @Override
+        HttpRequest request(Target target, SplittableRandom random) {
+            String body = "{\"phone\":\"+7901" + (1000000 + random.nextInt(9000000)) + "\"}";
+            return builder(target, "/users/" + target.randomId(random))
+                    .header("Content-Type", "application/merge-patch+json")
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+        }
+    };
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    abstract HttpRequest request(Target target, SplittableRandom random);
+
+    private static HttpRequest.Builder builder(Target target, String path) {
+        return HttpRequest.newBuilder(URI.create(target.baseUrl() + path)).timeout(TIMEOUT);
+    }
+
+    // Приложение под нагрузкой и его набор данных
+    static final class Target {
+        private final String baseUrl;
+        private final long[] ids;
+        private final LoadData.RoleMix roleMix;
+        private long registered;
+
+        Target(String baseUrl, long[] ids, LoadData.RoleMix roleMix) {
+            this.baseUrl = baseUrl;
+            this.ids = ids;
+            this.roleMix = roleMix;
+        }
+
+        String baseUrl() {
+            return baseUrl;
+        }
+
+        LoadData.RoleMix roleMix() {
+            return roleMix;
+        }
+
+        long randomId(SplittableRandom random) {
+            return ids[random.nextInt(ids.length)];
+        }
+
+        // Запросы создает один поток генератора, синхронизация не нужна
+        long nextUser() {
+            return registered++;
+        }
+    }
+}
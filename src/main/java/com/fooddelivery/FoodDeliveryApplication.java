@@ -2,8 +2,13 @@ package com.fooddelivery;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcTransactionManagerAutoConfiguration;
 
-@SpringBootApplication
+// R2DBC в classpath только при сборке с профилем reactive и нужен лишь ReactiveUserApplication.
+// Здесь его ConnectionFactory выключила бы DataSource, а R2dbcTransactionManager стал бы вторым
+// TransactionManager рядом с JPA, и @Transactional перестал бы находить единственный
+@SpringBootApplication(exclude = {R2dbcAutoConfiguration.class, R2dbcTransactionManagerAutoConfiguration.class})
 public class FoodDeliveryApplication {
 
 	public static void main(String[] args) {
@@ -1,7 +1,18 @@
 package com.fooddelivery.exception;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.validation.ConstraintViolationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.HttpMediaTypeNotSupportedException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
@@ -12,9 +23,24 @@ import java.util.Map;
 @RestControllerAdvice
 public class GlobalExceptionHandler {
 
+    private static final Logger log = LoggerFactory.getLogger(GlobalExceptionHandler.class);
+
+    private static final String ERRORS_METRIC = "user.errors";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Регистрируем основные счетчики заранее, чтобы rate() в Prometheus видел их с нуля
+    @PostConstruct
+    void registerErrorCounters() {
+        meterRegistry.counter(ERRORS_METRIC, "exception", UserNotFoundException.class.getSimpleName());
+        meterRegistry.counter(ERRORS_METRIC, "exception", UserAlreadyExistsException.class.getSimpleName());
+    }
+
     @ExceptionHandler(UserNotFoundException.class)
     public ResponseEntity<Map<String, String>> handleUserNotFoundException(UserNotFoundException ex) {
-        System.out.println("DEBUG: UserNotFoundException: " + ex.getMessage());
+        countError(ex);
+        log.debug("UserNotFoundException: {}", ex.getMessage());
         Map<String, String> response = new HashMap<>();
         response.put("error", "Not Found");
         response.put("message", ex.getMessage());
@@ -23,16 +49,113 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler(UserAlreadyExistsException.class)
     public ResponseEntity<Map<String, String>> handleUserAlreadyExistsException(UserAlreadyExistsException ex) {
-        System.out.println("DEBUG: UserAlreadyExistsException: " + ex.getMessage());
+        countError(ex);
+        log.debug("UserAlreadyExistsException: {}", ex.getMessage());
+        Map<String, String> response = new HashMap<>();
+        response.put("error", "Conflict");
+        response.put("message", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+    }
+
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<Map<String, String>> handlePreconditionFailedException(PreconditionFailedException ex) {
+        countError(ex);
+        log.debug("PreconditionFailedException: {}", ex.getMessage());
+        Map<String, String> response = new HashMap<>();
+        response.put("error", "Precondition Failed");
+        response.put("message", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(response);
+    }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Map<String, String>> handleOptimisticLockingFailureException(OptimisticLockingFailureException ex) {
+        countError(ex);
+        // Параллельное изменение между чтением и UPDATE ... WHERE version = ?
+        log.debug("OptimisticLockingFailureException: {}", ex.getMessage());
         Map<String, String> response = new HashMap<>();
         response.put("error", "Conflict");
+        response.put("message", "User was modified concurrently, please retry");
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+    }
+
+    @ExceptionHandler(InvalidCredentialsException.class)
+    public ResponseEntity<Map<String, String>> handleInvalidCredentialsException(InvalidCredentialsException ex) {
+        countError(ex);
+        log.debug("InvalidCredentialsException: {}", ex.getMessage());
+        Map<String, String> response = new HashMap<>();
+        response.put("error", "Unauthorized");
+        response.put("message", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
+    }
+
+    @ExceptionHandler(PasswordHashingUnavailableException.class)
+    public ResponseEntity<Map<String, String>> handlePasswordHashingUnavailableException(PasswordHashingUnavailableException ex) {
+        countError(ex);
+        log.debug("PasswordHashingUnavailableException: {}", ex.getMessage());
+        Map<String, String> response = new HashMap<>();
+        response.put("error", "Service Unavailable");
+        response.put("message", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(response);
+    }
+
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<Map<String, String>> handleRateLimitExceededException(RateLimitExceededException ex) {
+        countError(ex);
+        log.debug("RateLimitExceededException: {}", ex.getMessage());
+        Map<String, String> response = new HashMap<>();
+        response.put("error", "Too Many Requests");
+        response.put("message", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(response);
+    }
+
+    @ExceptionHandler(SearchIndexUnavailableException.class)
+    public ResponseEntity<Map<String, String>> handleSearchIndexUnavailableException(SearchIndexUnavailableException ex) {
+        countError(ex);
+        // Индекс поиска еще заполняется после старта (user.index.background-rebuild=true)
+        log.debug("SearchIndexUnavailableException: {}", ex.getMessage());
+        Map<String, String> response = new HashMap<>();
+        response.put("error", "Service Unavailable");
         response.put("message", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "5")
+                .body(response);
+    }
+
+    @ExceptionHandler(CannotCreateTransactionException.class)
+    public ResponseEntity<Map<String, String>> handleCannotCreateTransactionException(CannotCreateTransactionException ex) {
+        countError(ex);
+        // Обычно это таймаут ожидания соединения из пула (spring.datasource.hikari.connection-timeout)
+        log.warn("Cannot create transaction: {}", ex.getMostSpecificCause().getMessage());
+        Map<String, String> response = new HashMap<>();
+        response.put("error", "Service Unavailable");
+        response.put("message", "Database is overloaded, please retry");
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(response);
+    }
+
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<Map<String, String>> handleDataIntegrityViolationException(DataIntegrityViolationException ex) {
+        if (!DuplicateUserKeys.isViolatedBy(ex)) {
+            return handleGenericException(ex);
+        }
+        countError(ex);
+        // Гонка между проверкой уникальности и INSERT: отвечаем так же, как на обычный дубликат
+        log.debug("DataIntegrityViolationException: {}", ex.getMostSpecificCause().getMessage());
+        Map<String, String> response = new HashMap<>();
+        response.put("error", "Conflict");
+        response.put("message", "User with the same username or email already exists");
         return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
     }
 
     @ExceptionHandler(IllegalArgumentException.class)
     public ResponseEntity<Map<String, String>> handleIllegalArgumentException(IllegalArgumentException ex) {
-        System.out.println("DEBUG: IllegalArgumentException: " + ex.getMessage());
+        countError(ex);
+        log.debug("IllegalArgumentException: {}", ex.getMessage());
         Map<String, String> response = new HashMap<>();
         response.put("error", "Bad Request");
         response.put("message", ex.getMessage());
@@ -41,20 +164,39 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<Map<String, String>> handleValidationExceptions(MethodArgumentNotValidException ex) {
-        System.out.println("DEBUG: Validation exception");
+        countError(ex);
+        log.debug("Validation exception: {} field error(s)", ex.getBindingResult().getFieldErrorCount());
         Map<String, String> errors = new HashMap<>();
         ex.getBindingResult().getFieldErrors()
                 .forEach(error -> errors.put(error.getField(), error.getDefaultMessage()));
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errors);
     }
 
+    @ExceptionHandler(ConstraintViolationException.class)
+    public ResponseEntity<Map<String, String>> handleConstraintViolationException(ConstraintViolationException ex) {
+        countError(ex);
+        log.debug("Constraint violation: {}", ex.getMessage());
+        Map<String, String> errors = new HashMap<>();
+        ex.getConstraintViolations()
+                .forEach(violation -> errors.put(violation.getPropertyPath().toString(), violation.getMessage()));
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errors);
+    }
+
+    @ExceptionHandler(HttpMediaTypeNotSupportedException.class)
+    public ResponseEntity<Map<String, String>> handleHttpMediaTypeNotSupportedException(HttpMediaTypeNotSupportedException ex) {
+        countError(ex);
+        // Например, PATCH /users/{id} с application/json вместо application/merge-patch+json
+        log.debug("HttpMediaTypeNotSupportedException: {}", ex.getMessage());
+        Map<String, String> response = new HashMap<>();
+        response.put("error", "Unsupported Media Type");
+        response.put("message", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).body(response);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Map<String, String>> handleGenericException(Exception ex) {
-        System.out.println("=== UNHANDLED EXCEPTION START ===");
-        System.out.println("Exception type: " + ex.getClass().getName());
-        System.out.println("Exception message: " + ex.getMessage());
-        ex.printStackTrace();
-        System.out.println("=== UNHANDLED EXCEPTION END ===");
+        countError(ex);
+        log.error("Unhandled exception: {}", ex.getClass().getName(), ex);
 
         Map<String, String> response = new HashMap<>();
         response.put("error", "Internal Server Error");
@@ -63,4 +205,8 @@ public class GlobalExceptionHandler {
         response.put("details", ex.getMessage());
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
     }
-}
\ No newline at end of file
+
+    private void countError(Exception ex) {
+        meterRegistry.counter(ERRORS_METRIC, "exception", ex.getClass().getSimpleName()).increment();
+    }
+}
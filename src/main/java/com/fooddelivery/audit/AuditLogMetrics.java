@@ -0,0 +1,17 @@
+package com.fooddelivery.audit;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+@Component
+public class AuditLogMetrics implements MeterBinder {
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("audit.log.dropped", DroppingAsyncAppender.class, appender -> DroppingAsyncAppender.droppedEvents())
+                .description("Audit events dropped because the async queue was full")
+                .register(registry);
+    }
+}
@@ -0,0 +1,26 @@
+package com.fooddelivery.audit;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// AsyncAppender с neverBlock=true молча выбрасывает события при заполненной очереди.
+// Этот вариант дополнительно считает такие события, чтобы потери были видны.
+public class DroppingAsyncAppender extends AsyncAppender {
+
+    private static final LongAdder DROPPED_EVENTS = new LongAdder();
+
+    @Override
+    protected void append(ILoggingEvent eventObject) {
+        if (isNeverBlock() && getRemainingCapacity() == 0) {
+            DROPPED_EVENTS.increment();
+            return;
+        }
+        super.append(eventObject);
+    }
+
+    public static long droppedEvents() {
+        return DROPPED_EVENTS.sum();
+    }
+}
@@ -0,0 +1,53 @@
+package com.fooddelivery.audit;
+
+import com.fooddelivery.dto.UserResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Журнал изменений пользователей. Пишется в logger AUDIT, который в logback-spring.xml
+// уходит через ограниченную асинхронную очередь в отдельный файл.
+@Component
+public class UserAuditLogger {
+
+    private static final Logger audit = LoggerFactory.getLogger("AUDIT");
+
+    public void userRegistered(UserResponse user) {
+        if (audit.isInfoEnabled()) {
+            audit.info("event=USER_REGISTERED userId={} username={} role={}",
+                    user.getId(), user.getUsername(), user.getRole());
+        }
+    }
+
+    public void usersRegistered(int created, int conflicts) {
+        if (audit.isInfoEnabled()) {
+            audit.info("event=USERS_BATCH_REGISTERED created={} conflicts={}", created, conflicts);
+        }
+    }
+
+    public void userUpdated(Long id, List<String> changedFields) {
+        if (audit.isInfoEnabled()) {
+            audit.info("event=USER_UPDATED userId={} fields={}", id, String.join(",", changedFields));
+        }
+    }
+
+    public void userActivated(Long id) {
+        if (audit.isInfoEnabled()) {
+            audit.info("event=USER_ACTIVATED userId={}", id);
+        }
+    }
+
+    public void userDeactivated(Long id) {
+        if (audit.isInfoEnabled()) {
+            audit.info("event=USER_DEACTIVATED userId={}", id);
+        }
+    }
+
+    public void usersActiveChanged(boolean active, long updated) {
+        if (audit.isInfoEnabled()) {
+            audit.info("event={} updated={}", active ? "USERS_BATCH_ACTIVATED" : "USERS_BATCH_DEACTIVATED", updated);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.fooddelivery.cache;
+
+import com.fooddelivery.dto.UserResponse;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+// Кэш профилей для GET /users/{id}. Хранит готовые UserResponse, их нельзя изменять после выдачи.
+@Component
+public class UserCache {
+
+    private final Cache<Long, UserResponse> cache;
+
+    public UserCache(@Value("${user.cache.max-size:10000}") long maxSize,
+                     @Value("${user.cache.ttl:5m}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    // Загрузка идет вне cache.get(key, loader): тот держит монитор ConcurrentHashMap на время
+    // запроса в БД, что под виртуальными потоками пинит carrier-поток. Параллельные промахи
+    // по одному id могут сходить в БД дважды. Значение, прочитанное до чужого коммита (или с реплики),
+    // старше того, что положил put() после коммита: из двух версий в кэше остается большая
+    public UserResponse get(Long id, Function<Long, UserResponse> loader) {
+        UserResponse cached = cache.getIfPresent(id);
+        if (cached != null) {
+            return cached;
+        }
+        return cache.asMap().merge(id, loader.apply(id), UserCache::newer);
+    }
+
+    public void put(UserResponse userResponse) {
+        cache.asMap().merge(userResponse.getId(), userResponse, UserCache::newer);
+    }
+
+    public void invalidate(Long id) {
+        cache.invalidate(id);
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private static UserResponse newer(UserResponse cached, UserResponse candidate) {
+        return version(candidate) >= version(cached) ? candidate : cached;
+    }
+
+    private static long version(UserResponse user) {
+        return user.getVersion() != null ? user.getVersion() : -1L;
+    }
+
+    Cache<Long, UserResponse> nativeCache() {
+        return cache;
+    }
+}
@@ -0,0 +1,32 @@
+package com.fooddelivery.cache;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Component
+@Endpoint(id = "usercache")
+public class UserCacheEndpoint {
+
+    @Autowired
+    private UserCache userCache;
+
+    @ReadOperation
+    public Map<String, Object> stats() {
+        CacheStats stats = userCache.stats();
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("size", userCache.size());
+        response.put("hitCount", stats.hitCount());
+        response.put("missCount", stats.missCount());
+        response.put("hitRate", stats.hitRate());
+        response.put("evictionCount", stats.evictionCount());
+        response.put("loadFailureCount", stats.loadFailureCount());
+        response.put("averageLoadPenaltyNanos", stats.averageLoadPenalty());
+        return response;
+    }
+}
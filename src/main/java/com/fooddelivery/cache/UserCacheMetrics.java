@@ -0,0 +1,20 @@
+package com.fooddelivery.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+// cache_gets_total{cache="users",result="hit|miss"}, cache_size, cache_evictions_total
+@Component
+public class UserCacheMetrics implements MeterBinder {
+
+    @Autowired
+    private UserCache userCache;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, userCache.nativeCache(), "users");
+    }
+}
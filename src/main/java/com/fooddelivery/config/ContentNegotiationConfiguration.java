@@ -0,0 +1,42 @@
+package com.fooddelivery.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+// Кроме JSON, ответы отдаются в Smile (application/x-jackson-smile) и CBOR (application/cbor) по заголовку Accept.
+// Spring MVC сам добавляет конвертеры для этих форматов, но без настроек spring.jackson.*: бины ниже
+// заменяют их и собираются тем же Jackson2ObjectMapperBuilder, что и ObjectMapper для JSON
+@Configuration(proxyBeanMethods = false)
+public class ContentNegotiationConfiguration {
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(smileFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(cborFactory()).build());
+    }
+
+    // Повторяющиеся строковые значения (роль) пишутся ссылкой на первое вхождение
+    public static SmileFactory smileFactory() {
+        return SmileFactory.builder()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                .build();
+    }
+
+    // То же для CBOR (stringref, тег 256): клиент на Jackson его понимает
+    public static CBORFactory cborFactory() {
+        return CBORFactory.builder()
+                .enable(CBORGenerator.Feature.STRINGREF)
+                .build();
+    }
+}
@@ -0,0 +1,89 @@
+package com.fooddelivery.config;
+
+import com.fooddelivery.datasource.ShardRoutingDataSource;
+import com.fooddelivery.sharding.ShardedIdGenerator;
+import com.fooddelivery.sharding.ShardingProperties;
+import com.fooddelivery.sharding.UserDirectory;
+import com.fooddelivery.sharding.UserIdAllocator;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+// Включается, когда задан user.sharding.shards[0].url. Пользователи (и их outbox) лежат на шардах
+// user.sharding.shards[i].*, шард - hash(id) mod N. БД из spring.datasource.* становится справочником
+// (UserDirectory) и источником глобальных id. С репликой (user.datasource.replica.url) не совмещается.
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "user.sharding", name = "shards[0].url")
+@EnableConfigurationProperties(ShardingProperties.class)
+public class ShardingConfiguration {
+
+    private static final Resource SHARD_SCHEMA = new ClassPathResource("db/schema-h2.sql");
+    private static final Resource DIRECTORY_SCHEMA = new ClassPathResource("db/directory-h2.sql");
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource directoryDataSource(DataSourceProperties dataSourceProperties) {
+        return dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(ShardingProperties properties,
+                                                         ObjectProvider<MeterRegistry> meterRegistry) {
+        List<DataSource> shards = new ArrayList<>(properties.getShards().size());
+        for (int i = 0; i < properties.getShards().size(); i++) {
+            HikariDataSource shard = properties.getShards().get(i).initializeDataSourceBuilder()
+                    .type(HikariDataSource.class)
+                    .build();
+            shard.setPoolName("users-shard-" + i);
+            shard.setMaximumPoolSize(properties.getPoolSize());
+            // Пулы шардов - не бины, метрики hikaricp_connections_{pool="users-shard-N"} подключаем сами до старта пула
+            meterRegistry.ifAvailable(registry -> shard.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+            // ddl-auto и spring.sql.init видят только шард по умолчанию; схема идемпотентна, выполняем на каждом
+            DatabasePopulatorUtils.execute(new ResourceDatabasePopulator(SHARD_SCHEMA), shard);
+            shards.add(shard);
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    @Bean
+    public UserDirectory userDirectory(@Qualifier("directoryDataSource") DataSource directoryDataSource) {
+        DatabasePopulatorUtils.execute(new ResourceDatabasePopulator(DIRECTORY_SCHEMA), directoryDataSource);
+        return new UserDirectory(directoryDataSource);
+    }
+
+    @Bean
+    public UserIdAllocator userIdAllocator(UserDirectory userDirectory) {
+        return new UserIdAllocator(userDirectory);
+    }
+
+    // Генератор id сущностей (ShardedIdGenerator) получает аллокатор через настройки Hibernate
+    @Bean
+    public HibernatePropertiesCustomizer shardedIdAllocator(UserIdAllocator userIdAllocator) {
+        return properties -> properties.put(ShardedIdGenerator.ID_ALLOCATOR, userIdAllocator);
+    }
+}
@@ -1,17 +1,50 @@
 package com.fooddelivery.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fooddelivery.dto.AuthenticationRequest;
+import com.fooddelivery.dto.UserActivationRequest;
+import com.fooddelivery.dto.UserActivationResult;
+import com.fooddelivery.dto.UserAvailabilityResponse;
+import com.fooddelivery.dto.UserBatchResult;
+import com.fooddelivery.dto.UserChangesResponse;
+import com.fooddelivery.dto.UserPageResponse;
 import com.fooddelivery.dto.UserRequest;
 import com.fooddelivery.dto.UserResponse;
+import com.fooddelivery.dto.UserStatsResponse;
 import com.fooddelivery.dto.UserUpdateRequest;
+import com.fooddelivery.exception.PreconditionFailedException;
+import com.fooddelivery.feed.UserChangeFeed;
 import com.fooddelivery.model.Role;
+import com.fooddelivery.ratelimit.RateLimited;
 import com.fooddelivery.service.UserService;
+import com.fooddelivery.stats.UserStats;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.accept.ContentNegotiationManager;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
 import java.util.List;
 
 @RestController
@@ -19,42 +52,169 @@ import java.util.List;
 @Validated
 public class UserController {
 
+    public static final String MERGE_PATCH_JSON = "application/merge-patch+json";
+
+    private static final MediaType SMILE = MediaType.valueOf("application/x-jackson-smile");
+
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private UserChangeFeed changeFeed;
+
+    @Autowired
+    private ContentNegotiationManager contentNegotiationManager;
+
+    @Autowired
+    private UserStats userStats;
+
     @PostMapping
+    @RateLimited("register")
     public ResponseEntity<UserResponse> registerUser(@Valid @RequestBody UserRequest userRequest) {
         UserResponse userResponse = userService.registerUser(userRequest);
         return ResponseEntity.status(HttpStatus.CREATED).body(userResponse);
     }
 
+    @PostMapping("/batch")
+    public ResponseEntity<List<UserBatchResult>> registerUsers(
+            @RequestBody @NotEmpty @Size(max = UserService.MAX_BATCH_SIZE) List<@Valid UserRequest> userRequests) {
+        List<UserBatchResult> results = userService.registerUsers(userRequests);
+        return ResponseEntity.ok(results);
+    }
+
+    @PostMapping("/batch/deactivate")
+    public ResponseEntity<UserActivationResult> deactivateUsers(@Valid @RequestBody UserActivationRequest request) {
+        UserActivationResult result = userService.deactivateUsers(request);
+        return ResponseEntity.ok(result);
+    }
+
+    @PostMapping("/batch/activate")
+    public ResponseEntity<UserActivationResult> activateUsers(@Valid @RequestBody UserActivationRequest request) {
+        UserActivationResult result = userService.activateUsers(request);
+        return ResponseEntity.ok(result);
+    }
+
+    @PostMapping("/authenticate")
+    @RateLimited("authenticate")
+    public ResponseEntity<UserResponse> authenticate(@Valid @RequestBody AuthenticationRequest request) {
+        UserResponse userResponse = userService.authenticate(request);
+        return ResponseEntity.ok(userResponse);
+    }
+
+    @GetMapping("/availability")
+    @RateLimited("availability")
+    public ResponseEntity<UserAvailabilityResponse> checkAvailability(
+            @RequestParam(required = false) String username,
+            @RequestParam(required = false) String email) {
+        UserAvailabilityResponse availability = userService.checkAvailability(username, email);
+        return ResponseEntity.ok(availability);
+    }
+
+    // Счетчики в памяти, без запросов в БД: рассчитано на частый опрос дашбордами
+    @GetMapping("/stats")
+    public ResponseEntity<UserStatsResponse> getUserStats() {
+        return ResponseEntity.ok(userStats.snapshot());
+    }
+
+    @GetMapping("/search")
+    @RateLimited("search")
+    public ResponseEntity<List<UserResponse>> searchUsers(
+            @RequestParam @NotBlank @Size(max = 100) String q,
+            @RequestParam(required = false) Role role,
+            @RequestParam(defaultValue = "20") @Min(1) @Max(UserService.MAX_SEARCH_LIMIT) int limit) {
+        List<UserResponse> users = userService.searchUsers(q, role, limit);
+        return ResponseEntity.ok(users);
+    }
+
     @GetMapping("/{id}")
-    public ResponseEntity<UserResponse> getUser(@PathVariable Long id) {
+    @RateLimited("lookup")
+    public ResponseEntity<UserResponse> getUser(@PathVariable Long id, NativeWebRequest request) {
         UserResponse userResponse = userService.getUserById(id);
-        return ResponseEntity.ok(userResponse);
+        String etag = userEtag(userResponse, request);
+        if (request.checkNotModified(etag)) {
+            // 304 уже выставлен, тело не сериализуется
+            return null;
+        }
+        return ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT).body(userResponse);
     }
 
     @GetMapping
     public ResponseEntity<List<UserResponse>> getAllUsers(
-            @RequestParam(required = false) Role role) {
-
-        if (role != null) {
-            // Если передан параметр role, фильтруем по роли
-            List<UserResponse> users = userService.getUsersByRole(role);
-            return ResponseEntity.ok(users);
-        } else {
-            // Иначе возвращаем всех пользователей
-            List<UserResponse> users = userService.getAllUsers();
-            return ResponseEntity.ok(users);
+            @RequestParam(required = false) Role role,
+            WebRequest request) {
+
+        // Список с ролью - фильтр по роли, без нее - все пользователи
+        List<UserResponse> users = role != null ? userService.getUsersByRole(role) : userService.getAllUsers();
+
+        // ETag считается по прочитанным строкам, а не по счетчику коммитов: после окна read-your-writes
+        // список читается из реплики, и отстающая реплика отдала бы старые данные под новым ETag.
+        // ETag слабый: JSON, Smile, CBOR и их gzip-версии - один и тот же список,
+        // а со строгим ETag Tomcat не сжимает ответ
+        String etag = "W/\"" + listVersion(users) + "\"";
+        if (request.checkNotModified(etag)) {
+            // 304 уже выставлен, тело не сериализуется
+            return null;
         }
+        return ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT).body(users);
+    }
+
+    @GetMapping(params = "limit")
+    public ResponseEntity<UserPageResponse> getUsersPage(
+            @RequestParam(required = false) Role role,
+            @RequestParam(required = false) String after,
+            @RequestParam @Min(1) @Max(UserService.MAX_PAGE_SIZE) int limit) {
+        UserPageResponse page = userService.getUsersPage(role, after, limit);
+        return ResponseEntity.ok(page);
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportUsers() {
+        // Тело пишется асинхронно, транзакция открывается внутри exportUsers
+        StreamingResponseBody body = outputStream -> userService.exportUsers(outputStream);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    // Изменения после токена since (без since - с самого начала). wait > 0 - long-poll: при отсутствии
+    // изменений ответ ждет первого коммита не дольше wait секунд и возвращает пустой список с тем же токеном
+    @GetMapping("/changes")
+    public DeferredResult<UserChangesResponse> getChanges(
+            @RequestParam(required = false) String since,
+            @RequestParam(defaultValue = "100") @Min(1) @Max(UserChangeFeed.MAX_LIMIT) int limit,
+            @RequestParam(defaultValue = "0") @Min(0) @Max(UserChangeFeed.MAX_WAIT_SECONDS) int wait) {
+        return changeFeed.poll(since, limit, wait);
+    }
+
+    // Server-Sent Events: события users с UserChangesResponse, id события - токен.
+    // При переподключении EventSource передает последний токен в Last-Event-ID
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(
+            @RequestParam(required = false) String since,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+            @RequestParam(defaultValue = "100") @Min(1) @Max(UserChangeFeed.MAX_LIMIT) int limit) {
+        return changeFeed.subscribe(lastEventId != null ? lastEventId : since, limit);
     }
 
     @PutMapping("/{id}")
     public ResponseEntity<UserResponse> updateUser(
             @PathVariable Long id,
-            @Valid @RequestBody UserUpdateRequest updateRequest) {
-        UserResponse userResponse = userService.updateUser(id, updateRequest);
-        return ResponseEntity.ok(userResponse);
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @Valid @RequestBody UserUpdateRequest updateRequest,
+            NativeWebRequest request) {
+        UserResponse userResponse = userService.updateUser(id, updateRequest, expectedVersion(ifMatch));
+        return ResponseEntity.ok().eTag(userEtag(userResponse, request)).body(userResponse);
+    }
+
+    // Меняются только переданные поля; "phone": null удаляет телефон
+    @PatchMapping(value = "/{id}", consumes = MERGE_PATCH_JSON)
+    public ResponseEntity<UserResponse> patchUser(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody JsonNode patch,
+            NativeWebRequest request) {
+        UserResponse userResponse = userService.patchUser(id, patch, expectedVersion(ifMatch));
+        return ResponseEntity.ok().eTag(userEtag(userResponse, request)).body(userResponse);
     }
 
     @DeleteMapping("/{id}")
@@ -68,4 +228,75 @@ public class UserController {
         UserResponse userResponse = userService.activateUser(id);
         return ResponseEntity.ok(userResponse);
     }
-}
\ No newline at end of file
+
+    // Строгий ETag обещает побайтно одинаковое тело, а JSON, Smile и CBOR одной версии различаются.
+    // Поэтому у бинарных форматов к версии добавляется суффикс: "5", "5-smile", "5-cbor".
+    // Формат выбирается так же, как его выберет Spring MVC: по Accept с учетом q, */* - JSON
+    private String userEtag(UserResponse userResponse, NativeWebRequest request) {
+        String version = String.valueOf(userResponse.getVersion());
+        List<MediaType> accepted;
+        try {
+            accepted = new ArrayList<>(contentNegotiationManager.resolveMediaTypes(request));
+        } catch (HttpMediaTypeNotAcceptableException e) {
+            // Некорректный Accept: ответ все равно будет 406
+            return version;
+        }
+        accepted.sort(Comparator.comparingDouble(MediaType::getQualityValue).reversed());
+        for (MediaType type : accepted) {
+            if (type.getQualityValue() == 0 || type.includes(MediaType.APPLICATION_JSON)) {
+                break;
+            }
+            if (type.includes(SMILE)) {
+                return version + "-smile";
+            }
+            if (type.includes(MediaType.APPLICATION_CBOR)) {
+                return version + "-cbor";
+            }
+        }
+        return version;
+    }
+
+    // Каждое изменение пользователя увеличивает version, а состав списка задают id,
+    // поэтому пары (id, version) в порядке списка однозначно определяют его содержимое
+    private static String listVersion(List<UserResponse> users) {
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocate(2 * Long.BYTES);
+        for (UserResponse user : users) {
+            buffer.clear();
+            buffer.putLong(user.getId()).putLong(user.getVersion() != null ? user.getVersion() : 0L);
+            digest.update(buffer.array());
+        }
+        return users.size() + "-" + HexFormat.of().formatHex(digest.digest(), 0, 8);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 обязан быть в любой JRE
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // If-Match сравнивается строго: подходит только "<version>" из ETag (с суффиксом формата или без) или *.
+    // Слабый или чужой ETag совпасть не может, поэтому сразу 412.
+    public static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            String value = tag.substring(1, tag.length() - 1);
+            // Версия одна для всех форматов, суффикс отличает только представление
+            if (value.endsWith("-smile") || value.endsWith("-cbor")) {
+                value = value.substring(0, value.lastIndexOf('-'));
+            }
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException ignored) {
+                // не наш формат ETag
+            }
+        }
+        throw new PreconditionFailedException("If-Match does not match the current version");
+    }
+}
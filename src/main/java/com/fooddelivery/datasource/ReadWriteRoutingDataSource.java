@@ -0,0 +1,36 @@
+package com.fooddelivery.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Supplier;
+
+// Read-only транзакции идут в реплику, все остальное - в основную БД. Решение принимается при
+// получении соединения, поэтому источник должен быть обернут в LazyConnectionDataSourceProxy:
+// иначе соединение берется в начале транзакции, когда флаг readOnly еще не выставлен.
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String PRIMARY = "primary";
+    public static final String REPLICA = "replica";
+
+    private static final ThreadLocal<Boolean> FORCE_PRIMARY = ThreadLocal.withInitial(() -> false);
+
+    // Чтение, которое должно увидеть только что записанные данные (read-your-writes)
+    public static <T> T onPrimary(Supplier<T> action) {
+        boolean previous = FORCE_PRIMARY.get();
+        FORCE_PRIMARY.set(true);
+        try {
+            return action.get();
+        } finally {
+            FORCE_PRIMARY.set(previous);
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!FORCE_PRIMARY.get() && TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return REPLICA;
+        }
+        return PRIMARY;
+    }
+}
@@ -0,0 +1,73 @@
+package com.fooddelivery.datasource;
+
+import com.fooddelivery.model.Role;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+// Реплика отстает от основной БД. В течение окна после записи чтения этого пользователя
+// и списков затронутых ролей идут в основную БД, чтобы клиент сразу видел свое изменение.
+// Окно 0 отключает поведение: все read-only чтения идут в реплику.
+@Component
+public class ReadYourWrites {
+
+    private static final int ALL = Role.values().length;
+
+    private static final long NEVER = Long.MIN_VALUE;
+
+    private final long windowNanos;
+    private final Cache<Long, Boolean> recentUsers;
+    // System.nanoTime() последней записи по каждой роли и по списку всех пользователей
+    private final AtomicLongArray recentLists = new AtomicLongArray(ALL + 1);
+
+    public ReadYourWrites(@Value("${user.datasource.read-your-writes:1s}") Duration window) {
+        this.windowNanos = window.toNanos();
+        this.recentUsers = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(window)
+                .build();
+        for (int i = 0; i <= ALL; i++) {
+            recentLists.set(i, NEVER);
+        }
+    }
+
+    // Вызывается после коммита
+    public void written(Collection<Long> ids, Set<Role> roles) {
+        if (windowNanos <= 0) {
+            return;
+        }
+        ids.forEach(id -> recentUsers.put(id, Boolean.TRUE));
+        long now = System.nanoTime();
+        roles.forEach(role -> recentLists.set(role.ordinal(), now));
+        if (!roles.isEmpty()) {
+            recentLists.set(ALL, now);
+        }
+    }
+
+    public <T> T readUser(Long id, Supplier<T> read) {
+        return recentUsers.getIfPresent(id) != null ? ReadWriteRoutingDataSource.onPrimary(read) : read.get();
+    }
+
+    public <T> T readUsers(Collection<Long> ids, Supplier<T> read) {
+        for (Long id : ids) {
+            if (recentUsers.getIfPresent(id) != null) {
+                return ReadWriteRoutingDataSource.onPrimary(read);
+            }
+        }
+        return read.get();
+    }
+
+    // role == null - список всех пользователей
+    public <T> T readList(Role role, Supplier<T> read) {
+        long written = recentLists.get(role != null ? role.ordinal() : ALL);
+        boolean recent = written != NEVER && System.nanoTime() - written < windowNanos;
+        return recent ? ReadWriteRoutingDataSource.onPrimary(read) : read.get();
+    }
+}
@@ -0,0 +1,69 @@
+package com.fooddelivery.datasource;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// Шард выбирается при получении соединения, как и в ReadWriteRoutingDataSource, поэтому источник
+// оборачивается в LazyConnectionDataSourceProxy: номер шарда выставляется до первого запроса транзакции.
+// Без выбранного шарда соединение берется из шарда 0 - так Hibernate читает метаданные при старте.
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    private static final ThreadLocal<Integer> SHARD = new ThreadLocal<>();
+
+    private final List<DataSource> shards;
+
+    public ShardRoutingDataSource(List<DataSource> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shards = List.copyOf(shards);
+        Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            targets.put(i, shards.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(0));
+        // Несуществующий номер шарда - ошибка, а не тихое чтение из шарда 0
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    public static <T> T onShard(int shard, Supplier<T> action) {
+        Integer previous = SHARD.get();
+        SHARD.set(shard);
+        try {
+            return action.get();
+        } finally {
+            if (previous != null) {
+                SHARD.set(previous);
+            } else {
+                SHARD.remove();
+            }
+        }
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return SHARD.get();
+    }
+
+    // Пулы шардов - не бины, закрываем их сами
+    @Override
+    public void destroy() throws Exception {
+        for (DataSource shard : shards) {
+            if (shard instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
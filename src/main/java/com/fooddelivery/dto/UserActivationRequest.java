@@ -0,0 +1,63 @@
+package com.fooddelivery.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fooddelivery.model.Role;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Выбор пользователей для массовой (де)активации: либо список id, либо роль
+// с необязательным периодом регистрации [createdFrom, createdTo)
+public class UserActivationRequest {
+
+    @Size(max = 50000, message = "No more than 50000 ids per request")
+    private List<@NotNull Long> ids;
+
+    private Role role;
+
+    private LocalDateTime createdFrom;
+
+    private LocalDateTime createdTo;
+
+    @JsonIgnore
+    @AssertTrue(message = "Either ids or role must be specified, but not both")
+    public boolean isSelectorValid() {
+        boolean byIds = ids != null && !ids.isEmpty();
+        return byIds != (role != null);
+    }
+
+    public List<Long> getIds() {
+        return ids;
+    }
+
+    public void setIds(List<Long> ids) {
+        this.ids = ids;
+    }
+
+    public Role getRole() {
+        return role;
+    }
+
+    public void setRole(Role role) {
+        this.role = role;
+    }
+
+    public LocalDateTime getCreatedFrom() {
+        return createdFrom;
+    }
+
+    public void setCreatedFrom(LocalDateTime createdFrom) {
+        this.createdFrom = createdFrom;
+    }
+
+    public LocalDateTime getCreatedTo() {
+        return createdTo;
+    }
+
+    public void setCreatedTo(LocalDateTime createdTo) {
+        this.createdTo = createdTo;
+    }
+}
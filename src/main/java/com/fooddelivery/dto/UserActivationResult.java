@@ -0,0 +1,22 @@
+package com.fooddelivery.dto;
+
+public class UserActivationResult {
+
+    // Сколько пользователей действительно изменили состояние
+    private long updated;
+
+    public UserActivationResult() {
+    }
+
+    public UserActivationResult(long updated) {
+        this.updated = updated;
+    }
+
+    public long getUpdated() {
+        return updated;
+    }
+
+    public void setUpdated(long updated) {
+        this.updated = updated;
+    }
+}
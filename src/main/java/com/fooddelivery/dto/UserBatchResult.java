@@ -0,0 +1,62 @@
+package com.fooddelivery.dto;
+
+public class UserBatchResult {
+
+    public enum Status {
+        CREATED,
+        CONFLICT
+    }
+
+    private int index;
+    private Status status;
+    private UserResponse user;
+    private String error;
+
+    public static UserBatchResult created(int index, UserResponse user) {
+        UserBatchResult result = new UserBatchResult();
+        result.setIndex(index);
+        result.setStatus(Status.CREATED);
+        result.setUser(user);
+        return result;
+    }
+
+    public static UserBatchResult conflict(int index, String error) {
+        UserBatchResult result = new UserBatchResult();
+        result.setIndex(index);
+        result.setStatus(Status.CONFLICT);
+        result.setError(error);
+        return result;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public UserResponse getUser() {
+        return user;
+    }
+
+    public void setUser(UserResponse user) {
+        this.user = user;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,43 @@
+package com.fooddelivery.dto;
+
+import java.util.List;
+
+public class UserChangesResponse {
+    private List<UserResponse> items;
+    // Передается в следующий запрос как since; не меняется, если изменений не было
+    private String nextToken;
+    private boolean hasMore;
+
+    public UserChangesResponse() {
+    }
+
+    public UserChangesResponse(List<UserResponse> items, String nextToken, boolean hasMore) {
+        this.items = items;
+        this.nextToken = nextToken;
+        this.hasMore = hasMore;
+    }
+
+    public List<UserResponse> getItems() {
+        return items;
+    }
+
+    public void setItems(List<UserResponse> items) {
+        this.items = items;
+    }
+
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    public void setNextToken(String nextToken) {
+        this.nextToken = nextToken;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+}
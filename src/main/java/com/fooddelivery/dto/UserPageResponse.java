@@ -0,0 +1,32 @@
+package com.fooddelivery.dto;
+
+import java.util.List;
+
+public class UserPageResponse {
+    private List<UserResponse> items;
+    private String nextCursor;
+
+    public UserPageResponse() {
+    }
+
+    public UserPageResponse(List<UserResponse> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<UserResponse> getItems() {
+        return items;
+    }
+
+    public void setItems(List<UserResponse> items) {
+        this.items = items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -1,5 +1,6 @@
 package com.fooddelivery.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fooddelivery.model.Role;
 import java.time.LocalDateTime;
 
@@ -13,6 +14,38 @@ public class UserResponse {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
+    // Отдается в заголовке ETag, а не в теле
+    @JsonIgnore
+    private Long version;
+
+    // Позиция в ленте изменений, из нее собирается токен
+    @JsonIgnore
+    private Long changeSeq;
+
+    public UserResponse() {
+    }
+
+    // Используется в JPQL constructor expression (UserRepository.USER_RESPONSE)
+    public UserResponse(Long id, String username, String email, String phone, Role role, boolean active,
+                        LocalDateTime createdAt, LocalDateTime updatedAt, Long version) {
+        this.id = id;
+        this.username = username;
+        this.email = email;
+        this.phone = phone;
+        this.role = role;
+        this.active = active;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.version = version;
+    }
+
+    // Используется в JPQL constructor expression (UserRepository.USER_CHANGE)
+    public UserResponse(Long id, String username, String email, String phone, Role role, boolean active,
+                        LocalDateTime createdAt, LocalDateTime updatedAt, Long version, Long changeSeq) {
+        this(id, username, email, phone, role, active, createdAt, updatedAt, version);
+        this.changeSeq = changeSeq;
+    }
+
     public Long getId() {
         return id;
     }
@@ -76,4 +109,20 @@ public class UserResponse {
     public void setUpdatedAt(LocalDateTime updatedAt) {
         this.updatedAt = updatedAt;
     }
-}
\ No newline at end of file
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Long getChangeSeq() {
+        return changeSeq;
+    }
+
+    public void setChangeSeq(Long changeSeq) {
+        this.changeSeq = changeSeq;
+    }
+}
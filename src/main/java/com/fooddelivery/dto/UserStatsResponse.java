@@ -0,0 +1,76 @@
+package com.fooddelivery.dto;
+
+import com.fooddelivery.model.Role;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+public class UserStatsResponse {
+
+    private long total;
+    private long active;
+    private long inactive;
+    private Map<Role, RoleCounts> roles = new EnumMap<>(Role.class);
+
+    public long getTotal() {
+        return total;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    public long getActive() {
+        return active;
+    }
+
+    public void setActive(long active) {
+        this.active = active;
+    }
+
+    public long getInactive() {
+        return inactive;
+    }
+
+    public void setInactive(long inactive) {
+        this.inactive = inactive;
+    }
+
+    public Map<Role, RoleCounts> getRoles() {
+        return roles;
+    }
+
+    public void setRoles(Map<Role, RoleCounts> roles) {
+        this.roles = roles;
+    }
+
+    public static class RoleCounts {
+
+        private long active;
+        private long inactive;
+
+        public RoleCounts() {
+        }
+
+        public RoleCounts(long active, long inactive) {
+            this.active = active;
+            this.inactive = inactive;
+        }
+
+        public long getActive() {
+            return active;
+        }
+
+        public void setActive(long active) {
+            this.active = active;
+        }
+
+        public long getInactive() {
+            return inactive;
+        }
+
+        public void setInactive(long inactive) {
+            this.inactive = inactive;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.fooddelivery.exception;
+
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.List;
+import java.util.Locale;
+
+// Уникальные ключи username и email: users (schema-h2.sql, User) и справочник шардов (directory-h2.sql).
+// Нарушение одного из них - гонка двух регистраций, ответ 409. Любое другое нарушение
+// целостности - ошибка в коде или схеме, она не должна выглядеть как дубликат
+public final class DuplicateUserKeys {
+
+    private static final List<String> CONSTRAINTS = List.of(
+            "UK_USERS_USERNAME", "UK_USERS_EMAIL", "UK_USER_DIRECTORY_USERNAME", "UK_USER_DIRECTORY_EMAIL");
+
+    private DuplicateUserKeys() {
+    }
+
+    // Имя ограничения есть в сообщении драйвера (JDBC и R2DBC), Hibernate разбирает его оттуда же
+    public static boolean isViolatedBy(DataIntegrityViolationException ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            String message = cause.getMessage();
+            if (message != null) {
+                String upper = message.toUpperCase(Locale.ROOT);
+                if (CONSTRAINTS.stream().anyMatch(upper::contains)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,7 @@
+package com.fooddelivery.exception;
+
+public class InvalidCredentialsException extends RuntimeException {
+    public InvalidCredentialsException() {
+        super("Invalid username or password");
+    }
+}
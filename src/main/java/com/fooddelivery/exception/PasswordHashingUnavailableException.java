@@ -0,0 +1,7 @@
+package com.fooddelivery.exception;
+
+public class PasswordHashingUnavailableException extends RuntimeException {
+    public PasswordHashingUnavailableException() {
+        super("Password hashing is temporarily overloaded, please retry");
+    }
+}
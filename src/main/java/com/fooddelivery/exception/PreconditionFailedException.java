@@ -0,0 +1,11 @@
+package com.fooddelivery.exception;
+
+public class PreconditionFailedException extends RuntimeException {
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+
+    public PreconditionFailedException(Long id, Long expectedVersion) {
+        super("User " + id + " has been modified, expected version " + expectedVersion);
+    }
+}
@@ -0,0 +1,18 @@
+package com.fooddelivery.exception;
+
+import java.time.Duration;
+
+public class RateLimitExceededException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public RateLimitExceededException(String endpoint, Duration retryAfter) {
+        super("Too many requests to " + endpoint + ", please retry later");
+        this.retryAfter = retryAfter;
+    }
+
+    // Retry-After в целых секундах, с округлением вверх
+    public long getRetryAfterSeconds() {
+        return Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+    }
+}
@@ -0,0 +1,7 @@
+package com.fooddelivery.exception;
+
+public class SearchIndexUnavailableException extends RuntimeException {
+    public SearchIndexUnavailableException() {
+        super("User search is warming up after restart, please retry");
+    }
+}
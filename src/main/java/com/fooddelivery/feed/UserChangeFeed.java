@@ -0,0 +1,377 @@
+package com.fooddelivery.feed;
+
+import com.fooddelivery.dto.UserChangesResponse;
+import com.fooddelivery.dto.UserResponse;
+import com.fooddelivery.repository.UserRepository;
+import com.fooddelivery.sharding.UserShards;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Лента изменений пользователей (GET /users/changes): пользователи, измененные транзакциями после
+// позиции клиента. Позиция (токен) - пара (changeSeq, id) последней отданной записи, см. UserChangeSequence.
+// Лента отдает только номера, до которых все транзакции завершены, поэтому токен не перескакивает
+// через изменение, которое закоммитится позже.
+//
+// Ожидающие клиенты (long-poll и SSE) обслуживаются одним потоком user-change-feed. Когда завершение
+// транзакции сдвигает видимую границу, поток перечитывает изменения - один запрос на каждый
+// различный токен: догнавшие ленту клиенты ждут с одним и тем же токеном.
+//
+// Сам поток в сокет не пишет. Long-poll завершается через DeferredResult, ответ пишет контейнер.
+// SSE-страницы встают в очередь подписчика, отправляют их потоки user-change-feed-send. Очередь
+// ограничена: если медленный клиент ее не разобрал, поток ленты пропускает его, а после разбора
+// очереди дочитывает изменения с токена последней страницы. Ничего не теряется, память не растет.
+@Component
+public class UserChangeFeed implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(UserChangeFeed.class);
+
+    public static final int MAX_LIMIT = 1000;
+
+    public static final int MAX_WAIT_SECONDS = 60;
+
+    // Токены прежнего формата "c:" (updatedAt, id) не принимаются: клиент начинает ленту заново
+    private static final String TOKEN_PREFIX = "s:";
+    private static final Comparator<UserResponse> CHANGE_ORDER =
+            Comparator.comparing(UserResponse::getChangeSeq).thenComparing(UserResponse::getId);
+    private static final Position BEGINNING = new Position(0L, 0L);
+    // Страниц в очереди одного SSE-подписчика
+    private static final int MAX_QUEUED_PAGES = 4;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserShards shards;
+
+    @Autowired
+    private UserChangeSequence changeSequence;
+
+    private final Duration sseTimeout;
+
+    private final Set<Waiter> waiters = ConcurrentHashMap.newKeySet();
+    private final ExecutorService executor;
+    private final ThreadPoolExecutor senders;
+
+    private final Object dispatchLock = new Object();
+    private boolean dispatchScheduled;
+    private boolean dispatchAgain;
+
+    public UserChangeFeed(@Value("${user.changes.sse-timeout:30m}") Duration sseTimeout,
+                          @Value("${user.changes.send-threads:8}") int sendThreads) {
+        this.sseTimeout = sseTimeout;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-change-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger sender = new AtomicInteger();
+        // Задача на подписчика одна, пока его очередь не разобрана, поэтому очередь задач не больше числа подписчиков
+        this.senders = new ThreadPoolExecutor(sendThreads, sendThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "user-change-feed-send-" + sender.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.senders.allowCoreThreadTimeOut(true);
+    }
+
+    @PostConstruct
+    void listen() {
+        changeSequence.onAdvance(this::scheduleDispatch);
+    }
+
+    public UserChangesResponse changesSince(String since, int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_LIMIT);
+        }
+        Position position = since != null ? decodeToken(since) : BEGINNING;
+        // Берем на одну запись больше, чтобы понять, есть ли продолжение
+        // С шардами позиция (changeSeq, id) общая: номера и id уникальны глобально, ответы шардов сливаются по ней
+        long until = changeSequence.visible();
+        List<UserResponse> users = shards.fanOut(() -> userRepository.findChangesAfter(position.changeSeq, position.id,
+                until, PageRequest.of(0, limit + 1)), CHANGE_ORDER, limit + 1);
+
+        boolean hasMore = users.size() > limit;
+        List<UserResponse> items = hasMore ? users.subList(0, limit) : users;
+        String nextToken = items.isEmpty() ? encodeToken(position)
+                : encodeToken(new Position(items.get(items.size() - 1).getChangeSeq(), items.get(items.size() - 1).getId()));
+        return new UserChangesResponse(items, nextToken, hasMore);
+    }
+
+    // Long-poll: ответ сразу, если изменения уже есть, иначе - при первом изменении или по истечении wait
+    // с пустым списком и тем же токеном
+    public DeferredResult<UserChangesResponse> poll(String since, int limit, int waitSeconds) {
+        if (waitSeconds < 0 || waitSeconds > MAX_WAIT_SECONDS) {
+            throw new IllegalArgumentException("Wait must be between 0 and " + MAX_WAIT_SECONDS + " seconds");
+        }
+        UserChangesResponse changes = changesSince(since, limit);
+        DeferredResult<UserChangesResponse> result = new DeferredResult<>(TimeUnit.SECONDS.toMillis(waitSeconds),
+                () -> new UserChangesResponse(List.of(), changes.getNextToken(), false));
+        if (!changes.getItems().isEmpty() || waitSeconds == 0) {
+            result.setResult(changes);
+            return result;
+        }
+
+        PollWaiter waiter = new PollWaiter(changes.getNextToken(), limit, result);
+        result.onCompletion(() -> waiters.remove(waiter));
+        waiters.add(waiter);
+        // Граница могла сдвинуться между чтением и регистрацией ожидающего
+        scheduleDispatch();
+        return result;
+    }
+
+    // SSE: сначала все накопившиеся изменения страницами, затем новые по мере коммитов.
+    // id события - токен, поэтому после переподключения клиент продолжает с Last-Event-ID
+    public SseEmitter subscribe(String since, int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_LIMIT);
+        }
+        String token = encodeToken(since != null ? decodeToken(since) : BEGINNING);
+        SseEmitter emitter = new SseEmitter(sseTimeout.toMillis());
+        SseWaiter waiter = new SseWaiter(token, limit, emitter);
+        emitter.onCompletion(() -> waiters.remove(waiter));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(error -> waiters.remove(waiter));
+        waiters.add(waiter);
+        executor.execute(() -> deliver(List.of(waiter)));
+        scheduleDispatch();
+        return emitter;
+    }
+
+    public int getWaitingPolls() {
+        return (int) waiters.stream().filter(waiter -> waiter instanceof PollWaiter).count();
+    }
+
+    public int getSubscribers() {
+        return (int) waiters.stream().filter(waiter -> waiter instanceof SseWaiter).count();
+    }
+
+    // Проходы не накладываются: сдвиг границы во время прохода запускает еще один
+    private void scheduleDispatch() {
+        synchronized (dispatchLock) {
+            if (waiters.isEmpty()) {
+                return;
+            }
+            if (dispatchScheduled) {
+                dispatchAgain = true;
+                return;
+            }
+            dispatchScheduled = true;
+        }
+        executor.execute(this::dispatch);
+    }
+
+    private void dispatch() {
+        while (true) {
+            try {
+                deliver(new ArrayList<>(waiters));
+            } catch (RuntimeException e) {
+                log.warn("Change feed dispatch failed: {}", e.toString());
+            }
+            synchronized (dispatchLock) {
+                if (!dispatchAgain || waiters.isEmpty()) {
+                    dispatchScheduled = false;
+                    dispatchAgain = false;
+                    return;
+                }
+                dispatchAgain = false;
+            }
+        }
+    }
+
+    // Один запрос на каждую пару (токен, limit). SSE-подписчик получает страницы, пока они полные
+    // и в его очереди есть место
+    private void deliver(List<Waiter> pending) {
+        Map<String, UserChangesResponse> pages = new HashMap<>();
+        List<Waiter> current = pending;
+        while (!current.isEmpty()) {
+            List<Waiter> next = new ArrayList<>();
+            for (Waiter waiter : current) {
+                if (!waiters.contains(waiter) || !waiter.accepts()) {
+                    continue;
+                }
+                UserChangesResponse changes = pages.computeIfAbsent(waiter.token + "|" + waiter.limit,
+                        key -> changesSince(waiter.token, waiter.limit));
+                if (!changes.getItems().isEmpty() && waiter.send(changes) && changes.isHasMore()) {
+                    next.add(waiter);
+                }
+            }
+            current = next;
+        }
+    }
+
+    private static String encodeToken(Position position) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(
+                (TOKEN_PREFIX + position.changeSeq + "/" + position.id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Position decodeToken(String token) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = decoded.lastIndexOf('/');
+            if (!decoded.startsWith(TOKEN_PREFIX) || separator < 0) {
+                throw new IllegalArgumentException("Invalid change token: " + token);
+            }
+            return new Position(Long.parseLong(decoded.substring(TOKEN_PREFIX.length(), separator)),
+                    Long.parseLong(decoded.substring(separator + 1)));
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException тоже попадает сюда
+            throw new IllegalArgumentException("Invalid change token: " + token);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+        senders.shutdownNow();
+        waiters.forEach(Waiter::close);
+    }
+
+    private record Position(Long changeSeq, Long id) {
+    }
+
+    private abstract class Waiter {
+        String token;
+        final int limit;
+
+        Waiter(String token, int limit) {
+            this.token = token;
+            this.limit = limit;
+        }
+
+        // false - следующую страницу сейчас не отдавать: ожидание закончено или очередь подписчика полна
+        abstract boolean send(UserChangesResponse changes);
+
+        boolean accepts() {
+            return true;
+        }
+
+        abstract void close();
+    }
+
+    private final class PollWaiter extends Waiter {
+        private final DeferredResult<UserChangesResponse> result;
+
+        PollWaiter(String token, int limit, DeferredResult<UserChangesResponse> result) {
+            super(token, limit);
+            this.result = result;
+        }
+
+        @Override
+        boolean send(UserChangesResponse changes) {
+            waiters.remove(this);
+            result.setResult(changes);
+            return false;
+        }
+
+        @Override
+        void close() {
+            result.setResult(new UserChangesResponse(List.of(), token, false));
+        }
+    }
+
+    private final class SseWaiter extends Waiter {
+        private final SseEmitter emitter;
+        // Очередь и флаги - под монитором подписчика: пишет поток ленты, читает поток отправки
+        private final Deque<UserChangesResponse> queue = new ArrayDeque<>();
+        private boolean sending;
+        // Поток ленты пропустил подписчика из-за полной очереди
+        private boolean behind;
+
+        SseWaiter(String token, int limit, SseEmitter emitter) {
+            super(token, limit);
+            this.emitter = emitter;
+        }
+
+        @Override
+        synchronized boolean accepts() {
+            if (queue.size() >= MAX_QUEUED_PAGES) {
+                behind = true;
+                return false;
+            }
+            return true;
+        }
+
+        // Токен сдвигается при постановке в очередь: следующий запрос ленты продолжает после этой страницы
+        @Override
+        synchronized boolean send(UserChangesResponse changes) {
+            queue.add(changes);
+            token = changes.getNextToken();
+            if (!sending) {
+                sending = true;
+                senders.execute(this::drain);
+            }
+            return accepts();
+        }
+
+        private void drain() {
+            while (true) {
+                UserChangesResponse changes;
+                boolean catchUp = false;
+                synchronized (this) {
+                    changes = queue.poll();
+                    if (changes == null) {
+                        sending = false;
+                        catchUp = behind;
+                        behind = false;
+                    }
+                }
+                if (changes == null) {
+                    if (catchUp) {
+                        scheduleDispatch();
+                    }
+                    return;
+                }
+                try {
+                    emitter.send(SseEmitter.event()
+                            .id(changes.getNextToken())
+                            .name("users")
+                            .data(changes, MediaType.APPLICATION_JSON));
+                } catch (IOException | IllegalStateException e) {
+                    // Клиент отключился или поток уже завершен по таймауту
+                    waiters.remove(this);
+                    synchronized (this) {
+                        queue.clear();
+                        sending = false;
+                    }
+                    emitter.completeWithError(e);
+                    return;
+                }
+            }
+        }
+
+        @Override
+        void close() {
+            emitter.complete();
+        }
+    }
+}
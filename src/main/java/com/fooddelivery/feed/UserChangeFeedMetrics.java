@@ -0,0 +1,25 @@
+package com.fooddelivery.feed;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+// Сколько клиентов ленты изменений держат открытые соединения
+@Component
+public class UserChangeFeedMetrics implements MeterBinder {
+
+    @Autowired
+    private UserChangeFeed changeFeed;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("user.changes.waiting", changeFeed, UserChangeFeed::getWaitingPolls)
+                .description("Long-poll requests to /users/changes waiting for a change")
+                .register(registry);
+        Gauge.builder("user.changes.subscribers", changeFeed, UserChangeFeed::getSubscribers)
+                .description("Open Server-Sent Events streams on /users/changes")
+                .register(registry);
+    }
+}
@@ -0,0 +1,98 @@
+package com.fooddelivery.feed;
+
+import com.fooddelivery.repository.UserRepository;
+import com.fooddelivery.sharding.UserShards;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Позиция в ленте изменений. Каждая пишущая транзакция получает номер (change_seq) при первой записи
+// пользователя, все ее строки помечаются им. Номера выдаются по возрастанию, а коммитятся транзакции
+// в любом порядке, поэтому лента видит номера только до первой еще открытой транзакции: все, что
+// ниже, уже закоммичено или откатилось, и токен клиента не перескочит через изменение.
+//
+// Открытые транзакции известны только этому процессу: писать в БД должен один экземпляр приложения.
+// С шардами номера общие для всех шардов, у транзакции каждого шарда свой номер.
+@Component
+public class UserChangeSequence {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserShards shards;
+
+    private final TreeSet<Long> open = new TreeSet<>();
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    // Последний выданный номер; до первого обращения - неизвестен и читается из БД
+    private long last;
+    private boolean loaded;
+
+    // Номер текущей транзакции, при первом вызове в транзакции - новый
+    public long current() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Change sequence requires an active transaction");
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof Allocation allocation) {
+                return allocation.seq;
+            }
+        }
+        long seq;
+        synchronized (this) {
+            load();
+            seq = ++last;
+            open.add(seq);
+        }
+        TransactionSynchronizationManager.registerSynchronization(new Allocation(seq));
+        return seq;
+    }
+
+    // Наибольший номер, до которого все транзакции завершены
+    public synchronized long visible() {
+        load();
+        return open.isEmpty() ? last : open.first() - 1;
+    }
+
+    // listener вызывается в потоке завершившейся транзакции, если она сдвинула visible()
+    public void onAdvance(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    private void release(long seq) {
+        boolean advanced;
+        synchronized (this) {
+            advanced = seq == open.first();
+            open.remove(seq);
+        }
+        if (advanced) {
+            listeners.forEach(Runnable::run);
+        }
+    }
+
+    private void load() {
+        if (!loaded) {
+            last = shards.fanOut(() -> List.of(userRepository.findMaxChangeSeq()), Comparator.reverseOrder(), 1).get(0);
+            loaded = true;
+        }
+    }
+
+    private final class Allocation implements TransactionSynchronization {
+        private final long seq;
+
+        Allocation(long seq) {
+            this.seq = seq;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            release(seq);
+        }
+    }
+}
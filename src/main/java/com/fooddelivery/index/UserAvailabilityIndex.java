@@ -0,0 +1,123 @@
+package com.fooddelivery.index;
+
+import com.fooddelivery.repository.UserRepository;
+import com.fooddelivery.sharding.UserShards;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.stream.Stream;
+
+// Индекс занятых username/email. "Нет в фильтре" означает "точно свободно",
+// "есть в фильтре" нужно подтверждать запросом в БД.
+@Component
+public class UserAvailabilityIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(UserAvailabilityIndex.class);
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private UserShards shards;
+
+    @Value("${user.availability.expected-insertions:1000000}")
+    private long expectedInsertions;
+
+    @Value("${user.availability.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    @Value("${user.index.background-rebuild:false}")
+    private boolean backgroundRebuild;
+
+    // null, пока фильтр строится: любое значение считается возможно занятым
+    private volatile BloomFilter usernames;
+    private volatile BloomFilter emails;
+
+    // Строящиеся фильтры, в них попадают и регистрации, прошедшие во время перестроения
+    private volatile BloomFilter pendingUsernames;
+    private volatile BloomFilter pendingEmails;
+
+    @PostConstruct
+    void init() {
+        if (!backgroundRebuild) {
+            rebuild();
+        }
+    }
+
+    // Фоновое построение начинается после старта, чтобы не отнимать процессор у инициализации контекста
+    @EventListener(ApplicationReadyEvent.class)
+    void rebuildInBackground() {
+        if (backgroundRebuild) {
+            Thread thread = new Thread(this::rebuild, "availability-index-rebuild");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    public void rebuild() {
+        long started = System.nanoTime();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        // Запас в два раза, чтобы фильтр не деградировал сразу после старта
+        long users = 0;
+        for (int shard = 0; shard < shards.count(); shard++) {
+            users += shards.onShard(shard, userRepository::count);
+        }
+        long capacity = Math.max(expectedInsertions, users * 2);
+        BloomFilter newUsernames = new BloomFilter(capacity, falsePositiveRate);
+        BloomFilter newEmails = new BloomFilter(capacity, falsePositiveRate);
+        pendingUsernames = newUsernames;
+        pendingEmails = newEmails;
+        shards.forEachShard(() -> transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<String> stream = userRepository.streamAllUsernames()) {
+                stream.forEach(newUsernames::put);
+            }
+            try (Stream<String> stream = userRepository.streamAllEmails()) {
+                stream.forEach(newEmails::put);
+            }
+        }));
+        usernames = newUsernames;
+        emails = newEmails;
+        pendingUsernames = null;
+        pendingEmails = null;
+        log.info("Availability index rebuilt in {} ms", (System.nanoTime() - started) / 1_000_000);
+    }
+
+    public void addUsername(String username) {
+        put(usernames, pendingUsernames, username);
+    }
+
+    public void addEmail(String email) {
+        put(emails, pendingEmails, email);
+    }
+
+    public boolean mightContainUsername(String username) {
+        BloomFilter filter = usernames;
+        return filter == null || filter.mightContain(username);
+    }
+
+    public boolean mightContainEmail(String email) {
+        BloomFilter filter = emails;
+        return filter == null || filter.mightContain(email);
+    }
+
+    private static void put(BloomFilter current, BloomFilter pending, String value) {
+        if (current != null) {
+            current.put(value);
+        }
+        if (pending != null) {
+            pending.put(value);
+        }
+    }
+}
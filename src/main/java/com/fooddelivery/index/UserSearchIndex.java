@@ -0,0 +1,403 @@
+package com.fooddelivery.index;
+
+import com.fooddelivery.dto.UserResponse;
+import com.fooddelivery.model.Role;
+import com.fooddelivery.repository.UserRepository;
+import com.fooddelivery.sharding.UserShards;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+// Поиск по подстроке в username, email и phone. Каждое поле разбивается на триграммы,
+// кандидаты - пересечение списков триграмм запроса, затем подстрока проверяется по самому полю.
+// Запросы короче трех символов ищутся только как префикс поля.
+@Component
+public class UserSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(UserSearchIndex.class);
+
+    private static final int GRAM = 3;
+
+    // Ранги совпадений: 0 - префикс username, 1 - префикс email/phone, 2 - подстрока.
+    // Ключи префиксов начинаются с управляющего символа и не пересекаются с триграммами.
+    private static final String USERNAME_PREFIX = "\u0001";
+    private static final String OTHER_PREFIX = "\u0002";
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private UserShards shards;
+
+    @Value("${user.index.background-rebuild:false}")
+    private boolean backgroundRebuild;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Номер документа растет с каждой записью, поэтому списки в postings всегда отсортированы.
+    // При изменении пользователя старый документ обнуляется и добавляется новый.
+    private final List<Document> documents = new ArrayList<>();
+    private final Map<Long, Integer> documentsById = new HashMap<>();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private int removed;
+    private volatile boolean ready;
+
+    @PostConstruct
+    void init() {
+        if (!backgroundRebuild) {
+            rebuild();
+        }
+    }
+
+    // Фоновое построение начинается после старта, чтобы не отнимать процессор у инициализации контекста
+    @EventListener(ApplicationReadyEvent.class)
+    void rebuildInBackground() {
+        if (backgroundRebuild) {
+            Thread thread = new Thread(this::load, "search-index-rebuild");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    public void rebuild() {
+        long started = System.nanoTime();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        lock.writeLock().lock();
+        try {
+            clear();
+            shards.forEachShard(() -> transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<UserResponse> users = userRepository.streamAllResponses()) {
+                    users.forEach(this::add);
+                }
+            }));
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Search index rebuilt in {} ms, {} users", (System.nanoTime() - started) / 1_000_000, size());
+    }
+
+    // Заполнение пустого индекса без остановки записи: блокировка берется на каждую строку,
+    // а пользователи, уже добавленные через put() во время загрузки, не перезаписываются
+    // прочитанной из базы (возможно, более старой) версией
+    void load() {
+        long started = System.nanoTime();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        shards.forEachShard(() -> transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<UserResponse> users = userRepository.streamAllResponses()) {
+                users.forEach(user -> {
+                    lock.writeLock().lock();
+                    try {
+                        if (!documentsById.containsKey(user.getId())) {
+                            add(user);
+                        }
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                });
+            }
+        }));
+        ready = true;
+        log.info("Search index loaded in {} ms, {} users", (System.nanoTime() - started) / 1_000_000, size());
+    }
+
+    // false, пока индекс заполняется в фоне: результаты поиска были бы неполными
+    public boolean isReady() {
+        return ready;
+    }
+
+    // afterCommit двух изменений одного пользователя выполняются в разных потоках и могут прийти
+    // в обратном порядке. Более старая версия не заменяет новую, как в UserCache
+    public void put(UserResponse user) {
+        lock.writeLock().lock();
+        try {
+            Integer previous = documentsById.get(user.getId());
+            if (previous != null) {
+                Document document = documents.get(previous);
+                if (version(user) < document.version) {
+                    return;
+                }
+                if (document.matches(user)) {
+                    document.version = version(user);
+                    return;
+                }
+                documents.set(previous, null);
+                removed++;
+            }
+            add(user);
+            // Удаленные документы остаются в postings; когда их больше половины, индекс пересобирается
+            if (removed > 1024 && removed > documentsById.size()) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // id пользователей в порядке ранга, внутри ранга - в порядке добавления в индекс.
+    // Ранги перебираются по очереди, каждый по своему набору списков, поэтому поиск
+    // останавливается, как только набрано limit совпадений, даже для очень частых подстрок.
+    public List<Long> search(String query, Role role, int limit) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty() || limit < 1) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            List<Long> result = new ArrayList<>(limit);
+            String prefix = normalized.substring(0, Math.min(GRAM, normalized.length()));
+            collect(lookup(USERNAME_PREFIX + prefix, normalized), normalized, role, 0, limit, result);
+            collect(lookup(OTHER_PREFIX + prefix, normalized), normalized, role, 1, limit, result);
+            if (normalized.length() >= GRAM) {
+                collect(lookup(null, normalized), normalized, role, 2, limit, result);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documentsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Оценка занимаемой кучи в байтах (64-bit JVM, сжатые указатели, строки Latin-1)
+    public long memoryBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = 16 + 4L * documents.size();
+            for (Document document : documents) {
+                if (document != null) {
+                    bytes += document.memoryBytes();
+                }
+            }
+            // Узел HashMap + Long + Integer
+            bytes += 64L * documentsById.size();
+            for (Map.Entry<String, Postings> entry : postings.entrySet()) {
+                // Узел HashMap + ключ String + Postings + int[]
+                bytes += 32 + stringBytes(entry.getKey()) + 16 + 16 + 4L * entry.getValue().docs.length;
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Списки для ключа префикса (если он задан) и всех триграмм запроса; null, если хотя бы одного нет
+    private Postings[] lookup(String prefixKey, String query) {
+        Set<String> keys = new HashSet<>();
+        if (prefixKey != null) {
+            keys.add(prefixKey);
+        }
+        addGrams(query, keys);
+        Postings[] lists = new Postings[keys.size()];
+        int i = 0;
+        for (String key : keys) {
+            Postings list = postings.get(key);
+            if (list == null) {
+                return null;
+            }
+            lists[i++] = list;
+        }
+        // Перебираем самый короткий список, остальные проверяем бинарным поиском
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+        return lists;
+    }
+
+    private void collect(Postings[] lists, String query, Role role, int rank, int limit, List<Long> result) {
+        if (lists == null) {
+            return;
+        }
+        Postings shortest = lists[0];
+        for (int i = 0; i < shortest.size && result.size() < limit; i++) {
+            int doc = shortest.docs[i];
+            if (!containsAll(lists, doc)) {
+                continue;
+            }
+            Document document = documents.get(doc);
+            // Точный ранг отсекает ложные совпадения триграмм и повторы из предыдущих рангов
+            if (document != null && (role == null || document.role == role) && document.rank(query) == rank) {
+                result.add(document.id);
+            }
+        }
+    }
+
+    private static boolean containsAll(Postings[] lists, int doc) {
+        for (int i = 1; i < lists.length; i++) {
+            if (Arrays.binarySearch(lists[i].docs, 0, lists[i].size, doc) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void add(UserResponse user) {
+        Document document = new Document(user.getId(), normalize(user.getUsername()),
+                normalize(user.getEmail()), normalize(user.getPhone()), user.getRole(), version(user));
+        int doc = documents.size();
+        documents.add(document);
+        documentsById.put(document.id, doc);
+
+        Set<String> keys = new HashSet<>();
+        addPrefixes(USERNAME_PREFIX, document.username, keys);
+        addPrefixes(OTHER_PREFIX, document.email, keys);
+        addPrefixes(OTHER_PREFIX, document.phone, keys);
+        for (String field : document.fields()) {
+            addGrams(field, keys);
+        }
+        for (String key : keys) {
+            postings.computeIfAbsent(key, k -> new Postings()).add(doc);
+        }
+    }
+
+    private void compact() {
+        List<Document> live = new ArrayList<>(documentsById.size());
+        for (Document document : documents) {
+            if (document != null) {
+                live.add(document);
+            }
+        }
+        clear();
+        for (Document document : live) {
+            UserResponse user = new UserResponse();
+            user.setId(document.id);
+            user.setUsername(document.username);
+            user.setEmail(document.email);
+            user.setPhone(document.phone);
+            user.setRole(document.role);
+            user.setVersion(document.version);
+            add(user);
+        }
+    }
+
+    private void clear() {
+        documents.clear();
+        documentsById.clear();
+        postings.clear();
+        removed = 0;
+    }
+
+    // Префиксы длиной до триграммы с меткой поля: по ним ищутся ранги 0 и 1 и короткие запросы
+    private static void addPrefixes(String marker, String value, Set<String> keys) {
+        for (int length = 1; length <= GRAM && length <= value.length(); length++) {
+            keys.add(marker + value.substring(0, length));
+        }
+    }
+
+    private static void addGrams(String value, Set<String> keys) {
+        for (int i = 0; i + GRAM <= value.length(); i++) {
+            keys.add(value.substring(i, i + GRAM));
+        }
+    }
+
+    private static String normalize(String value) {
+        return value != null ? value.trim().toLowerCase(Locale.ROOT) : "";
+    }
+
+    private static long version(UserResponse user) {
+        return user.getVersion() != null ? user.getVersion() : -1L;
+    }
+
+    private static long stringBytes(String value) {
+        // String + byte[]
+        return 24 + 16 + ((value.length() + 7) & ~7);
+    }
+
+    private static final class Document {
+        private final long id;
+        private final String username;
+        private final String email;
+        private final String phone;
+        private final Role role;
+        private long version;
+
+        private Document(long id, String username, String email, String phone, Role role, long version) {
+            this.id = id;
+            this.username = username;
+            this.email = email;
+            this.phone = phone;
+            this.role = role;
+            this.version = version;
+        }
+
+        private String[] fields() {
+            return new String[] {username, email, phone};
+        }
+
+        private boolean matches(UserResponse user) {
+            return username.equals(normalize(user.getUsername()))
+                    && email.equals(normalize(user.getEmail()))
+                    && phone.equals(normalize(user.getPhone()))
+                    && role == user.getRole();
+        }
+
+        private int rank(String query) {
+            if (username.startsWith(query)) {
+                return 0;
+            }
+            if (email.startsWith(query) || phone.startsWith(query)) {
+                return 1;
+            }
+            if (query.length() >= GRAM
+                    && (username.contains(query) || email.contains(query) || phone.contains(query))) {
+                return 2;
+            }
+            // Совпали все триграммы, но не подряд
+            return -1;
+        }
+
+        private long memoryBytes() {
+            return 48 + stringBytes(username) + stringBytes(email) + stringBytes(phone);
+        }
+    }
+
+    private static final class Postings {
+        private int[] docs = new int[4];
+        private int size;
+
+        private void add(int doc) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            docs[size++] = doc;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.fooddelivery.index;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+// Размер поискового индекса: он целиком в куче и растет вместе с таблицей пользователей
+@Component
+public class UserSearchIndexMetrics implements MeterBinder {
+
+    @Autowired
+    private UserSearchIndex searchIndex;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("user.search.index.memory", searchIndex, UserSearchIndex::memoryBytes)
+                .baseUnit(BaseUnits.BYTES)
+                .description("Estimated heap used by the user search index")
+                .register(registry);
+        Gauge.builder("user.search.index.documents", searchIndex, UserSearchIndex::size)
+                .description("Users in the search index")
+                .register(registry);
+        Gauge.builder("user.search.index.terms", searchIndex, UserSearchIndex::termCount)
+                .description("Distinct trigrams and short prefixes in the search index")
+                .register(registry);
+    }
+}
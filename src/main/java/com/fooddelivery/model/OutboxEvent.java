@@ -0,0 +1,87 @@
+package com.fooddelivery.model;
+
+import com.fooddelivery.sharding.ShardedIdGenerator;
+import jakarta.persistence.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import java.time.LocalDateTime;
+
+// Событие о пользователе, записанное в той же транзакции, что и само изменение.
+// Строка удаляется после доставки в UserEventSink, поэтому таблица содержит только недоставленные события
+@Entity
+@Table(name = "user_outbox")
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(generator = "user_outbox_seq")
+    @GenericGenerator(name = "user_outbox_seq", type = ShardedIdGenerator.class, parameters = {
+            @Parameter(name = "sequence_name", value = "user_outbox_seq"),
+            @Parameter(name = "increment_size", value = "50")
+    })
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false, length = 32)
+    private UserEventType type;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    // UserResponse в JSON на момент изменения
+    @Column(nullable = false, length = 4000)
+    private String payload;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public OutboxEvent() {
+        this.createdAt = LocalDateTime.now();
+    }
+
+    public OutboxEvent(UserEventType type, Long userId, String payload) {
+        this();
+        this.type = type;
+        this.userId = userId;
+        this.payload = payload;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public UserEventType getType() {
+        return type;
+    }
+
+    public void setType(UserEventType type) {
+        this.type = type;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -1,20 +1,40 @@
 package com.fooddelivery.model;
 
+import com.fooddelivery.sharding.ShardedIdGenerator;
 import jakarta.persistence.*;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import java.time.LocalDateTime;
 
+// UPDATE содержит только измененные колонки: смена телефона не переписывает username, email и password
 @Entity
-@Table(name = "users")
+@DynamicUpdate
+@Table(name = "users", uniqueConstraints = {
+        // Имена ключей разбирает GlobalExceptionHandler (DuplicateUserKeys), поэтому они заданы явно
+        @UniqueConstraint(name = "uk_users_username", columnNames = "username"),
+        @UniqueConstraint(name = "uk_users_email", columnNames = "email")
+}, indexes = {
+        @Index(name = "idx_users_role_id", columnList = "role, id"),
+        // Лента изменений GET /users/changes: keyset по (change_seq, id)
+        @Index(name = "idx_users_change_seq_id", columnList = "change_seq, id")
+})
 public class User {
 
+    // Пул из последовательности вместо IDENTITY: id известен до INSERT, и Hibernate может батчить вставки.
+    // С шардированием id выдает глобальный UserIdAllocator, см. ShardedIdGenerator
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "users_seq")
+    @GenericGenerator(name = "users_seq", type = ShardedIdGenerator.class, parameters = {
+            @Parameter(name = "sequence_name", value = "users_seq"),
+            @Parameter(name = "increment_size", value = "50")
+    })
     private Long id;
 
-    @Column(nullable = false, unique = true)
+    @Column(nullable = false)
     private String username;
 
-    @Column(nullable = false, unique = true)
+    @Column(nullable = false)
     private String email;
 
     @Column(nullable = false)
@@ -34,6 +54,19 @@ public class User {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    // Оптимистическая блокировка: UPDATE ... WHERE version = ?, значение же служит ETag пользователя
+    @Version
+    private Long version;
+
+    // Номер транзакции, последней изменившей пользователя, - позиция в ленте изменений (UserChangeSequence)
+    @Column(name = "change_seq")
+    private Long changeSeq;
+
+    // С шардированием id выдается до persist, чтобы по нему выбрать шард (ShardedIdGenerator вернет его).
+    // Сам id до persist не выставляется: Hibernate считал бы сущность с id и без версии отсоединенной
+    @Transient
+    private Long assignedId;
+
     public User() {
         this.createdAt = LocalDateTime.now();
     }
@@ -118,6 +151,37 @@ public class User {
         this.updatedAt = updatedAt;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Long getChangeSeq() {
+        return changeSeq;
+    }
+
+    public void setChangeSeq(Long changeSeq) {
+        this.changeSeq = changeSeq;
+    }
+
+    public Long getAssignedId() {
+        return assignedId;
+    }
+
+    public void setAssignedId(Long assignedId) {
+        this.assignedId = assignedId;
+    }
+
+    // updatedAt выставляется и при вставке. Время берется при persist, а не в конструкторе,
+    // чтобы оно было близко к коммиту
+    @PrePersist
+    protected void onCreate() {
+        this.updatedAt = LocalDateTime.now();
+    }
+
     @PreUpdate
     protected void onUpdate() {
         this.updatedAt = LocalDateTime.now();
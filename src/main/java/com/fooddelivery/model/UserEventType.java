@@ -0,0 +1,8 @@
+package com.fooddelivery.model;
+
+public enum UserEventType {
+    USER_REGISTERED,
+    USER_UPDATED,
+    USER_ACTIVATED,
+    USER_DEACTIVATED
+}
@@ -0,0 +1,97 @@
+package com.fooddelivery.outbox;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fooddelivery.model.OutboxEvent;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+// События построчно в NDJSON-файл: {"id":..,"type":..,"userId":..,"createdAt":..,"payload":{...}}.
+// Пачка пишется одним вызовом и сбрасывается на диск до возврата, иначе удаление из outbox
+// могло бы опередить запись в файл.
+@Component
+@ConditionalOnProperty(name = "user.outbox.sink", havingValue = "file", matchIfMissing = true)
+public class FileUserEventSink implements UserEventSink, DisposableBean {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Path file;
+    private FileChannel channel;
+
+    public FileUserEventSink(@Value("${user.outbox.file:events/user-events.ndjson}") Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public synchronized void publish(List<OutboxEvent> events) {
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(events.size() * 512);
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(buffer)) {
+                // Строки разделяются только переводом строки, без пробела между корневыми объектами
+                generator.setRootValueSeparator(null);
+                for (OutboxEvent event : events) {
+                    generator.writeStartObject();
+                    generator.writeNumberField("id", event.getId());
+                    generator.writeStringField("type", event.getType().name());
+                    generator.writeNumberField("userId", event.getUserId());
+                    generator.writeStringField("createdAt", event.getCreatedAt().toString());
+                    generator.writeFieldName("payload");
+                    generator.writeRawValue(event.getPayload());
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                }
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+            FileChannel target = channel();
+            while (bytes.hasRemaining()) {
+                target.write(bytes);
+            }
+            target.force(false);
+        } catch (IOException e) {
+            closeQuietly();
+            throw new UncheckedIOException("Cannot write user events to " + file, e);
+        }
+    }
+
+    private FileChannel channel() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+
+    @Override
+    public synchronized void destroy() {
+        closeQuietly();
+    }
+
+    private void closeQuietly() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Файл переоткроется при следующей пачке
+            }
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.fooddelivery.outbox;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+// Отставание outbox: lag растет, если получатель недоступен или не успевает за записью
+@Component
+public class OutboxMetrics implements MeterBinder {
+
+    @Autowired
+    private OutboxRelay outboxRelay;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("user.outbox.lag", outboxRelay, OutboxRelay::getLagSeconds)
+                .baseUnit("seconds")
+                .description("Age of the oldest user event not yet delivered to the sink")
+                .register(registry);
+        FunctionCounter.builder("user.outbox.published", outboxRelay, OutboxRelay::getPublishedCount)
+                .description("User events delivered to the sink")
+                .register(registry);
+        FunctionCounter.builder("user.outbox.failures", outboxRelay, OutboxRelay::getFailureCount)
+                .description("Outbox delivery attempts that failed and will be retried")
+                .register(registry);
+    }
+}
@@ -0,0 +1,145 @@
+package com.fooddelivery.outbox;
+
+import com.fooddelivery.model.OutboxEvent;
+import com.fooddelivery.repository.OutboxEventRepository;
+import com.fooddelivery.sharding.UserShards;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+// Фоновая доставка outbox: раз в flush-interval читает пачку из batch-size самых старых событий,
+// отдает ее в UserEventSink и удаляет. Пока пачки полные, следующая читается сразу.
+// Чтение, отправка и удаление - отдельные шаги: соединение из пула не держится, пока отвечает получатель.
+// Сбой между отправкой и удалением приводит к повторной отправке (at-least-once).
+// Рассчитано на один экземпляр приложения на БД: второй экземпляр доставлял бы те же события повторно.
+// С шардированием у каждого шарда своя таблица user_outbox, шарды обходятся по очереди.
+@Component
+public class OutboxRelay implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private UserEventSink sink;
+
+    @Autowired
+    private UserShards shards;
+
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final boolean enabled;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    // created_at самого старого события, которое на последнем цикле осталось недоставленным
+    private volatile LocalDateTime oldestPending;
+
+    private ScheduledExecutorService executor;
+
+    public OutboxRelay(@Value("${user.outbox.batch-size:500}") int batchSize,
+                       @Value("${user.outbox.flush-interval:200ms}") Duration flushInterval,
+                       @Value("${user.outbox.enabled:true}") boolean enabled) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("user.outbox.batch-size must be positive");
+        }
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.enabled = enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void start() {
+        if (!enabled || executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-outbox-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::drainQuietly, 0, flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    // Доставляет все события, закоммиченные до вызова; возвращает их число
+    public synchronized int drain() {
+        int delivered = 0;
+        for (int shard = 0; shard < shards.count(); shard++) {
+            delivered += shards.onShard(shard, this::drainShard);
+        }
+        return delivered;
+    }
+
+    private int drainShard() {
+        int delivered = 0;
+        while (true) {
+            List<OutboxEvent> batch = outboxEventRepository.findNextBatch(PageRequest.of(0, batchSize));
+            if (batch.isEmpty()) {
+                oldestPending = null;
+                return delivered;
+            }
+            oldestPending = batch.get(0).getCreatedAt();
+            sink.publish(batch);
+            outboxEventRepository.deleteAllByIdInBatch(batch.stream().map(OutboxEvent::getId).collect(Collectors.toList()));
+            published.add(batch.size());
+            delivered += batch.size();
+            if (batch.size() < batchSize) {
+                oldestPending = null;
+                return delivered;
+            }
+        }
+    }
+
+    private void drainQuietly() {
+        try {
+            drain();
+        } catch (RuntimeException e) {
+            // Пачка остается в таблице и уходит повторно через flush-interval
+            failures.increment();
+            log.warn("Outbox delivery failed, retrying in {} ms: {}", flushInterval.toMillis(), e.toString());
+        }
+    }
+
+    public long getPublishedCount() {
+        return published.sum();
+    }
+
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    // Возраст самого старого недоставленного события. Новые события попадают в оценку
+    // на следующем цикле, поэтому значение может отставать на flush-interval
+    public double getLagSeconds() {
+        LocalDateTime oldest = oldestPending;
+        if (oldest == null) {
+            return 0;
+        }
+        return Math.max(0, ChronoUnit.MILLIS.between(oldest, LocalDateTime.now())) / 1000.0;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+}
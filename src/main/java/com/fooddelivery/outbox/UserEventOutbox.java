@@ -0,0 +1,79 @@
+package com.fooddelivery.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fooddelivery.dto.UserResponse;
+import com.fooddelivery.model.OutboxEvent;
+import com.fooddelivery.model.UserEventType;
+import com.fooddelivery.repository.OutboxEventRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Запись событий в user_outbox. MANDATORY: событие сохраняется только вместе с изменением,
+// которое его вызвало, и откатывается вместе с ним. Доставляет события OutboxRelay.
+@Component
+@Transactional(propagation = Propagation.MANDATORY)
+public class UserEventOutbox {
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    public void userRegistered(UserResponse user) {
+        outboxEventRepository.save(event(UserEventType.USER_REGISTERED, user, null));
+    }
+
+    public void usersRegistered(List<UserResponse> users) {
+        List<OutboxEvent> events = new ArrayList<>(users.size());
+        for (UserResponse user : users) {
+            events.add(event(UserEventType.USER_REGISTERED, user, null));
+        }
+        outboxEventRepository.saveAll(events);
+    }
+
+    public void userUpdated(UserResponse user, List<String> changedFields) {
+        outboxEventRepository.save(event(UserEventType.USER_UPDATED, user, changedFields));
+    }
+
+    public void userActiveChanged(UserResponse user) {
+        outboxEventRepository.save(event(activeEventType(user), user, null));
+    }
+
+    public void usersActiveChanged(List<UserResponse> users) {
+        List<OutboxEvent> events = new ArrayList<>(users.size());
+        for (UserResponse user : users) {
+            events.add(event(activeEventType(user), user, null));
+        }
+        outboxEventRepository.saveAll(events);
+    }
+
+    private OutboxEvent event(UserEventType type, UserResponse user, List<String> changedFields) {
+        return new OutboxEvent(type, user.getId(), payload(objectMapper, type, user, changedFields));
+    }
+
+    // Формат payload общий с реактивным вариантом, который пишет user_outbox через R2DBC
+    public static String payload(ObjectMapper objectMapper, UserEventType type, UserResponse user,
+                                 List<String> changedFields) {
+        ObjectNode payload = objectMapper.valueToTree(user);
+        if (changedFields != null) {
+            payload.putPOJO("changedFields", changedFields);
+        }
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize user event " + type, e);
+        }
+    }
+
+    public static UserEventType activeEventType(UserResponse user) {
+        return user.isActive() ? UserEventType.USER_ACTIVATED : UserEventType.USER_DEACTIVATED;
+    }
+}
@@ -0,0 +1,14 @@
+package com.fooddelivery.outbox;
+
+import com.fooddelivery.model.OutboxEvent;
+
+import java.util.List;
+
+// Получатель событий из outbox (файл, брокер сообщений и т.п.). OutboxRelay вызывает publish
+// из одного потока, пачками в порядке id. Если publish вернул управление, пачка считается доставленной
+// и удаляется из таблицы; исключение означает повторную отправку той же пачки на следующем цикле.
+// Поэтому получатель может увидеть событие дважды и должен отбрасывать повторы по id.
+public interface UserEventSink {
+
+    void publish(List<OutboxEvent> events);
+}
@@ -0,0 +1,47 @@
+package com.fooddelivery.ratelimit;
+
+import com.fooddelivery.exception.RateLimitExceededException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.time.Duration;
+
+// Проверяет лимит до вызова метода контроллера, отказ превращается в 429 в GlobalExceptionHandler.
+// IP берется из getRemoteAddr(): за прокси нужен server.forward-headers-strategy, а не чтение X-Forwarded-For здесь
+@Component
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    @Autowired
+    private RateLimitProperties properties;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!properties.isEnabled() || !(handler instanceof HandlerMethod method)) {
+            return true;
+        }
+        RateLimited limit = method.getMethodAnnotation(RateLimited.class);
+        if (limit == null) {
+            return true;
+        }
+        long wait = rateLimiter.tryAcquire(limit.value(), client(request));
+        if (wait > 0) {
+            throw new RateLimitExceededException(limit.value(), Duration.ofNanos(wait));
+        }
+        return true;
+    }
+
+    private String client(HttpServletRequest request) {
+        String apiKey = request.getHeader(properties.getApiKeyHeader());
+        if (apiKey != null && properties.getApiKeys().contains(apiKey)) {
+            return "key:" + apiKey;
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+}
@@ -0,0 +1,88 @@
+package com.fooddelivery.ratelimit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+@ConfigurationProperties("user.rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    // Сколько клиентов помнить на каждый лимит; при переполнении вытесняются редкие
+    private long maxClients = 100_000;
+
+    // Запросы с известным ключом считаются по ключу, остальные - по IP.
+    // Произвольный ключ не учитывается, иначе бот получал бы новую корзину на каждый запрос
+    private String apiKeyHeader = "X-API-Key";
+    private Set<String> apiKeys = new HashSet<>();
+
+    private Map<String, Limit> endpoints = new HashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getMaxClients() {
+        return maxClients;
+    }
+
+    public void setMaxClients(long maxClients) {
+        this.maxClients = maxClients;
+    }
+
+    public String getApiKeyHeader() {
+        return apiKeyHeader;
+    }
+
+    public void setApiKeyHeader(String apiKeyHeader) {
+        this.apiKeyHeader = apiKeyHeader;
+    }
+
+    public Set<String> getApiKeys() {
+        return apiKeys;
+    }
+
+    public void setApiKeys(Set<String> apiKeys) {
+        this.apiKeys = apiKeys;
+    }
+
+    public Map<String, Limit> getEndpoints() {
+        return endpoints;
+    }
+
+    public void setEndpoints(Map<String, Limit> endpoints) {
+        this.endpoints = endpoints;
+    }
+
+    // capacity запросов за period, все capacity можно потратить сразу
+    public static class Limit {
+
+        private int capacity;
+        private Duration period = Duration.ofMinutes(1);
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public Duration getPeriod() {
+            return period;
+        }
+
+        public void setPeriod(Duration period) {
+            this.period = period;
+        }
+    }
+}
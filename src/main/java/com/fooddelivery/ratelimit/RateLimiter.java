@@ -0,0 +1,68 @@
+package com.fooddelivery.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+// Корзины клиентов по каждому лимиту. Память ограничена user.rate-limit.max-clients на лимит.
+// Корзина, к которой не обращались дольше period, снова полная, поэтому ее вытеснение ничего не меняет.
+@Component
+public class RateLimiter {
+
+    private final Map<String, Endpoint> endpoints = new HashMap<>();
+
+    public RateLimiter(RateLimitProperties properties) {
+        properties.getEndpoints().forEach((name, limit) -> {
+            if (limit.getCapacity() > 0) {
+                endpoints.put(name, new Endpoint(limit, properties.getMaxClients()));
+            }
+        });
+    }
+
+    // 0, если запрос разрешен, иначе через сколько наносекунд повторить. Лимит без настроек не ограничивает
+    public long tryAcquire(String endpoint, String client) {
+        Endpoint limit = endpoints.get(endpoint);
+        if (limit == null) {
+            return 0;
+        }
+        long wait = limit.buckets.get(client, key -> new TokenBucket())
+                .tryAcquire(System.nanoTime(), limit.interval, limit.period);
+        if (wait > 0) {
+            limit.rejected.increment();
+        }
+        return wait;
+    }
+
+    public Set<String> endpoints() {
+        return endpoints.keySet();
+    }
+
+    public long clients(String endpoint) {
+        return endpoints.get(endpoint).buckets.estimatedSize();
+    }
+
+    public long rejected(String endpoint) {
+        return endpoints.get(endpoint).rejected.sum();
+    }
+
+    private static final class Endpoint {
+        private final long interval;
+        private final long period;
+        private final Cache<String, TokenBucket> buckets;
+        private final LongAdder rejected = new LongAdder();
+
+        private Endpoint(RateLimitProperties.Limit limit, long maxClients) {
+            this.period = limit.getPeriod().toNanos();
+            this.interval = period / limit.getCapacity();
+            this.buckets = Caffeine.newBuilder()
+                    .maximumSize(maxClients)
+                    .expireAfterAccess(limit.getPeriod())
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.fooddelivery.ratelimit;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+@Component
+public class RateLimiterMetrics implements MeterBinder {
+
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (String endpoint : rateLimiter.endpoints()) {
+            FunctionCounter.builder("user.rate.limit.rejected", rateLimiter, limiter -> limiter.rejected(endpoint))
+                    .tag("endpoint", endpoint)
+                    .description("Requests rejected with 429 by the per-client rate limit")
+                    .register(registry);
+            Gauge.builder("user.rate.limit.clients", rateLimiter, limiter -> limiter.clients(endpoint))
+                    .tag("endpoint", endpoint)
+                    .description("Clients with a tracked token bucket")
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.fooddelivery.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Корзина токенов в форме GCRA: вместо числа токенов и времени пополнения хранится одно число -
+// теоретическое время (nanoTime), к которому корзина снова станет полной. Запрос проходит,
+// если оно не дальше period от текущего момента. Одно AtomicLong на клиента, без блокировок.
+final class TokenBucket {
+
+    private final AtomicLong fullAt = new AtomicLong(Long.MIN_VALUE);
+
+    // 0, если токен взят, иначе сколько наносекунд ждать следующего
+    long tryAcquire(long now, long interval, long period) {
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, now) + interval;
+            long wait = next - now - period;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.fooddelivery.repository;
+
+import com.fooddelivery.model.OutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // Не readOnly: чтение идет из основной БД, реплика может отставать и вернуть уже доставленные события
+    @Transactional
+    @Query("select e from OutboxEvent e order by e.id")
+    List<OutboxEvent> findNextBatch(Pageable pageable);
+}
@@ -1,15 +1,37 @@
 package com.fooddelivery.repository;
 
+import com.fooddelivery.dto.UserResponse;
 import com.fooddelivery.model.User;
 import com.fooddelivery.model.Role;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
+    int EXPORT_FETCH_SIZE = 500;
+
+    // Чтение сразу в DTO: Hibernate не создает сущности, не держит их снимки для dirty checking
+    // и не читает колонку password
+    String USER_RESPONSE = "new com.fooddelivery.dto.UserResponse("
+            + "u.id, u.username, u.email, u.phone, u.role, u.active, u.createdAt, u.updatedAt, u.version)";
+
+    String USER_CHANGE = "new com.fooddelivery.dto.UserResponse("
+            + "u.id, u.username, u.email, u.phone, u.role, u.active, u.createdAt, u.updatedAt, u.version, u.changeSeq)";
+
     Optional<User> findByUsername(String username);
 
     Optional<User> findByEmail(String email);
@@ -18,7 +40,112 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     boolean existsByEmail(String email);
 
+    @Query("select u.username from User u where u.username in :usernames")
+    List<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
+
+    @Query("select u.email from User u where u.email in :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    @Transactional
+    @Modifying
+    @Query("update User u set u.password = :password where u.id = :id")
+    int updatePassword(@Param("id") Long id, @Param("password") String password);
+
+    // Активация одним UPDATE без загрузки сущности. Bulk-запросы обходят и @Version, и @PreUpdate,
+    // поэтому версия, updatedAt и позиция в ленте выставляются явно. Строки, уже находящиеся в нужном состоянии,
+    // не трогаются: версия (ETag) у них не меняется.
+    @Modifying
+    @Query("update User u set u.active = :active, u.updatedAt = :now, u.version = u.version + 1, u.changeSeq = :changeSeq "
+            + "where u.id = :id and u.active <> :active")
+    int updateActive(@Param("id") Long id, @Param("active") boolean active, @Param("now") LocalDateTime now,
+                     @Param("changeSeq") long changeSeq);
+
+    @Modifying
+    @Query("update User u set u.active = :active, u.updatedAt = :now, u.version = u.version + 1, u.changeSeq = :changeSeq "
+            + "where u.id in :ids and u.active <> :active")
+    int updateActiveByIds(@Param("ids") Collection<Long> ids, @Param("active") boolean active,
+                          @Param("now") LocalDateTime now, @Param("changeSeq") long changeSeq);
+
+    // Следующая пачка id для массовой (де)активации по роли и периоду регистрации, keyset по id.
+    // Не readOnly: отстающая реплика пропустила бы новых пользователей, и updated оказался бы меньше
+    @Transactional
+    @Query("select u.id from User u where u.role = :role and u.active <> :active and u.id > :afterId "
+            + "and (:createdFrom is null or u.createdAt >= :createdFrom) "
+            + "and (:createdTo is null or u.createdAt < :createdTo) order by u.id")
+    List<Long> findIdsToChangeActive(@Param("role") Role role, @Param("active") boolean active,
+                                     @Param("afterId") Long afterId,
+                                     @Param("createdFrom") LocalDateTime createdFrom,
+                                     @Param("createdTo") LocalDateTime createdTo,
+                                     Pageable pageable);
+
     List<User> findByRole(Role role);
 
     List<User> findByRoleAndActive(Role role, boolean active);
+
+    @Transactional(readOnly = true)
+    @Query("select " + USER_RESPONSE + " from User u where u.id = :id")
+    Optional<UserResponse> findResponseById(@Param("id") Long id);
+
+    @Transactional(readOnly = true)
+    @Query("select " + USER_RESPONSE + " from User u order by u.id")
+    List<UserResponse> findAllResponses();
+
+    @Transactional(readOnly = true)
+    @Query("select " + USER_RESPONSE + " from User u where u.id in :ids")
+    List<UserResponse> findResponsesByIds(@Param("ids") Collection<Long> ids);
+
+    @Transactional(readOnly = true)
+    @Query("select " + USER_RESPONSE + " from User u where u.role = :role order by u.id")
+    List<UserResponse> findResponsesByRole(@Param("role") Role role);
+
+    // Keyset-пагинация: страница всегда начинается после последнего отданного id
+    @Transactional(readOnly = true)
+    @Query("select " + USER_RESPONSE + " from User u where u.id > :afterId order by u.id")
+    List<UserResponse> findResponsesAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Transactional(readOnly = true)
+    @Query("select " + USER_RESPONSE + " from User u where u.role = :role and u.id > :afterId order by u.id")
+    List<UserResponse> findResponsesByRoleAfter(@Param("role") Role role, @Param("afterId") Long afterId,
+                                                Pageable pageable);
+
+    // Лента изменений: keyset по (changeSeq, id) после позиции клиента и не дальше until - номера,
+    // до которого все транзакции завершены. Не readOnly: из реплики с отставанием лента могла бы
+    // пропустить изменения, уже закоммиченные в основной БД
+    @Transactional
+    @Query("select " + USER_CHANGE + " from User u where u.changeSeq >= :afterSeq "
+            + "and (u.changeSeq > :afterSeq or u.id > :afterId) and u.changeSeq <= :until "
+            + "order by u.changeSeq, u.id")
+    List<UserResponse> findChangesAfter(@Param("afterSeq") long afterSeq, @Param("afterId") Long afterId,
+                                        @Param("until") long until, Pageable pageable);
+
+    // Последний номер в ленте изменений на момент запуска
+    @Transactional
+    @Query("select coalesce(max(u.changeSeq), 0) from User u")
+    long findMaxChangeSeq();
+
+    // Счетчики /users/stats: строки (role, active, count). Не readOnly, как и лента: сверка с отстающей
+    // репликой "исправляла" бы верные счетчики
+    @Transactional
+    @Query("select u.role, u.active, count(u) from User u group by u.role, u.active")
+    List<Object[]> countByRoleAndActive();
+
+    // Потоковое чтение для выгрузки: вызывать только внутри транзакции и закрывать Stream
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select u from User u order by u.id")
+    Stream<User> streamAllOrderById();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE))
+    @Query("select " + USER_RESPONSE + " from User u order by u.id")
+    Stream<UserResponse> streamAllResponses();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE))
+    @Query("select u.username from User u")
+    Stream<String> streamAllUsernames();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE))
+    @Query("select u.email from User u")
+    Stream<String> streamAllEmails();
 }
\ No newline at end of file
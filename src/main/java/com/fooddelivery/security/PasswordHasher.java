@@ -0,0 +1,199 @@
+package com.fooddelivery.security;
+
+import com.fooddelivery.exception.PasswordHashingUnavailableException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// BCrypt на отдельном ограниченном пуле: CPU-тяжелое хеширование не занимает все ядра,
+// а при переполнении очереди запрос сразу получает отказ вместо бесконечного ожидания.
+@Component
+public class PasswordHasher implements DisposableBean {
+
+    private final BCryptPasswordEncoder encoder;
+    private final int strength;
+    private final ThreadPoolExecutor executor;
+    private final Duration timeout;
+    // Хеш случайного пароля с текущим cost factor, см. matchesNone
+    private final String dummyHash;
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder hashCount = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+
+    public PasswordHasher(@Value("${user.password.bcrypt-strength:10}") int strength,
+                          @Value("${user.password.hashing-threads:0}") int threads,
+                          @Value("${user.password.hashing-queue-capacity:256}") int queueCapacity,
+                          @Value("${user.password.hashing-timeout:5s}") Duration timeout) {
+        this.strength = strength;
+        this.encoder = new BCryptPasswordEncoder(strength);
+        this.timeout = timeout;
+        this.dummyHash = encoder.encode(UUID.randomUUID().toString());
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new HashingThreadFactory(),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public String hash(String rawPassword) {
+        return await(submit(() -> timedEncode(rawPassword)));
+    }
+
+    // Для пакетной регистрации: при заполненной очереди ждем самую старую задачу, а не отказываем.
+    // В пуле одновременно не больше poolSize задач пакета: этого хватает, чтобы занять все потоки,
+    // а очередь остается одиночным hash() и matches(), и вход и регистрация не получают 503 на время пакета
+    public List<String> hashAll(List<String> rawPasswords) {
+        int batchLimit = executor.getMaximumPoolSize();
+        List<Future<String>> futures = new ArrayList<>(rawPasswords.size());
+        Deque<Future<String>> inFlight = new ArrayDeque<>();
+        for (String rawPassword : rawPasswords) {
+            if (inFlight.size() >= batchLimit) {
+                await(inFlight.pollFirst());
+            }
+            Future<String> future = null;
+            while (future == null) {
+                try {
+                    future = executor.submit(() -> timedEncode(rawPassword));
+                } catch (RejectedExecutionException e) {
+                    if (inFlight.isEmpty()) {
+                        rejected.increment();
+                        throw new PasswordHashingUnavailableException();
+                    }
+                    await(inFlight.pollFirst());
+                }
+            }
+            futures.add(future);
+            inFlight.addLast(future);
+        }
+
+        List<String> hashes = new ArrayList<>(futures.size());
+        for (Future<String> future : futures) {
+            hashes.add(await(future));
+        }
+        return hashes;
+    }
+
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return await(submit(() -> encoder.matches(rawPassword, encodedPassword)));
+    }
+
+    // Для входа с неизвестным username: та же проверка BCrypt, что и для настоящего пользователя,
+    // чтобы по времени ответа нельзя было узнать, существует ли имя. Всегда false
+    public boolean matchesNone(String rawPassword) {
+        matches(rawPassword, dummyHash);
+        return false;
+    }
+
+    // true, если хеш сделан с меньшим cost factor, чем текущий user.password.bcrypt-strength,
+    // или сохраненное значение вообще не похоже на BCrypt: его тоже нужно заменить
+    public boolean needsRehash(String encodedPassword) {
+        try {
+            return encoder.upgradeEncoding(encodedPassword);
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+    }
+
+    public int getStrength() {
+        return strength;
+    }
+
+    public int getPoolSize() {
+        return executor.getMaximumPoolSize();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public int getQueueCapacity() {
+        return executor.getQueue().size() + executor.getQueue().remainingCapacity();
+    }
+
+    public long getCompletedCount() {
+        return executor.getCompletedTaskCount();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getHashCount() {
+        return hashCount.sum();
+    }
+
+    public double getAverageHashMillis() {
+        long count = hashCount.sum();
+        return count == 0 ? 0.0 : hashNanos.sum() / 1_000_000.0 / count;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    private String timedEncode(String rawPassword) {
+        long start = System.nanoTime();
+        String encoded = encoder.encode(rawPassword);
+        hashNanos.add(System.nanoTime() - start);
+        hashCount.increment();
+        return encoded;
+    }
+
+    private <T> Future<T> submit(Callable<T> task) {
+        try {
+            return executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new PasswordHashingUnavailableException();
+        }
+    }
+
+    private <T> T await(Future<T> future) {
+        try {
+            return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new PasswordHashingUnavailableException();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingUnavailableException();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    private static class HashingThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "password-hasher-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
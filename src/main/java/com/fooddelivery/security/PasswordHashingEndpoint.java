@@ -0,0 +1,32 @@
+package com.fooddelivery.security;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Component
+@Endpoint(id = "passwordhashing")
+public class PasswordHashingEndpoint {
+
+    @Autowired
+    private PasswordHasher passwordHasher;
+
+    @ReadOperation
+    public Map<String, Object> stats() {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("strength", passwordHasher.getStrength());
+        response.put("poolSize", passwordHasher.getPoolSize());
+        response.put("activeCount", passwordHasher.getActiveCount());
+        response.put("queueSize", passwordHasher.getQueueSize());
+        response.put("queueCapacity", passwordHasher.getQueueCapacity());
+        response.put("completedCount", passwordHasher.getCompletedCount());
+        response.put("rejectedCount", passwordHasher.getRejectedCount());
+        response.put("hashCount", passwordHasher.getHashCount());
+        response.put("averageHashMillis", passwordHasher.getAverageHashMillis());
+        return response;
+    }
+}
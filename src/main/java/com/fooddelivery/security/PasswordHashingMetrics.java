@@ -0,0 +1,40 @@
+package com.fooddelivery.security;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+// Загрузка пула хеширования: очередь и отказы растут раньше, чем p99 регистрации
+@Component
+public class PasswordHashingMetrics implements MeterBinder {
+
+    @Autowired
+    private PasswordHasher passwordHasher;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("user.password.hashing.active", passwordHasher, PasswordHasher::getActiveCount)
+                .description("Hashing threads currently busy")
+                .register(registry);
+        Gauge.builder("user.password.hashing.queue", passwordHasher, PasswordHasher::getQueueSize)
+                .description("Hashing tasks waiting for a thread")
+                .register(registry);
+        FunctionCounter.builder("user.password.hashing.rejected", passwordHasher, PasswordHasher::getRejectedCount)
+                .description("Hashing tasks rejected because the queue was full")
+                .register(registry);
+        FunctionCounter.builder("user.password.hashes", passwordHasher, PasswordHasher::getHashCount)
+                .description("Passwords hashed")
+                .register(registry);
+        Gauge.builder("user.password.hash.time.average", passwordHasher,
+                        hasher -> hasher.getAverageHashMillis() / TimeUnit.SECONDS.toMillis(1))
+                .baseUnit("seconds")
+                .description("Average time of one hash since startup")
+                .tag("strength", String.valueOf(passwordHasher.getStrength()))
+                .register(registry);
+    }
+}
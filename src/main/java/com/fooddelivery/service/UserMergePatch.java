@@ -0,0 +1,51 @@
+package com.fooddelivery.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fooddelivery.dto.UserUpdateRequest;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Validator;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+// Разбор JSON Merge Patch (RFC 7386) пользователя в UserUpdateRequest: для UserService
+// и для реактивного варианта API (src/main/reactive)
+public final class UserMergePatch {
+
+    private static final Set<String> PATCHABLE_FIELDS = Set.of("username", "email", "password", "phone", "role", "active");
+
+    private UserMergePatch() {
+    }
+
+    public static UserUpdateRequest read(JsonNode patch, ObjectMapper objectMapper, Validator validator) {
+        if (patch == null || !patch.isObject()) {
+            throw new IllegalArgumentException("Merge patch must be a JSON object");
+        }
+        Iterator<Map.Entry<String, JsonNode>> fields = patch.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            if (!PATCHABLE_FIELDS.contains(field.getKey())) {
+                throw new IllegalArgumentException("Unknown field: " + field.getKey());
+            }
+            if (field.getValue().isNull() && !"phone".equals(field.getKey())) {
+                throw new IllegalArgumentException("Field cannot be removed: " + field.getKey());
+            }
+        }
+
+        UserUpdateRequest changes;
+        try {
+            changes = objectMapper.treeToValue(patch, UserUpdateRequest.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid merge patch: " + e.getOriginalMessage());
+        }
+        Set<ConstraintViolation<UserUpdateRequest>> violations = validator.validate(changes);
+        if (!violations.isEmpty()) {
+            throw new ConstraintViolationException(violations);
+        }
+        return changes;
+    }
+}
@@ -1,160 +1,864 @@
 package com.fooddelivery.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fooddelivery.audit.UserAuditLogger;
+import com.fooddelivery.cache.UserCache;
+import com.fooddelivery.datasource.ReadWriteRoutingDataSource;
+import com.fooddelivery.datasource.ReadYourWrites;
+import com.fooddelivery.dto.AuthenticationRequest;
+import com.fooddelivery.dto.UserActivationRequest;
+import com.fooddelivery.dto.UserActivationResult;
+import com.fooddelivery.dto.UserAvailabilityResponse;
+import com.fooddelivery.dto.UserBatchResult;
+import com.fooddelivery.dto.UserPageResponse;
 import com.fooddelivery.dto.UserRequest;
 import com.fooddelivery.dto.UserResponse;
 import com.fooddelivery.dto.UserUpdateRequest;
+import com.fooddelivery.exception.InvalidCredentialsException;
+import com.fooddelivery.exception.PreconditionFailedException;
+import com.fooddelivery.exception.SearchIndexUnavailableException;
 import com.fooddelivery.exception.UserAlreadyExistsException;
 import com.fooddelivery.exception.UserNotFoundException;
+import com.fooddelivery.feed.UserChangeSequence;
+import com.fooddelivery.index.UserAvailabilityIndex;
+import com.fooddelivery.index.UserSearchIndex;
 import com.fooddelivery.model.Role;
 import com.fooddelivery.model.User;
+import com.fooddelivery.outbox.UserEventOutbox;
 import com.fooddelivery.repository.UserRepository;
+import com.fooddelivery.security.PasswordHasher;
+import com.fooddelivery.sharding.UserDirectory;
+import com.fooddelivery.sharding.UserShards;
+import com.fooddelivery.stats.UserStats;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
-
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
+@Timed("user.service")
 public class UserService {
 
+    private static final Logger log = LoggerFactory.getLogger(UserService.class);
+
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    public static final int MAX_BATCH_SIZE = 5000;
+
+    public static final int MAX_SEARCH_LIMIT = 100;
+
+    // Ограничение на размер IN (...) в запросах проверки уникальности
+    private static final int IN_CLAUSE_CHUNK_SIZE = 1000;
+
+    // Выгрузка сбрасывает буфер раз в столько строк: с gzip каждый flush - это SYNC_FLUSH и лишние байты
+    private static final int EXPORT_FLUSH_ROWS = 500;
+
+    private static final String CURSOR_PREFIX = "u:";
+
+    private static final Comparator<UserResponse> BY_ID = Comparator.comparing(UserResponse::getId);
+
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private UserAvailabilityIndex availabilityIndex;
+
+    @Autowired
+    private UserSearchIndex searchIndex;
+
+    @Autowired
+    private UserAuditLogger auditLogger;
+
+    @Autowired
+    private UserEventOutbox eventOutbox;
+
+    @Autowired
+    private UserChangeSequence changeSequence;
+
+    @Autowired
+    private UserStats userStats;
+
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    @Autowired
+    private PasswordHasher passwordHasher;
+
+    @Autowired
+    private UserShards shards;
+
+    // Только с шардированием (user.sharding.shards)
+    @Autowired(required = false)
+    private UserDirectory userDirectory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private Validator validator;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Не @Transactional: хеширование пароля не должно держать соединение из пула
     public UserResponse registerUser(UserRequest userRequest) {
-        System.out.println("DEBUG: Starting registration for user: " + userRequest.getUsername());
-        System.out.println("DEBUG: Email: " + userRequest.getEmail());
-        System.out.println("DEBUG: Role from request: " + userRequest.getRole());
+        log.debug("Starting registration for user: {}, email: {}, role: {}",
+                userRequest.getUsername(), userRequest.getEmail(), userRequest.getRole());
 
         // Проверка уникальности username и email
-        if (userRepository.existsByUsername(userRequest.getUsername())) {
-            System.out.println("DEBUG: Username already exists: " + userRequest.getUsername());
+        if (usernameTaken(userRequest.getUsername())) {
+            log.debug("Username already exists: {}", userRequest.getUsername());
             throw new UserAlreadyExistsException("Username", userRequest.getUsername());
         }
 
-        if (userRepository.existsByEmail(userRequest.getEmail())) {
-            System.out.println("DEBUG: Email already exists: " + userRequest.getEmail());
+        if (emailTaken(userRequest.getEmail())) {
+            log.debug("Email already exists: {}", userRequest.getEmail());
             throw new UserAlreadyExistsException("Email", userRequest.getEmail());
         }
 
         // Создание нового пользователя
-        User user = new User();
-        user.setUsername(userRequest.getUsername());
-        user.setEmail(userRequest.getEmail());
-        user.setPassword(userRequest.getPassword());
-        user.setPhone(userRequest.getPhone());
+        User user = newUser(userRequest, passwordHasher.hash(userRequest.getPassword()));
+        log.debug("User object created: {}, role: {}", user.getUsername(), user.getRole());
+        if (userDirectory != null) {
+            // Id выбирает шард, запись в справочнике закрепляет username и email за пользователем
+            user.setAssignedId(shards.nextId());
+            userDirectory.reserve(user);
+        }
 
-        if (userRequest.getRole() != null) {
-            System.out.println("DEBUG: Setting role: " + userRequest.getRole());
-            user.setRole(userRequest.getRole());
+        UserResponse response;
+        try {
+            // Короткая транзакция только на INSERT пользователя и события в outbox
+            response = shards.onShardOf(user.getAssignedId(), () -> new TransactionTemplate(transactionManager).execute(status -> {
+                user.setChangeSeq(changeSequence.current());
+                User savedUser = userRepository.save(user);
+                log.debug("User saved with ID: {}", savedUser.getId());
+                usersChanged(List.of(savedUser.getId()), EnumSet.of(savedUser.getRole()));
+                UserResponse saved = convertToResponse(savedUser);
+                eventOutbox.userRegistered(saved);
+                return saved;
+            }));
+        } catch (RuntimeException e) {
+            log.debug("Exception during save of user {}: {}", userRequest.getUsername(), e.getMessage());
+            if (userDirectory != null) {
+                userDirectory.release(List.of(user.getAssignedId()));
+            }
+            throw e;
+        }
+        availabilityIndex.addUsername(response.getUsername());
+        availabilityIndex.addEmail(response.getEmail());
+        searchIndex.put(response);
+        userStats.added(response.getRole(), response.isActive());
+        auditLogger.userRegistered(response);
+        return response;
+    }
+
+    // Не @Transactional, как и registerUser: BCrypt для пачки идет секунды, и соединение из пула
+    // на это время не берется. Уникальность проверяется до хеширования, чтобы не хешировать пароли
+    // заведомо конфликтующих записей, и еще раз в короткой транзакции вставки
+    public List<UserBatchResult> registerUsers(List<UserRequest> userRequests) {
+        log.debug("Starting batch registration, size: {}", userRequests.size());
+
+        // Уникальность проверяется для всей пачки двумя наборами IN-запросов
+        Set<String> takenUsernames = findExisting(
+                userRequests.stream().map(UserRequest::getUsername).collect(Collectors.toSet()),
+                userDirectory != null ? userDirectory::findExistingUsernames : userRepository::findExistingUsernames);
+        Set<String> takenEmails = findExisting(
+                userRequests.stream().map(UserRequest::getEmail).collect(Collectors.toSet()),
+                userDirectory != null ? userDirectory::findExistingEmails : userRepository::findExistingEmails);
+
+        List<UserBatchResult> results = new ArrayList<>(userRequests.size());
+        List<Integer> newUserIndexes = new ArrayList<>(userRequests.size());
+
+        for (int i = 0; i < userRequests.size(); i++) {
+            UserRequest userRequest = userRequests.get(i);
+            if (takenUsernames.contains(userRequest.getUsername())) {
+                results.add(UserBatchResult.conflict(i,
+                        new UserAlreadyExistsException("Username", userRequest.getUsername()).getMessage()));
+            } else if (takenEmails.contains(userRequest.getEmail())) {
+                results.add(UserBatchResult.conflict(i,
+                        new UserAlreadyExistsException("Email", userRequest.getEmail()).getMessage()));
+            } else {
+                // Дубликаты внутри самой пачки тоже считаются конфликтом
+                takenUsernames.add(userRequest.getUsername());
+                takenEmails.add(userRequest.getEmail());
+                newUserIndexes.add(i);
+                results.add(null);
+            }
+        }
+
+        // Пароли хешируются параллельно на пуле PasswordHasher
+        List<String> passwordHashes = passwordHasher.hashAll(newUserIndexes.stream()
+                .map(index -> userRequests.get(index).getPassword())
+                .collect(Collectors.toList()));
+        List<User> newUsers = new ArrayList<>(newUserIndexes.size());
+        for (int i = 0; i < newUserIndexes.size(); i++) {
+            newUsers.add(newUser(userRequests.get(newUserIndexes.get(i)), passwordHashes.get(i)));
+        }
+
+        // Вставка в короткой транзакции; записи, занятые за время хеширования, получают в results конфликт
+        List<User> savedUsers;
+        if (userDirectory != null) {
+            savedUsers = saveOnShards(newUsers);
         } else {
-            System.out.println("DEBUG: Role is null, using default: CUSTOMER");
-            user.setRole(com.fooddelivery.model.Role.CUSTOMER);
+            savedUsers = new TransactionTemplate(transactionManager)
+                    .execute(status -> insertUsers(newUsers, newUserIndexes, results));
         }
 
-        System.out.println("DEBUG: User object created: " + user.getUsername());
+        List<UserResponse> created = new ArrayList<>(savedUsers.size());
+        for (int i = 0; i < newUsers.size(); i++) {
+            int index = newUserIndexes.get(i);
+            if (results.get(index) != null) {
+                continue;
+            }
+            UserResponse user = convertToResponse(newUsers.get(i));
+            results.set(index, UserBatchResult.created(index, user));
+            created.add(user);
+        }
+        // Транзакции вставки уже закоммичены
+        created.forEach(user -> {
+            availabilityIndex.addUsername(user.getUsername());
+            availabilityIndex.addEmail(user.getEmail());
+            searchIndex.put(user);
+            userStats.added(user.getRole(), user.isActive());
+        });
+
+        if (!savedUsers.isEmpty()) {
+            usersChanged(savedUsers.stream().map(User::getId).collect(Collectors.toList()), savedUsers.stream()
+                    .map(User::getRole)
+                    .collect(Collectors.toCollection(() -> EnumSet.noneOf(Role.class))));
+        }
 
-        try {
-            User savedUser = userRepository.save(user);
-            System.out.println("DEBUG: User saved with ID: " + savedUser.getId());
+        int conflicts = userRequests.size() - savedUsers.size();
+        log.debug("Batch registration finished, created: {}, conflicts: {}", savedUsers.size(), conflicts);
+        auditLogger.usersRegistered(savedUsers.size(), conflicts);
+        return results;
+    }
 
-            return convertToResponse(savedUser);
-        } catch (Exception e) {
-            System.out.println("DEBUG: Exception during save: " + e.getMessage());
-            e.printStackTrace();
-            throw e;
+    // Проверка уникальности перед INSERT в той же транзакции. INSERT-ы уходят JDBC-батчами
+    // (hibernate.jdbc.batch_size) при flush
+    private List<User> insertUsers(List<User> users, List<Integer> indexes, List<UserBatchResult> results) {
+        Set<String> takenUsernames = findExisting(users.stream().map(User::getUsername).collect(Collectors.toSet()),
+                userRepository::findExistingUsernames);
+        Set<String> takenEmails = findExisting(users.stream().map(User::getEmail).collect(Collectors.toSet()),
+                userRepository::findExistingEmails);
+        List<User> insert = new ArrayList<>(users.size());
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            if (takenUsernames.contains(user.getUsername())) {
+                results.set(indexes.get(i), UserBatchResult.conflict(indexes.get(i),
+                        new UserAlreadyExistsException("Username", user.getUsername()).getMessage()));
+            } else if (takenEmails.contains(user.getEmail())) {
+                results.set(indexes.get(i), UserBatchResult.conflict(indexes.get(i),
+                        new UserAlreadyExistsException("Email", user.getEmail()).getMessage()));
+            } else {
+                insert.add(user);
+            }
+        }
+        if (insert.isEmpty()) {
+            return insert;
+        }
+        long changeSeq = changeSequence.current();
+        insert.forEach(user -> user.setChangeSeq(changeSeq));
+        List<User> saved = userRepository.saveAll(insert);
+        userRepository.flush();
+        eventOutbox.usersRegistered(saved.stream().map(this::convertToResponse).collect(Collectors.toList()));
+        return saved;
+    }
+
+    // С шардами у каждого шарда своя транзакция, справочник резервирует username и email до INSERT.
+    // Пачка между шардами не атомарна: при сбое пользователи с уже закоммиченных шардов остаются
+    private List<User> saveOnShards(List<User> users) {
+        users.forEach(user -> user.setAssignedId(shards.nextId()));
+        userDirectory.reserveAll(users);
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        Map<Integer, List<User>> usersByShard = users.stream()
+                .collect(Collectors.groupingBy(user -> shards.shardOf(user.getAssignedId())));
+        List<User> saved = new ArrayList<>(users.size());
+        for (Map.Entry<Integer, List<User>> shard : usersByShard.entrySet()) {
+            try {
+                saved.addAll(shards.onShard(shard.getKey(), () -> transactionTemplate.execute(status -> {
+                    long changeSeq = changeSequence.current();
+                    shard.getValue().forEach(user -> user.setChangeSeq(changeSeq));
+                    List<User> shardUsers = userRepository.saveAll(shard.getValue());
+                    userRepository.flush();
+                    eventOutbox.usersRegistered(shardUsers.stream().map(this::convertToResponse).collect(Collectors.toList()));
+                    return shardUsers;
+                })));
+            } catch (RuntimeException e) {
+                log.debug("Batch registration failed on shard {}: {}", shard.getKey(), e.getMessage());
+                Set<Long> savedIds = saved.stream().map(User::getId).collect(Collectors.toSet());
+                userDirectory.release(users.stream()
+                        .map(User::getAssignedId)
+                        .filter(id -> !savedIds.contains(id))
+                        .collect(Collectors.toList()));
+                // registerUsers до своих обновлений не дойдет, поэтому индексы и версии списков - здесь
+                saved.forEach(user -> {
+                    availabilityIndex.addUsername(user.getUsername());
+                    availabilityIndex.addEmail(user.getEmail());
+                    searchIndex.put(convertToResponse(user));
+                    userStats.added(user.getRole(), user.isActive());
+                });
+                if (!saved.isEmpty()) {
+                    notifyChanged(savedIds, saved.stream()
+                            .map(User::getRole)
+                            .collect(Collectors.toCollection(() -> EnumSet.noneOf(Role.class))));
+                }
+                throw e;
+            }
         }
+        return users;
+    }
+
+    // Не @Transactional: новый пароль хешируется до транзакции, и BCrypt не держит соединение из пула.
+    // expectedVersion - версия из If-Match; null означает обновление без проверки
+    public UserResponse updateUser(Long id, UserUpdateRequest updateRequest, Long expectedVersion) {
+        String passwordHash = hashNewPassword(updateRequest);
+        return shards.onShardOf(id, () -> new TransactionTemplate(transactionManager).execute(
+                status -> applyUpdate(id, updateRequest, passwordHash, false, expectedVersion)));
+    }
+
+    // JSON Merge Patch (RFC 7386): отсутствующее поле не меняется, null удаляет значение (допустимо только для phone)
+    public UserResponse patchUser(Long id, JsonNode patch, Long expectedVersion) {
+        UserUpdateRequest changes = UserMergePatch.read(patch, objectMapper, validator);
+        String passwordHash = hashNewPassword(changes);
+        return shards.onShardOf(id, () -> new TransactionTemplate(transactionManager).execute(
+                status -> applyUpdate(id, changes, passwordHash, patch.path("phone").isNull(), expectedVersion)));
+    }
+
+    private String hashNewPassword(UserUpdateRequest updateRequest) {
+        return updateRequest.getPassword() != null ? passwordHasher.hash(updateRequest.getPassword()) : null;
     }
 
-    public UserResponse updateUser(Long id, UserUpdateRequest updateRequest) {
-        System.out.println("DEBUG: Updating user with ID: " + id);
+    private UserResponse applyUpdate(Long id, UserUpdateRequest updateRequest, String passwordHash, boolean clearPhone,
+                                     Long expectedVersion) {
+        log.debug("Updating user with ID: {}", id);
 
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new UserNotFoundException(id));
-
-        // Обновляем только те поля, которые переданы
+        if (expectedVersion != null && !expectedVersion.equals(user.getVersion())) {
+            throw new PreconditionFailedException(id, expectedVersion);
+        }
+        Long previousVersion = user.getVersion();
+        Role previousRole = user.getRole();
+        boolean previousActive = user.isActive();
+        String previousUsername = user.getUsername();
+        String previousEmail = user.getEmail();
+        List<String> changedFields = new ArrayList<>(6);
+
+        // Меняем только поля, значение которых действительно отличается:
+        // User помечен @DynamicUpdate, и в UPDATE попадут только эти колонки
         if (updateRequest.getUsername() != null && !updateRequest.getUsername().equals(user.getUsername())) {
             // Проверяем уникальность нового username
-            if (userRepository.existsByUsername(updateRequest.getUsername())) {
+            if (usernameTaken(updateRequest.getUsername())) {
                 throw new UserAlreadyExistsException("Username", updateRequest.getUsername());
             }
-            System.out.println("DEBUG: Updating username to: " + updateRequest.getUsername());
+            log.debug("Updating username to: {}", updateRequest.getUsername());
             user.setUsername(updateRequest.getUsername());
+            changedFields.add("username");
         }
 
         if (updateRequest.getEmail() != null && !updateRequest.getEmail().equals(user.getEmail())) {
             // Проверяем уникальность нового email
-            if (userRepository.existsByEmail(updateRequest.getEmail())) {
+            if (emailTaken(updateRequest.getEmail())) {
                 throw new UserAlreadyExistsException("Email", updateRequest.getEmail());
             }
-            System.out.println("DEBUG: Updating email to: " + updateRequest.getEmail());
+            log.debug("Updating email to: {}", updateRequest.getEmail());
             user.setEmail(updateRequest.getEmail());
+            changedFields.add("email");
         }
 
-        if (updateRequest.getPassword() != null) {
-            System.out.println("DEBUG: Updating password");
-            user.setPassword(updateRequest.getPassword());
+        if (passwordHash != null) {
+            log.debug("Updating password");
+            user.setPassword(passwordHash);
+            changedFields.add("password");
         }
 
-        if (updateRequest.getPhone() != null) {
-            System.out.println("DEBUG: Updating phone to: " + updateRequest.getPhone());
-            user.setPhone(updateRequest.getPhone());
+        String phone = clearPhone ? null : updateRequest.getPhone();
+        if ((clearPhone || phone != null) && !Objects.equals(phone, user.getPhone())) {
+            log.debug("Updating phone to: {}", phone);
+            user.setPhone(phone);
+            changedFields.add("phone");
         }
 
-        if (updateRequest.getRole() != null) {
-            System.out.println("DEBUG: Updating role to: " + updateRequest.getRole());
+        if (updateRequest.getRole() != null && updateRequest.getRole() != user.getRole()) {
+            log.debug("Updating role to: {}", updateRequest.getRole());
             user.setRole(updateRequest.getRole());
+            changedFields.add("role");
         }
 
-        if (updateRequest.getActive() != null) {
-            System.out.println("DEBUG: Updating active to: " + updateRequest.getActive());
+        if (updateRequest.getActive() != null && updateRequest.getActive() != user.isActive()) {
+            log.debug("Updating active to: {}", updateRequest.getActive());
             user.setActive(updateRequest.getActive());
+            changedFields.add("active");
+        }
+
+        if (changedFields.isEmpty()) {
+            // Ничего не изменилось: ни UPDATE, ни новой версии, ни записи в журнале
+            return convertToResponse(user);
+        }
+
+        if (userDirectory != null && (changedFields.contains("username") || changedFields.contains("email"))) {
+            // Справочник меняется до UPDATE на шарде, его уникальные ключи и есть проверка между шардами.
+            // Если транзакция шарда откатится, прежние значения возвращаются
+            userDirectory.update(id, user.getUsername(), user.getEmail());
+            afterRollback(() -> userDirectory.update(id, previousUsername, previousEmail));
         }
 
+        user.setChangeSeq(changeSequence.current());
         User updatedUser = userRepository.save(user);
-        System.out.println("DEBUG: User updated successfully");
+        // flush до формирования ответа, чтобы @PreUpdate успел выставить updatedAt
+        userRepository.flush();
+        log.debug("User {} updated successfully", id);
+        // Старые значения из фильтра не удаляются: это только лишний запрос в БД при проверке
+        availabilityIndex.addUsername(updatedUser.getUsername());
+        availabilityIndex.addEmail(updatedUser.getEmail());
+        afterCommit(() -> auditLogger.userUpdated(id, changedFields));
+        // Версия не растет, если dirty checking не нашел изменений и UPDATE не выполнялся
+        if (!Objects.equals(previousVersion, updatedUser.getVersion())) {
+            usersChanged(List.of(id), EnumSet.of(previousRole, updatedUser.getRole()));
+        }
+        Role role = updatedUser.getRole();
+        boolean active = updatedUser.isActive();
+        afterCommit(() -> userStats.changed(previousRole, previousActive, role, active));
+
+        UserResponse response = cacheResponse(updatedUser);
+        eventOutbox.userUpdated(response, changedFields);
+        afterCommit(() -> searchIndex.put(response));
+        return response;
+    }
+
+    // Проверка BCrypt идет вне транзакции, соединение берется только на чтение и на перехеширование.
+    // Пользователь читается из основной БД: вход сразу после регистрации или смены пароля
+    // не должен зависеть от отставания реплики
+    // Неизвестный и неактивный пользователь тоже проходят проверку BCrypt: иначе быстрый отказ
+    // выдает, какие username существуют
+    public UserResponse authenticate(AuthenticationRequest request) {
+        Optional<User> found = findForLogin(request.getUsername());
+        if (found.isEmpty()) {
+            passwordHasher.matchesNone(request.getPassword());
+            throw new InvalidCredentialsException();
+        }
+        User user = found.get();
+
+        boolean passwordMatches = passwordHasher.matches(request.getPassword(), user.getPassword());
+        if (!user.isActive() || !passwordMatches) {
+            throw new InvalidCredentialsException();
+        }
+
+        // Ленивое перехеширование: если cost factor подняли, обновляем хеш при успешном входе
+        if (passwordHasher.needsRehash(user.getPassword())) {
+            log.debug("Rehashing password for user {} with strength {}", user.getId(), passwordHasher.getStrength());
+            String newHash = passwordHasher.hash(request.getPassword());
+            shards.onShardOf(user.getId(), () -> userRepository.updatePassword(user.getId(), newHash));
+            user.setPassword(newHash);
+        }
+
+        return convertToResponse(user);
+    }
+
+    private Optional<User> findForLogin(String username) {
+        if (userDirectory != null) {
+            return userDirectory.findIdByUsername(username)
+                    .flatMap(id -> shards.onShardOf(id, () -> userRepository.findById(id)));
+        }
+        return ReadWriteRoutingDataSource.onPrimary(() -> userRepository.findByUsername(username));
+    }
+
+    public UserAvailabilityResponse checkAvailability(String username, String email) {
+        if (username == null && email == null) {
+            throw new IllegalArgumentException("Username or email is required");
+        }
+
+        UserAvailabilityResponse response = new UserAvailabilityResponse();
+        if (username != null) {
+            response.setUsername(username);
+            // В БД идем только если фильтр допускает, что значение уже занято
+            response.setUsernameAvailable(!availabilityIndex.mightContainUsername(username)
+                    || !usernameTaken(username));
+        }
+        if (email != null) {
+            response.setEmail(email);
+            response.setEmailAvailable(!availabilityIndex.mightContainEmail(email)
+                    || !emailTaken(email));
+        }
+        return response;
+    }
 
-        return convertToResponse(updatedUser);
+    // С шардами уникальность проверяется по справочнику, а не по таблице users одного шарда
+    private boolean usernameTaken(String username) {
+        return userDirectory != null ? userDirectory.existsByUsername(username) : userRepository.existsByUsername(username);
+    }
+
+    private boolean emailTaken(String email) {
+        return userDirectory != null ? userDirectory.existsByEmail(email) : userRepository.existsByEmail(email);
     }
 
     public UserResponse getUserById(Long id) {
-        User user = userRepository.findById(id)
+        return userCache.get(id, this::loadUser);
+    }
+
+    private UserResponse loadUser(Long id) {
+        return shards.onShardOf(id, () -> readYourWrites.readUser(id, () -> userRepository.findResponseById(id)))
                 .orElseThrow(() -> new UserNotFoundException(id));
-        return convertToResponse(user);
     }
 
+    // С шардами запрос уходит на все шарды параллельно, отсортированные по id ответы сливаются
     public List<UserResponse> getAllUsers() {
-        return userRepository.findAll().stream()
-                .map(this::convertToResponse)
-                .collect(Collectors.toList());
+        return readYourWrites.readList(null, () -> shards.fanOut(userRepository::findAllResponses, BY_ID));
     }
 
     public List<UserResponse> getUsersByRole(Role role) {
-        return userRepository.findByRole(role).stream()
-                .map(this::convertToResponse)
+        return readYourWrites.readList(role, () -> shards.fanOut(() -> userRepository.findResponsesByRole(role), BY_ID));
+    }
+
+    public UserPageResponse getUsersPage(Role role, String after, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        long afterId = after != null ? decodeCursor(after) : 0L;
+        // Берем на одну запись больше, чтобы понять, есть ли следующая страница.
+        // С шардами каждый шард отдает limit + 1 записей после курсора, из слияния берутся первые limit + 1
+        Pageable pageable = PageRequest.of(0, limit + 1);
+        List<UserResponse> users = readYourWrites.readList(role, () -> shards.fanOut(() -> role != null
+                ? userRepository.findResponsesByRoleAfter(role, afterId, pageable)
+                : userRepository.findResponsesAfter(afterId, pageable), BY_ID, limit + 1));
+
+        boolean hasMore = users.size() > limit;
+        List<UserResponse> items = hasMore ? users.subList(0, limit) : users;
+        String nextCursor = hasMore ? encodeCursor(items.get(items.size() - 1).getId()) : null;
+
+        return new UserPageResponse(items, nextCursor);
+    }
+
+    // Индекс отдает id в порядке ранга, сами записи читаются одним запросом
+    public List<UserResponse> searchUsers(String query, Role role, int limit) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Search query is required");
+        }
+        if (limit < 1 || limit > MAX_SEARCH_LIMIT) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_SEARCH_LIMIT);
+        }
+        if (!searchIndex.isReady()) {
+            throw new SearchIndexUnavailableException();
+        }
+
+        List<Long> ids = searchIndex.search(query, role, limit);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        // Индекс обновляется сразу после коммита, реплика может еще не содержать новых пользователей
+        Map<Long, UserResponse> users = readYourWrites.readUsers(ids,
+                        () -> shards.fanOutByIds(ids, userRepository::findResponsesByIds)).stream()
+                .collect(Collectors.toMap(UserResponse::getId, Function.identity()));
+        return ids.stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
     }
 
-    public UserResponse deactivateUser(Long id) {
-        User user = userRepository.findById(id)
-                .orElseThrow(() -> new UserNotFoundException(id));
+    @Transactional(readOnly = true)
+    public long exportUsers(OutputStream outputStream) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+        // Поток ответа закрывает контейнер, а не генератор
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        // writeValue по умолчанию делает flush после каждого объекта, то есть после каждой строки
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        long count = 0;
+        if (!shards.isSharded()) {
+            count = writeUsers(generator, writer);
+        } else {
+            // Шарды выгружаются по очереди, каждый в своей транзакции; id упорядочены только внутри шарда
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            transactionTemplate.setReadOnly(true);
+            transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            try {
+                for (int shard = 0; shard < shards.count(); shard++) {
+                    count += shards.onShard(shard, () -> transactionTemplate.execute(status -> {
+                        try {
+                            return writeUsers(generator, writer);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }));
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        generator.flush();
+        return count;
+    }
 
-        user.setActive(false);
-        User deactivatedUser = userRepository.save(user);
+    private long writeUsers(JsonGenerator generator, ObjectWriter writer) throws IOException {
+        long count = 0;
+        try (Stream<User> users = userRepository.streamAllOrderById()) {
+            Iterator<User> iterator = users.iterator();
+            while (iterator.hasNext()) {
+                User user = iterator.next();
+                writer.writeValue(generator, convertToResponse(user));
+                generator.writeRaw('\n');
+                // Не копим сущности в persistence context, память остается постоянной
+                entityManager.detach(user);
+                count++;
+                // Клиент получает выгрузку частями, не дожидаясь конца
+                if (count % EXPORT_FLUSH_ROWS == 0) {
+                    generator.flush();
+                }
+            }
+        }
+        return count;
+    }
 
-        return convertToResponse(deactivatedUser);
+    @Transactional
+    public UserResponse deactivateUser(Long id) {
+        return shards.onShardOf(id, () -> setActive(id, false));
     }
 
+    @Transactional
     public UserResponse activateUser(Long id) {
-        User user = userRepository.findById(id)
+        return shards.onShardOf(id, () -> setActive(id, true));
+    }
+
+    public UserActivationResult deactivateUsers(UserActivationRequest request) {
+        return setActive(request, false);
+    }
+
+    public UserActivationResult activateUsers(UserActivationRequest request) {
+        return setActive(request, true);
+    }
+
+    // UPDATE по id и чтение ответа проекцией вместо findById -> save всей строки
+    private UserResponse setActive(Long id, boolean active) {
+        int updated = userRepository.updateActive(id, active, LocalDateTime.now(), changeSequence.current());
+        UserResponse response = userRepository.findResponseById(id)
                 .orElseThrow(() -> new UserNotFoundException(id));
 
-        user.setActive(true);
-        User activatedUser = userRepository.save(user);
+        if (updated > 0) {
+            eventOutbox.userActiveChanged(response);
+            afterCommit(() -> {
+                if (active) {
+                    auditLogger.userActivated(id);
+                } else {
+                    auditLogger.userDeactivated(id);
+                }
+            });
+            usersChanged(List.of(id), EnumSet.of(response.getRole()));
+            afterCommit(() -> userStats.changed(response.getRole(), !active, response.getRole(), active));
+        }
+        afterCommit(() -> userCache.put(response));
+        return response;
+    }
 
-        return convertToResponse(activatedUser);
+    private UserActivationResult setActive(UserActivationRequest request, boolean active) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        long updated = 0;
+
+        // С шардами пачки формируются отдельно для каждого шарда
+        if (request.getIds() != null && !request.getIds().isEmpty()) {
+            List<Long> ids = request.getIds().stream().distinct().collect(Collectors.toList());
+            for (Map.Entry<Integer, List<Long>> shard : shards.groupByShard(ids).entrySet()) {
+                updated += shards.onShard(shard.getKey(),
+                        () -> setActiveByIds(transactionTemplate, shard.getValue(), active));
+            }
+        } else {
+            for (int shard = 0; shard < shards.count(); shard++) {
+                updated += shards.onShard(shard, () -> setActiveByRole(transactionTemplate, request, active));
+            }
+        }
+
+        log.debug("Batch {} finished, updated: {}", active ? "activation" : "deactivation", updated);
+        auditLogger.usersActiveChanged(active, updated);
+        return new UserActivationResult(updated);
+    }
+
+    private long setActiveByIds(TransactionTemplate transactionTemplate, List<Long> ids, boolean active) {
+        // Роли пользователей из списка неизвестны, поэтому меняются версии всех списков
+        Set<Role> roles = EnumSet.allOf(Role.class);
+        long updated = 0;
+        for (int from = 0; from < ids.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, ids.size()));
+            updated += setActive(transactionTemplate, chunk, active, roles);
+        }
+        return updated;
+    }
+
+    private long setActiveByRole(TransactionTemplate transactionTemplate, UserActivationRequest request, boolean active) {
+        Set<Role> roles = EnumSet.of(request.getRole());
+        Pageable chunkSize = PageRequest.of(0, IN_CLAUSE_CHUNK_SIZE);
+        long updated = 0;
+        long afterId = 0L;
+        List<Long> chunk;
+        do {
+            chunk = userRepository.findIdsToChangeActive(request.getRole(), active, afterId,
+                    request.getCreatedFrom(), request.getCreatedTo(), chunkSize);
+            if (!chunk.isEmpty()) {
+                updated += setActive(transactionTemplate, chunk, active, roles);
+                afterId = chunk.get(chunk.size() - 1);
+            }
+        } while (chunk.size() == IN_CLAUSE_CHUNK_SIZE);
+        return updated;
+    }
+
+    // Каждая пачка - отдельная короткая транзакция: блокировки строк не держатся всю операцию,
+    // а повтор после сбоя безопасен, потому что уже измененные строки UPDATE пропускает
+    private int setActive(TransactionTemplate transactionTemplate, List<Long> ids, boolean active, Set<Role> roles) {
+        Integer updated = transactionTemplate.execute(status -> {
+            // Точность до микросекунд, как у колонки updated_at: по этому значению ниже
+            // отбираются строки, которые изменил именно этот UPDATE
+            LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+            int count = userRepository.updateActiveByIds(ids, active, now, changeSequence.current());
+            if (count > 0) {
+                // Строки, уже бывшие в нужном состоянии, UPDATE пропускает, и событий по ним нет
+                List<UserResponse> changed = userRepository.findResponsesByIds(ids).stream()
+                        .filter(user -> now.equals(user.getUpdatedAt()))
+                        .collect(Collectors.toList());
+                eventOutbox.usersActiveChanged(changed);
+                afterCommit(() -> changed.forEach(user -> userStats.changed(user.getRole(), !active, user.getRole(), active)));
+                // Свежие проекции уже прочитаны: кладем их в кэш, а не удаляем записи. После удаления
+                // параллельный промах мог бы вернуть в кэш значение, прочитанное до коммита
+                afterCommit(() -> changed.forEach(userCache::put));
+                usersChanged(ids, roles);
+            }
+            return count;
+        });
+        return updated != null ? updated : 0;
+    }
+
+    private User newUser(UserRequest userRequest, String passwordHash) {
+        User user = new User();
+        user.setUsername(userRequest.getUsername());
+        user.setEmail(userRequest.getEmail());
+        user.setPassword(passwordHash);
+        user.setPhone(userRequest.getPhone());
+        user.setRole(userRequest.getRole() != null ? userRequest.getRole() : Role.CUSTOMER);
+        return user;
+    }
+
+    private Set<String> findExisting(Set<String> values, Function<Collection<String>, List<String>> query) {
+        Set<String> existing = new HashSet<>();
+        List<String> chunk = new ArrayList<>(IN_CLAUSE_CHUNK_SIZE);
+        for (String value : values) {
+            chunk.add(value);
+            if (chunk.size() == IN_CLAUSE_CHUNK_SIZE) {
+                existing.addAll(query.apply(chunk));
+                chunk = new ArrayList<>(IN_CLAUSE_CHUNK_SIZE);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            existing.addAll(query.apply(chunk));
+        }
+        return existing;
+    }
+
+    public static String encodeCursor(Long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((CURSOR_PREFIX + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static long decodeCursor(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!decoded.startsWith(CURSOR_PREFIX)) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            return Long.parseLong(decoded.substring(CURSOR_PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException тоже попадает сюда
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+
+    // После изменения кладем свежую версию в кэш, чтобы следующий GET не ходил в БД
+    private UserResponse cacheResponse(User user) {
+        UserResponse response = convertToResponse(user);
+        afterCommit(() -> userCache.put(response));
+        return response;
+    }
+
+    // Побочные эффекты (кэш, журнал) применяются только после успешного коммита
+    private void usersChanged(Collection<Long> ids, Set<Role> roles) {
+        afterCommit(() -> notifyChanged(ids, roles));
+    }
+
+    private void notifyChanged(Collection<Long> ids, Set<Role> roles) {
+        readYourWrites.written(ids, roles);
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private void afterRollback(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        action.run();
+                    }
+                }
+            });
+        }
     }
 
-    private UserResponse convertToResponse(User user) {
+    UserResponse convertToResponse(User user) {
         UserResponse response = new UserResponse();
         response.setId(user.getId());
         response.setUsername(user.getUsername());
@@ -164,6 +868,7 @@ public class UserService {
         response.setActive(user.isActive());
         response.setCreatedAt(user.getCreatedAt());
         response.setUpdatedAt(user.getUpdatedAt());
+        response.setVersion(user.getVersion());
         return response;
     }
 }
\ No newline at end of file
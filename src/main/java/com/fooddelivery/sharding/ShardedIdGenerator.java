@@ -0,0 +1,38 @@
+package com.fooddelivery.sharding;
+
+import com.fooddelivery.model.User;
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+// Последовательность с пулом, как @SequenceGenerator, пока шардирование выключено. С шардами
+// последовательности на каждом шарде свои, а пул Hibernate один на все: id брались бы то из одной,
+// то из другой и повторялись. Поэтому id выдает UserIdAllocator, а пользователь получает
+// id, выданный ему до persist (User.assignedId): по этому id уже выбран шард.
+public class ShardedIdGenerator extends SequenceStyleGenerator {
+
+    // Ключ в настройках Hibernate, см. ShardingConfiguration
+    public static final String ID_ALLOCATOR = "com.fooddelivery.sharding.id-allocator";
+
+    private UserIdAllocator idAllocator;
+
+    @Override
+    public void configure(Type type, Properties parameters, ServiceRegistry serviceRegistry) throws MappingException {
+        super.configure(type, parameters, serviceRegistry);
+        Object allocator = serviceRegistry.getService(ConfigurationService.class).getSettings().get(ID_ALLOCATOR);
+        this.idAllocator = allocator instanceof UserIdAllocator userIdAllocator ? userIdAllocator : null;
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        if (object instanceof User user && user.getAssignedId() != null) {
+            return user.getAssignedId();
+        }
+        return idAllocator != null ? idAllocator.nextId() : super.generate(session, object);
+    }
+}
@@ -0,0 +1,34 @@
+package com.fooddelivery.sharding;
+
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@ConfigurationProperties("user.sharding")
+public class ShardingProperties {
+
+    // Шард пользователя - hash(id) mod shards.size(): после первого запуска список только дополняется
+    // вместе с переносом данных, иначе пользователи окажутся не на своих шардах
+    private List<DataSourceProperties> shards = new ArrayList<>();
+
+    // Размер пула соединений каждого шарда
+    private int poolSize = 10;
+
+    public List<DataSourceProperties> getShards() {
+        return shards;
+    }
+
+    public void setShards(List<DataSourceProperties> shards) {
+        this.shards = shards;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+}
@@ -0,0 +1,110 @@
+package com.fooddelivery.sharding;
+
+import com.fooddelivery.exception.UserAlreadyExistsException;
+import com.fooddelivery.model.User;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+// Справочник username/email -> id в отдельной БД (spring.datasource.*). Уникальные ключи user_directory -
+// единственная проверка уникальности между шардами: запись резервируется до INSERT на шарде
+// и удаляется, если INSERT не прошел. Здесь же глобальная последовательность id (user_id_seq).
+public class UserDirectory {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    public UserDirectory(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    public Optional<Long> findIdByUsername(String username) {
+        return jdbcTemplate.queryForList("select user_id from user_directory where username = ?", Long.class, username)
+                .stream()
+                .findFirst();
+    }
+
+    public boolean existsByUsername(String username) {
+        return findIdByUsername(username).isPresent();
+    }
+
+    public boolean existsByEmail(String email) {
+        return !jdbcTemplate.queryForList("select user_id from user_directory where email = ?", Long.class, email)
+                .isEmpty();
+    }
+
+    public List<String> findExistingUsernames(Collection<String> usernames) {
+        return namedParameterJdbcTemplate.queryForList("select username from user_directory where username in (:values)",
+                Map.of("values", usernames), String.class);
+    }
+
+    public List<String> findExistingEmails(Collection<String> emails) {
+        return namedParameterJdbcTemplate.queryForList("select email from user_directory where email in (:values)",
+                Map.of("values", emails), String.class);
+    }
+
+    // Id пользователя - User.assignedId: строка в справочнике появляется до INSERT на шарде
+    public void reserve(User user) {
+        try {
+            jdbcTemplate.update("insert into user_directory (user_id, username, email) values (?, ?, ?)",
+                    user.getAssignedId(), user.getUsername(), user.getEmail());
+        } catch (DuplicateKeyException e) {
+            throw conflict(user.getAssignedId(), user.getUsername(), user.getEmail());
+        }
+    }
+
+    // Пачка из registerUsers. Дубликат возможен только при гонке с другой регистрацией:
+    // уже вставленные строки пачки удаляются, и вся пачка отклоняется
+    public void reserveAll(List<User> users) {
+        try {
+            jdbcTemplate.batchUpdate("insert into user_directory (user_id, username, email) values (?, ?, ?)",
+                    users.stream()
+                            .map(user -> new Object[]{user.getAssignedId(), user.getUsername(), user.getEmail()})
+                            .collect(Collectors.toList()));
+        } catch (DuplicateKeyException e) {
+            release(users.stream().map(User::getAssignedId).collect(Collectors.toList()));
+            throw e;
+        }
+    }
+
+    public void update(Long id, String username, String email) {
+        try {
+            jdbcTemplate.update("update user_directory set username = ?, email = ? where user_id = ?",
+                    username, email, id);
+        } catch (DuplicateKeyException e) {
+            throw conflict(id, username, email);
+        }
+    }
+
+    public void release(Collection<Long> ids) {
+        if (!ids.isEmpty()) {
+            namedParameterJdbcTemplate.update("delete from user_directory where user_id in (:ids)", Map.of("ids", ids));
+        }
+    }
+
+    // Начало следующего блока id, см. UserIdAllocator
+    public long nextIdBlock() {
+        Long next = jdbcTemplate.queryForObject("select next value for user_id_seq", Long.class);
+        if (next == null) {
+            throw new IllegalStateException("user_id_seq returned no value");
+        }
+        return next;
+    }
+
+    // Какое из значений занято, определяем запросом: текст ошибки уникальности зависит от драйвера
+    private UserAlreadyExistsException conflict(Long id, String username, String email) {
+        Optional<Long> owner = findIdByUsername(username);
+        if (owner.isPresent() && !owner.get().equals(id)) {
+            return new UserAlreadyExistsException("Username", username);
+        }
+        return new UserAlreadyExistsException("Email", email);
+    }
+}
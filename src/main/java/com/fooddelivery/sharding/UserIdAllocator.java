@@ -0,0 +1,27 @@
+package com.fooddelivery.sharding;
+
+// Глобально уникальные id блоками из user_id_seq справочника: один запрос на BLOCK_SIZE id.
+// Id известен до INSERT, по нему выбирается шард; последовательности users_seq на шардах не используются.
+// Блок, выданный до перезапуска и израсходованный не полностью, оставляет пропуск в id.
+public class UserIdAllocator {
+
+    // Совпадает с increment by у user_id_seq
+    static final int BLOCK_SIZE = 50;
+
+    private final UserDirectory directory;
+
+    private long next;
+    private long limit;
+
+    public UserIdAllocator(UserDirectory directory) {
+        this.directory = directory;
+    }
+
+    public synchronized long nextId() {
+        if (next == limit) {
+            next = directory.nextIdBlock();
+            limit = next + BLOCK_SIZE;
+        }
+        return next++;
+    }
+}
@@ -0,0 +1,198 @@
+package com.fooddelivery.sharding;
+
+import com.fooddelivery.datasource.ShardRoutingDataSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Выбор шарда по id и запросы ко всем шардам. Без user.sharding.shards шард один, и все методы
+// просто выполняют запрос в текущем потоке.
+@Component
+public class UserShards implements DisposableBean {
+
+    private final int count;
+    // null без шардирования: id назначает Hibernate
+    private final UserIdAllocator idAllocator;
+    // Параллельные запросы к шардам; null при одном шарде
+    private final ExecutorService executor;
+
+    @Autowired
+    public UserShards(ObjectProvider<ShardRoutingDataSource> routingDataSource,
+                      ObjectProvider<UserIdAllocator> idAllocator,
+                      @Value("${user.sharding.fan-out-threads:0}") int fanOutThreads) {
+        this(routingDataSource.stream().mapToInt(ShardRoutingDataSource::getShardCount).findFirst().orElse(1),
+                idAllocator.getIfAvailable(), fanOutThreads);
+    }
+
+    // fanOutThreads = 0 - по потоку на шард
+    public UserShards(int count, UserIdAllocator idAllocator, int fanOutThreads) {
+        this.count = count;
+        this.idAllocator = idAllocator;
+        if (count > 1) {
+            AtomicInteger threads = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(fanOutThreads > 0 ? fanOutThreads : count, runnable -> {
+                Thread thread = new Thread(runnable, "user-shard-fan-out-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.executor = null;
+        }
+    }
+
+    public boolean isSharded() {
+        return idAllocator != null;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    // Id назначается до INSERT, чтобы по нему выбрать шард
+    public Long nextId() {
+        return idAllocator != null ? idAllocator.nextId() : null;
+    }
+
+    // Финализатор MurmurHash3: id выдаются подряд, а шарды должны заполняться равномерно
+    // при любом их числе
+    public int shardOf(long id) {
+        long hash = id;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return (int) Math.floorMod(hash, (long) count);
+    }
+
+    public <T> T onShard(int shard, Supplier<T> action) {
+        return count == 1 ? action.get() : ShardRoutingDataSource.onShard(shard, action);
+    }
+
+    public <T> T onShardOf(Long id, Supplier<T> action) {
+        return count == 1 ? action.get() : onShard(shardOf(id), action);
+    }
+
+    public void forEachShard(Runnable action) {
+        for (int shard = 0; shard < count; shard++) {
+            onShard(shard, () -> {
+                action.run();
+                return null;
+            });
+        }
+    }
+
+    // Запрос выполняется на всех шардах параллельно, каждый шард отдает список, отсортированный по order.
+    // Результат - первые limit элементов слияния
+    public <T> List<T> fanOut(Supplier<List<T>> query, Comparator<? super T> order, int limit) {
+        if (count == 1) {
+            return query.get();
+        }
+        List<CompletableFuture<List<T>>> futures = new ArrayList<>(count);
+        for (int shard = 0; shard < count; shard++) {
+            int target = shard;
+            futures.add(CompletableFuture.supplyAsync(() -> onShard(target, query), executor));
+        }
+        return merge(join(futures), order, limit);
+    }
+
+    public <T> List<T> fanOut(Supplier<List<T>> query, Comparator<? super T> order) {
+        return fanOut(query, order, Integer.MAX_VALUE);
+    }
+
+    // Запрос по списку id: каждому шарду - только его id. Порядок результата не определен
+    public <T> List<T> fanOutByIds(Collection<Long> ids, Function<Collection<Long>, List<T>> query) {
+        if (count == 1) {
+            return query.apply(ids);
+        }
+        List<CompletableFuture<List<T>>> futures = new ArrayList<>(count);
+        groupByShard(ids).forEach((shard, shardIds) ->
+                futures.add(CompletableFuture.supplyAsync(() -> onShard(shard, () -> query.apply(shardIds)), executor)));
+        List<T> result = new ArrayList<>(ids.size());
+        join(futures).forEach(result::addAll);
+        return result;
+    }
+
+    public Map<Integer, List<Long>> groupByShard(Collection<Long> ids) {
+        Map<Integer, List<Long>> byShard = new LinkedHashMap<>();
+        for (Long id : ids) {
+            byShard.computeIfAbsent(count == 1 ? 0 : shardOf(id), shard -> new ArrayList<>()).add(id);
+        }
+        return byShard;
+    }
+
+    // k-way слияние отсортированных списков через кучу из голов списков
+    static <T> List<T> merge(List<List<T>> sorted, Comparator<? super T> order, int limit) {
+        PriorityQueue<Head<T>> heads = new PriorityQueue<>(sorted.size(), (a, b) -> order.compare(a.value, b.value));
+        int total = 0;
+        for (List<T> list : sorted) {
+            if (!list.isEmpty()) {
+                heads.add(new Head<>(list, 0));
+                total += list.size();
+            }
+        }
+        List<T> merged = new ArrayList<>(Math.min(total, limit));
+        while (merged.size() < limit && !heads.isEmpty()) {
+            Head<T> head = heads.poll();
+            merged.add(head.value);
+            if (head.index + 1 < head.list.size()) {
+                heads.add(new Head<>(head.list, head.index + 1));
+            }
+        }
+        return merged;
+    }
+
+    // Исключение запроса на шарде пробрасывается как есть, чтобы его разобрал GlobalExceptionHandler
+    private static <T> List<T> join(List<CompletableFuture<T>> futures) {
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private static final class Head<T> {
+        private final List<T> list;
+        private final int index;
+        private final T value;
+
+        private Head(List<T> list, int index) {
+            this.list = list;
+            this.index = index;
+            this.value = list.get(index);
+        }
+    }
+}
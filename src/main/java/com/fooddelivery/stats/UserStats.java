@@ -0,0 +1,179 @@
+package com.fooddelivery.stats;
+
+import com.fooddelivery.dto.UserStatsResponse;
+import com.fooddelivery.model.Role;
+import com.fooddelivery.repository.UserRepository;
+import com.fooddelivery.sharding.UserShards;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Число пользователей по роли и активности для GET /users/stats без запросов в БД.
+// Счетчики заполняются одним агрегатным запросом при старте, дальше меняются после коммита
+// регистрации, правки и (де)активации и раз в reconcile-interval сверяются с БД.
+@Component
+public class UserStats implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(UserStats.class);
+
+    private static final Role[] ROLES = Role.values();
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserShards shards;
+
+    private final Duration reconcileInterval;
+
+    // Ячейка на пару (роль, active): role.ordinal() * 2 + (active ? 1 : 0)
+    private final LongAdder[] counts = new LongAdder[ROLES.length * 2];
+
+    // Расхождения прошлой сверки, см. reconcile
+    private long[] previousDrift = new long[ROLES.length * 2];
+
+    private final LongAdder corrections = new LongAdder();
+
+    private ScheduledExecutorService executor;
+
+    public UserStats(@Value("${user.stats.reconcile-interval:5m}") Duration reconcileInterval) {
+        this.reconcileInterval = reconcileInterval;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        long[] loaded = load();
+        for (int i = 0; i < counts.length; i++) {
+            counts[i].add(loaded[i]);
+        }
+    }
+
+    // Нулевой интервал отключает фоновую сверку
+    @EventListener(ApplicationReadyEvent.class)
+    void start() {
+        if (reconcileInterval.isZero() || reconcileInterval.isNegative() || executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-stats-reconcile");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::reconcileQuietly, reconcileInterval.toMillis(),
+                reconcileInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public void added(Role role, boolean active) {
+        cell(role, active).increment();
+    }
+
+    public void changed(Role previousRole, boolean previousActive, Role role, boolean active) {
+        if (previousRole == role && previousActive == active) {
+            return;
+        }
+        cell(previousRole, previousActive).decrement();
+        cell(role, active).increment();
+    }
+
+    public long count(Role role, boolean active) {
+        return cell(role, active).sum();
+    }
+
+    public UserStatsResponse snapshot() {
+        UserStatsResponse response = new UserStatsResponse();
+        long active = 0;
+        long inactive = 0;
+        for (Role role : ROLES) {
+            UserStatsResponse.RoleCounts roleCounts = new UserStatsResponse.RoleCounts(count(role, true), count(role, false));
+            response.getRoles().put(role, roleCounts);
+            active += roleCounts.getActive();
+            inactive += roleCounts.getInactive();
+        }
+        response.setActive(active);
+        response.setInactive(inactive);
+        response.setTotal(active + inactive);
+        return response;
+    }
+
+    // Сравнивает счетчики с БД и возвращает, на сколько они исправлены. Изменение, уже закоммиченное,
+    // но еще не дошедшее до счетчиков (afterCommit), дает разовое расхождение, которое следующая сверка
+    // уже не увидит. Поэтому исправляется только расхождение, повторившееся на двух сверках подряд
+    public synchronized long reconcile() {
+        long[] expected = new long[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            expected[i] = counts[i].sum();
+        }
+        long[] actual = load();
+
+        long corrected = 0;
+        long[] drift = new long[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            drift[i] = actual[i] - expected[i];
+            if (drift[i] != 0 && drift[i] == previousDrift[i]) {
+                counts[i].add(drift[i]);
+                corrected += Math.abs(drift[i]);
+                drift[i] = 0;
+            }
+        }
+        previousDrift = drift;
+        if (corrected > 0) {
+            corrections.add(corrected);
+            log.warn("User stats drifted from the database by {}, corrected", corrected);
+        }
+        return corrected;
+    }
+
+    private void reconcileQuietly() {
+        try {
+            reconcile();
+        } catch (RuntimeException e) {
+            log.warn("User stats reconciliation failed, retrying in {} ms: {}", reconcileInterval.toMillis(), e.toString());
+        }
+    }
+
+    public long getCorrectionCount() {
+        return corrections.sum();
+    }
+
+    // С шардированием строки (role, active, count) каждого шарда суммируются
+    private long[] load() {
+        long[] loaded = new long[counts.length];
+        for (int shard = 0; shard < shards.count(); shard++) {
+            for (Object[] row : shards.onShard(shard, userRepository::countByRoleAndActive)) {
+                loaded[index((Role) row[0], (Boolean) row[1])] += ((Number) row[2]).longValue();
+            }
+        }
+        return loaded;
+    }
+
+    private LongAdder cell(Role role, boolean active) {
+        return counts[index(role, active)];
+    }
+
+    private static int index(Role role, boolean active) {
+        return role.ordinal() * 2 + (active ? 1 : 0);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.fooddelivery.stats;
+
+import com.fooddelivery.model.Role;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+// Те же счетчики, что и в /users/stats; corrections растет, если счетчики расходились с БД
+@Component
+public class UserStatsMetrics implements MeterBinder {
+
+    @Autowired
+    private UserStats userStats;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Role role : Role.values()) {
+            for (boolean active : new boolean[]{true, false}) {
+                Gauge.builder("user.stats.users", userStats, stats -> stats.count(role, active))
+                        .tag("role", role.name())
+                        .tag("active", String.valueOf(active))
+                        .description("Users by role and active state")
+                        .register(registry);
+            }
+        }
+        FunctionCounter.builder("user.stats.corrections", userStats, UserStats::getCorrectionCount)
+                .description("Users by which the counters were corrected during reconciliation with the database")
+                .register(registry);
+    }
+}
@@ -0,0 +1,50 @@
+package com.fooddelivery.reactive;
+
+import com.fooddelivery.exception.PasswordHashingUnavailableException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+// BCrypt не должен выполняться на event loop Netty: хеширование уходит на отдельный планировщик
+// с теми же пределами, что у PasswordHasher (user.password.hashing-*). Переполненная очередь
+// и таймаут дают PasswordHashingUnavailableException (503)
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactivePasswordHasher implements DisposableBean {
+
+    private final BCryptPasswordEncoder encoder;
+    private final Scheduler scheduler;
+    private final Duration timeout;
+
+    public ReactivePasswordHasher(@Value("${user.password.bcrypt-strength:10}") int strength,
+                                  @Value("${user.password.hashing-threads:0}") int threads,
+                                  @Value("${user.password.hashing-queue-capacity:256}") int queueCapacity,
+                                  @Value("${user.password.hashing-timeout:5s}") Duration timeout) {
+        this.encoder = new BCryptPasswordEncoder(strength);
+        this.timeout = timeout;
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.scheduler = Schedulers.newBoundedElastic(poolSize, queueCapacity, "user-password-hashing", 60, true);
+    }
+
+    public Mono<String> hash(String rawPassword) {
+        return Mono.fromCallable(() -> encoder.encode(rawPassword))
+                .subscribeOn(scheduler)
+                .timeout(timeout)
+                .onErrorMap(e -> e instanceof RejectedExecutionException || e instanceof TimeoutException,
+                        e -> new PasswordHashingUnavailableException());
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+    }
+}
@@ -0,0 +1,35 @@
+package com.fooddelivery.reactive;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+
+// Реактивный вариант API пользователей: WebFlux + R2DBC поверх той же таблицы users.
+// Собирается профилем Maven reactive (src/main/reactive) и запускается отдельно от FoodDeliveryApplication
+// со Spring-профилем reactive. Классы пакета помечены @ConditionalOnWebApplication(type = REACTIVE):
+// сервлетное приложение сканирует весь com.fooddelivery и без этого подхватило бы их.
+@SpringBootApplication(exclude = {DataSourceAutoConfiguration.class, HibernateJpaAutoConfiguration.class})
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveUserApplication {
+
+    public static void main(String[] args) {
+        builder().run(args);
+    }
+
+    public static SpringApplicationBuilder builder() {
+        return new SpringApplicationBuilder(ReactiveUserApplication.class)
+                .web(WebApplicationType.REACTIVE)
+                .profiles("reactive");
+    }
+
+    // Tomcat из spring-boot-starter-web тоже в classpath, и без явной фабрики Boot выбрал бы его
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+}
@@ -0,0 +1,109 @@
+package com.fooddelivery.reactive;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fooddelivery.controller.UserController;
+import com.fooddelivery.dto.UserPageResponse;
+import com.fooddelivery.dto.UserRequest;
+import com.fooddelivery.dto.UserResponse;
+import com.fooddelivery.dto.UserUpdateRequest;
+import com.fooddelivery.model.Role;
+import com.fooddelivery.service.UserService;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Те же пути и форматы, что у UserController, для операций ReactiveUserService
+@RestController
+@RequestMapping("/users")
+@Validated
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveUserController {
+
+    @Autowired
+    private ReactiveUserService userService;
+
+    @PostMapping
+    public Mono<ResponseEntity<UserResponse>> registerUser(@Valid @RequestBody UserRequest userRequest) {
+        return userService.registerUser(userRequest)
+                .map(user -> ResponseEntity.status(HttpStatus.CREATED).body(user));
+    }
+
+    // If-None-Match с текущей версией дает 304: ResponseEntityResultHandler сравнивает ETag сам
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<UserResponse>> getUser(@PathVariable Long id) {
+        return userService.getUserById(id)
+                .map(user -> ResponseEntity.ok()
+                        .eTag(String.valueOf(user.getVersion()))
+                        .varyBy(HttpHeaders.ACCEPT)
+                        .body(user));
+    }
+
+    // Список не собирается в памяти: строки из R2DBC сериализуются по мере чтения, а следующие
+    // запрашиваются, когда клиент успевает их забрать. application/x-ndjson - пользователь на строку,
+    // application/json - тот же поток в виде массива
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<UserResponse> getUsers(@RequestParam(required = false) Role role) {
+        return userService.getUsers(role);
+    }
+
+    @GetMapping(params = "limit")
+    public Mono<UserPageResponse> getUsersPage(
+            @RequestParam(required = false) Role role,
+            @RequestParam(required = false) String after,
+            @RequestParam @Min(1) @Max(UserService.MAX_PAGE_SIZE) int limit) {
+        return userService.getUsersPage(role, after, limit);
+    }
+
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<UserResponse>> updateUser(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @Valid @RequestBody UserUpdateRequest updateRequest) {
+        return Mono.defer(() -> userService.updateUser(id, updateRequest, UserController.expectedVersion(ifMatch)))
+                .map(ReactiveUserController::withETag);
+    }
+
+    // Меняются только переданные поля; "phone": null удаляет телефон
+    @PatchMapping(value = "/{id}", consumes = UserController.MERGE_PATCH_JSON)
+    public Mono<ResponseEntity<UserResponse>> patchUser(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody JsonNode patch) {
+        return Mono.defer(() -> userService.patchUser(id, patch, UserController.expectedVersion(ifMatch)))
+                .map(ReactiveUserController::withETag);
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<UserResponse> deactivateUser(@PathVariable Long id) {
+        return userService.deactivateUser(id);
+    }
+
+    @PatchMapping("/{id}/activate")
+    public Mono<UserResponse> activateUser(@PathVariable Long id) {
+        return userService.activateUser(id);
+    }
+
+    private static ResponseEntity<UserResponse> withETag(UserResponse user) {
+        return ResponseEntity.ok().eTag(String.valueOf(user.getVersion())).body(user);
+    }
+}
@@ -0,0 +1,197 @@
+package com.fooddelivery.reactive;
+
+import com.fooddelivery.dto.UserResponse;
+import com.fooddelivery.model.Role;
+import com.fooddelivery.model.UserEventType;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+// Таблицы users и user_outbox через R2DBC (DatabaseClient). Запросы те же, что в UserRepository: чтение сразу
+// в UserResponse без колонки password, keyset по id для страниц, UPDATE только измененных колонок с проверкой версии
+@Repository
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveUserRepository {
+
+    private static final String COLUMNS = "id, username, email, phone, role, active, created_at, updated_at, version";
+
+    // Шаг users_seq и user_outbox_seq, как increment_size у генераторов User и OutboxEvent
+    private static final int ID_BLOCK = 50;
+
+    private final DatabaseClient databaseClient;
+
+    private final IdBlock userIds = new IdBlock("users_seq");
+    private final IdBlock eventIds = new IdBlock("user_outbox_seq");
+
+    public ReactiveUserRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    public Mono<UserResponse> findById(Long id) {
+        return databaseClient.sql("select " + COLUMNS + " from users where id = :id")
+                .bind("id", id)
+                .map(ReactiveUserRepository::toResponse)
+                .one();
+    }
+
+    public Mono<Boolean> existsByUsername(String username) {
+        return databaseClient.sql("select 1 from users where username = :username")
+                .bind("username", username)
+                .fetch()
+                .first()
+                .hasElement();
+    }
+
+    public Mono<Boolean> existsByEmail(String email) {
+        return databaseClient.sql("select 1 from users where email = :email")
+                .bind("email", email)
+                .fetch()
+                .first()
+                .hasElement();
+    }
+
+    // Строки отдаются по мере чтения, следующий запрос к драйверу идет по спросу подписчика
+    public Flux<UserResponse> findAll(Role role) {
+        if (role == null) {
+            return databaseClient.sql("select " + COLUMNS + " from users order by id")
+                    .map(ReactiveUserRepository::toResponse)
+                    .all();
+        }
+        return databaseClient.sql("select " + COLUMNS + " from users where role = :role order by id")
+                .bind("role", role.name())
+                .map(ReactiveUserRepository::toResponse)
+                .all();
+    }
+
+    public Flux<UserResponse> findAfter(Role role, long afterId, int limit) {
+        DatabaseClient.GenericExecuteSpec spec = role == null
+                ? databaseClient.sql("select " + COLUMNS + " from users where id > :afterId order by id limit :limit")
+                : databaseClient.sql("select " + COLUMNS + " from users where role = :role and id > :afterId "
+                        + "order by id limit :limit").bind("role", role.name());
+        return spec.bind("afterId", afterId)
+                .bind("limit", limit)
+                .map(ReactiveUserRepository::toResponse)
+                .all();
+    }
+
+    public Mono<UserResponse> insert(String username, String email, String passwordHash, String phone, Role role) {
+        // Точность колонок timestamp(6): ответ совпадает с тем, что потом прочитается из БД
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        return userIds.next().flatMap(id -> bindNullable(databaseClient.sql("insert into users "
+                        + "(id, username, email, password, phone, role, active, created_at, updated_at, version) "
+                        + "values (:id, :username, :email, :password, :phone, :role, true, :now, :now, 0)")
+                        .bind("id", id)
+                        .bind("username", username)
+                        .bind("email", email)
+                        .bind("password", passwordHash)
+                        .bind("role", role.name())
+                        .bind("now", now), "phone", phone)
+                .fetch()
+                .rowsUpdated()
+                .thenReturn(new UserResponse(id, username, email, phone, role, true, now, now, 0L)));
+    }
+
+    // columns - только измененные колонки (как @DynamicUpdate у User). 0 строк - версия уже другая
+    // или пользователя нет
+    public Mono<Long> update(Long id, Long version, Map<String, Object> columns, LocalDateTime now) {
+        String assignments = columns.keySet().stream()
+                .map(column -> column + " = :" + column)
+                .collect(Collectors.joining(", "));
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql("update users set " + assignments
+                        + ", updated_at = :now, version = version + 1 where id = :id and version = :version")
+                .bind("now", now)
+                .bind("id", id)
+                .bind("version", version);
+        for (Map.Entry<String, Object> column : columns.entrySet()) {
+            spec = bindNullable(spec, column.getKey(), column.getValue());
+        }
+        return spec.fetch().rowsUpdated();
+    }
+
+    // Как UserRepository.updateActive: строка в нужном состоянии не меняется, версия у нее та же
+    public Mono<Long> updateActive(Long id, boolean active, LocalDateTime now) {
+        return databaseClient.sql("update users set active = :active, updated_at = :now, version = version + 1 "
+                        + "where id = :id and active <> :active")
+                .bind("active", active)
+                .bind("now", now)
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    // Событие для OutboxRelay, как OutboxEvent. Пишется в транзакции изменения, которое его вызвало
+    public Mono<Void> insertEvent(UserEventType type, Long userId, String payload) {
+        return eventIds.next().flatMap(id -> databaseClient.sql("insert into user_outbox "
+                        + "(id, created_at, event_type, payload, user_id) values (:id, :now, :type, :payload, :userId)")
+                .bind("id", id)
+                .bind("now", LocalDateTime.now().truncatedTo(ChronoUnit.MICROS))
+                .bind("type", type.name())
+                .bind("payload", payload)
+                .bind("userId", userId)
+                .fetch()
+                .rowsUpdated())
+                .then();
+    }
+
+    // Пул id как у Hibernate (pooled): значение последовательности - верхняя граница блока [value - 49, value].
+    // Поэтому id из реактивного и сервлетного приложений не повторяются. При гонке двух запросов
+    // за новым блоком остаток одного из блоков теряется, id при этом не повторяются
+    private final class IdBlock {
+        private final String sequence;
+        private long nextId;
+        private long maxId = -1;
+
+        IdBlock(String sequence) {
+            this.sequence = sequence;
+        }
+
+        Mono<Long> next() {
+            // defer: id берется при подписке, повторная подписка получает новый
+            return Mono.defer(() -> {
+                synchronized (this) {
+                    if (nextId <= maxId) {
+                        return Mono.just(nextId++);
+                    }
+                }
+                return databaseClient.sql("select next value for " + sequence)
+                        .map((row, metadata) -> row.get(0, Long.class))
+                        .one()
+                        .map(this::take);
+            });
+        }
+
+        private synchronized long take(long upper) {
+            long lower = Math.max(1, upper - ID_BLOCK + 1);
+            nextId = lower + 1;
+            maxId = upper;
+            return lower;
+        }
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bindNullable(DatabaseClient.GenericExecuteSpec spec,
+                                                                  String name, Object value) {
+        return value != null ? spec.bind(name, value) : spec.bindNull(name, String.class);
+    }
+
+    private static UserResponse toResponse(Row row, RowMetadata metadata) {
+        return new UserResponse(
+                row.get("id", Long.class),
+                row.get("username", String.class),
+                row.get("email", String.class),
+                row.get("phone", String.class),
+                Role.valueOf(row.get("role", String.class)),
+                Boolean.TRUE.equals(row.get("active", Boolean.class)),
+                row.get("created_at", LocalDateTime.class),
+                row.get("updated_at", LocalDateTime.class),
+                row.get("version", Long.class));
+    }
+}
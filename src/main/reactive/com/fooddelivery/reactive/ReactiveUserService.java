@@ -0,0 +1,192 @@
+package com.fooddelivery.reactive;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fooddelivery.dto.UserPageResponse;
+import com.fooddelivery.dto.UserRequest;
+import com.fooddelivery.dto.UserResponse;
+import com.fooddelivery.dto.UserUpdateRequest;
+import com.fooddelivery.exception.PreconditionFailedException;
+import com.fooddelivery.exception.UserAlreadyExistsException;
+import com.fooddelivery.exception.UserNotFoundException;
+import com.fooddelivery.model.Role;
+import com.fooddelivery.model.UserEventType;
+import com.fooddelivery.outbox.UserEventOutbox;
+import com.fooddelivery.service.UserMergePatch;
+import com.fooddelivery.service.UserService;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+// Реактивный аналог основных операций UserService: регистрация, чтение, списки, правка и (де)активация.
+// Изменение и его событие в user_outbox пишутся в одной транзакции R2DBC, как в UserService. Кэша, индексов,
+// статистики и ленты изменений здесь нет: вариант нужен для сравнения стеков под нагрузкой, и сервлетное
+// приложение, обслуживающее ту же БД, не узнало бы о его записях. Гонки ловят уникальные ключи и версия в WHERE
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveUserService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveUserService.class);
+
+    @Autowired
+    private ReactiveUserRepository userRepository;
+
+    @Autowired
+    private ReactivePasswordHasher passwordHasher;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private TransactionalOperator transactionalOperator;
+
+    public Mono<UserResponse> registerUser(UserRequest userRequest) {
+        // Проверка уникальности username и email, INSERT при гонке отклонит уникальный ключ
+        return userRepository.existsByUsername(userRequest.getUsername())
+                .flatMap(taken -> taken
+                        ? Mono.<Boolean>error(new UserAlreadyExistsException("Username", userRequest.getUsername()))
+                        : userRepository.existsByEmail(userRequest.getEmail()))
+                .flatMap(taken -> taken
+                        ? Mono.<String>error(new UserAlreadyExistsException("Email", userRequest.getEmail()))
+                        : passwordHasher.hash(userRequest.getPassword()))
+                // Транзакция начинается после BCrypt: соединение не занято, пока считается хэш
+                .flatMap(passwordHash -> transactionalOperator.transactional(userRepository.insert(
+                                userRequest.getUsername(), userRequest.getEmail(), passwordHash, userRequest.getPhone(),
+                                userRequest.getRole() != null ? userRequest.getRole() : Role.CUSTOMER)
+                        .flatMap(user -> event(UserEventType.USER_REGISTERED, user, null))))
+                .doOnNext(user -> log.debug("User saved with ID: {}", user.getId()));
+    }
+
+    public Mono<UserResponse> getUserById(Long id) {
+        return userRepository.findById(id)
+                .switchIfEmpty(Mono.error(() -> new UserNotFoundException(id)));
+    }
+
+    public Flux<UserResponse> getUsers(Role role) {
+        return userRepository.findAll(role);
+    }
+
+    // Курсор того же формата, что у UserService: страницы можно листать в любом из вариантов API
+    public Mono<UserPageResponse> getUsersPage(Role role, String after, int limit) {
+        return Mono.defer(() -> {
+            if (limit < 1 || limit > UserService.MAX_PAGE_SIZE) {
+                return Mono.error(new IllegalArgumentException("Limit must be between 1 and " + UserService.MAX_PAGE_SIZE));
+            }
+            long afterId = after != null ? UserService.decodeCursor(after) : 0L;
+            // Берем на одну запись больше, чтобы понять, есть ли следующая страница
+            return userRepository.findAfter(role, afterId, limit + 1).collectList().map(users -> {
+                boolean hasMore = users.size() > limit;
+                List<UserResponse> items = hasMore ? users.subList(0, limit) : users;
+                String nextCursor = hasMore ? UserService.encodeCursor(items.get(items.size() - 1).getId()) : null;
+                return new UserPageResponse(items, nextCursor);
+            });
+        });
+    }
+
+    public Mono<UserResponse> updateUser(Long id, UserUpdateRequest updateRequest, Long expectedVersion) {
+        return applyUpdate(id, updateRequest, false, expectedVersion);
+    }
+
+    // JSON Merge Patch (RFC 7386), как UserService.patchUser
+    public Mono<UserResponse> patchUser(Long id, JsonNode patch, Long expectedVersion) {
+        return Mono.defer(() -> applyUpdate(id, UserMergePatch.read(patch, objectMapper, validator),
+                patch.path("phone").isNull(), expectedVersion));
+    }
+
+    private Mono<UserResponse> applyUpdate(Long id, UserUpdateRequest updateRequest, boolean clearPhone,
+                                           Long expectedVersion) {
+        return getUserById(id).flatMap(user -> {
+            if (expectedVersion != null && !expectedVersion.equals(user.getVersion())) {
+                return Mono.error(new PreconditionFailedException(id, expectedVersion));
+            }
+
+            // Меняются только колонки, значение которых действительно отличается
+            Map<String, Object> columns = new LinkedHashMap<>();
+            Mono<Void> uniqueness = Mono.empty();
+            if (updateRequest.getUsername() != null && !updateRequest.getUsername().equals(user.getUsername())) {
+                columns.put("username", updateRequest.getUsername());
+                uniqueness = uniqueness.then(userRepository.existsByUsername(updateRequest.getUsername())
+                        .flatMap(taken -> taken
+                                ? Mono.<Void>error(new UserAlreadyExistsException("Username", updateRequest.getUsername()))
+                                : Mono.<Void>empty()));
+            }
+            if (updateRequest.getEmail() != null && !updateRequest.getEmail().equals(user.getEmail())) {
+                columns.put("email", updateRequest.getEmail());
+                uniqueness = uniqueness.then(userRepository.existsByEmail(updateRequest.getEmail())
+                        .flatMap(taken -> taken
+                                ? Mono.<Void>error(new UserAlreadyExistsException("Email", updateRequest.getEmail()))
+                                : Mono.<Void>empty()));
+            }
+            String phone = clearPhone ? null : updateRequest.getPhone();
+            if ((clearPhone || phone != null) && !Objects.equals(phone, user.getPhone())) {
+                columns.put("phone", phone);
+            }
+            if (updateRequest.getRole() != null && updateRequest.getRole() != user.getRole()) {
+                columns.put("role", updateRequest.getRole().name());
+            }
+            if (updateRequest.getActive() != null && updateRequest.getActive() != user.isActive()) {
+                columns.put("active", updateRequest.getActive());
+            }
+
+            Mono<Map<String, Object>> changes = updateRequest.getPassword() == null
+                    ? Mono.just(columns)
+                    : passwordHasher.hash(updateRequest.getPassword()).map(passwordHash -> {
+                        columns.put("password", passwordHash);
+                        return columns;
+                    });
+            return uniqueness.then(changes).flatMap(changed -> {
+                if (changed.isEmpty()) {
+                    // Ничего не изменилось: ни UPDATE, ни новой версии
+                    return Mono.just(user);
+                }
+                LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+                List<String> changedFields = List.copyOf(changed.keySet());
+                return transactionalOperator.transactional(userRepository.update(id, user.getVersion(), changed, now)
+                        .flatMap(updated -> updated == 0
+                                ? Mono.<UserResponse>error(new OptimisticLockingFailureException("User " + id + " was modified concurrently"))
+                                : getUserById(id))
+                        .flatMap(updated -> event(UserEventType.USER_UPDATED, updated, changedFields)));
+            });
+        });
+    }
+
+    public Mono<UserResponse> deactivateUser(Long id) {
+        return setActive(id, false);
+    }
+
+    public Mono<UserResponse> activateUser(Long id) {
+        return setActive(id, true);
+    }
+
+    // Событие только если строка действительно изменилась, как в UserService
+    private Mono<UserResponse> setActive(Long id, boolean active) {
+        return transactionalOperator.transactional(
+                Mono.defer(() -> userRepository.updateActive(id, active, LocalDateTime.now().truncatedTo(ChronoUnit.MICROS)))
+                        .flatMap(updated -> getUserById(id).flatMap(user -> updated > 0
+                                ? event(UserEventOutbox.activeEventType(user), user, null)
+                                : Mono.just(user))));
+    }
+
+    private Mono<UserResponse> event(UserEventType type, UserResponse user, List<String> changedFields) {
+        return Mono.fromCallable(() -> UserEventOutbox.payload(objectMapper, type, user, changedFields))
+                .flatMap(payload -> userRepository.insertEvent(type, user.getId(), payload))
+                .thenReturn(user);
+    }
+}
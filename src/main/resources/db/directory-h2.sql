@@ -0,0 +1,12 @@
+-- Справочник для шардирования (user.sharding.shards): глобальные id пользователей и уникальность
+-- username/email между шардами, см. UserDirectory. Выполняется при старте, поэтому только create ... if not exists.
+create sequence if not exists user_id_seq start with 1 increment by 50;
+
+create table if not exists user_directory (
+    user_id bigint not null,
+    username varchar(255) not null,
+    email varchar(255) not null,
+    primary key (user_id),
+    constraint uk_user_directory_username unique (username),
+    constraint uk_user_directory_email unique (email)
+);
@@ -0,0 +1,44 @@
+-- Схема для профиля prod (spring.jpa.hibernate.ddl-auto=validate): Hibernate ее не меняет, а только
+-- проверяет при старте. При изменении сущности User скрипт обновляется вместе с ней.
+create sequence if not exists users_seq start with 1 increment by 50;
+
+create table if not exists users (
+    id bigint not null,
+    active boolean not null,
+    created_at timestamp(6) not null,
+    email varchar(255) not null,
+    password varchar(255) not null,
+    phone varchar(255),
+    role varchar(255) not null check (role in ('CUSTOMER', 'RESTAURANT_MANAGER', 'COURIER', 'ADMIN')),
+    updated_at timestamp(6),
+    username varchar(255) not null,
+    version bigint,
+    change_seq bigint,
+    primary key (id),
+    constraint uk_users_username unique (username),
+    constraint uk_users_email unique (email)
+);
+
+create index if not exists idx_users_role_id on users (role, id);
+
+-- Позиция в ленте изменений (UserChangeSequence). Лента раньше шла по (updated_at, id)
+alter table users add column if not exists change_seq bigint;
+drop index if exists idx_users_updated_at_id;
+create index if not exists idx_users_change_seq_id on users (change_seq, id);
+
+-- Строки, записанные до появления change_seq, попадают в начало ленты. Раньше updated_at
+-- при вставке не заполнялся. По индексу выше запрос находит такие строки без полного чтения
+-- таблицы, после первого запуска их нет
+update users set change_seq = 0, updated_at = coalesce(updated_at, created_at) where change_seq is null;
+
+-- Недоставленные события о пользователях (outbox), см. OutboxEvent
+create sequence if not exists user_outbox_seq start with 1 increment by 50;
+
+create table if not exists user_outbox (
+    id bigint not null,
+    created_at timestamp(6) not null,
+    event_type varchar(32) not null check (event_type in ('USER_REGISTERED', 'USER_UPDATED', 'USER_ACTIVATED', 'USER_DEACTIVATED')),
+    payload varchar(4000) not null,
+    user_id bigint not null,
+    primary key (id)
+);
@@ -0,0 +1,28 @@
+package com.fooddelivery;
+
+import com.fooddelivery.model.User;
+import com.fooddelivery.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Профиль prod на файловой H2: db/schema-h2.sql должен проходить ddl-auto=validate для текущих сущностей
+@SpringBootTest(properties = "user.h2.dir=./target/prod-profile-test")
+@ActiveProfiles("prod")
+class ProdProfileTests {
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Test
+	void schemaScriptMatchesEntities() {
+		User user = userRepository.save(new User("produser" + System.nanoTime(), System.nanoTime() + "@prod.local", "hash", null));
+
+		assertThat(userRepository.findById(user.getId())).isPresent();
+		userRepository.delete(user);
+	}
+
+}
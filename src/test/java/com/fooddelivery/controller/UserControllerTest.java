@@ -1,29 +1,54 @@
 package com.fooddelivery.controller;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fooddelivery.config.ContentNegotiationConfiguration;
+import com.fooddelivery.dto.UserActivationResult;
+import com.fooddelivery.dto.UserAvailabilityResponse;
+import com.fooddelivery.dto.UserBatchResult;
+import com.fooddelivery.dto.UserChangesResponse;
+import com.fooddelivery.dto.UserPageResponse;
 import com.fooddelivery.dto.UserRequest;
 import com.fooddelivery.dto.UserResponse;
+import com.fooddelivery.dto.UserStatsResponse;
+import com.fooddelivery.feed.UserChangeFeed;
 import com.fooddelivery.model.Role;
+import com.fooddelivery.ratelimit.RateLimiter;
 import com.fooddelivery.service.UserService;
+import com.fooddelivery.stats.UserStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
-@WebMvcTest(UserController.class)
+@WebMvcTest(value = UserController.class, properties = "user.rate-limit.api-keys=rate-limit-test-key")
+@Import({SimpleMeterRegistry.class, ContentNegotiationConfiguration.class, RateLimiter.class})
 public class UserControllerTest {
 
     @Autowired
@@ -32,9 +57,18 @@ public class UserControllerTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @MockBean
     private UserService userService;
 
+    @MockBean
+    private UserChangeFeed changeFeed;
+
+    @MockBean
+    private UserStats userStats;
+
     private UserResponse testUser;
     private UserResponse testAdmin;
 
@@ -47,6 +81,7 @@ public class UserControllerTest {
         testUser.setRole(Role.CUSTOMER);
         testUser.setActive(true);
         testUser.setCreatedAt(LocalDateTime.now());
+        testUser.setVersion(3L);
 
         testAdmin = new UserResponse();
         testAdmin.setId(2L);
@@ -83,6 +118,126 @@ public class UserControllerTest {
                 .andExpect(jsonPath("$[0].role").value("ADMIN"));
     }
 
+    @Test
+    void testListEtagFollowsReadData() throws Exception {
+        Mockito.when(userService.getUsersByRole(Role.CUSTOMER)).thenReturn(List.of(testUser));
+        String etag = mockMvc.perform(get("/users").param("role", "CUSTOMER"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        assertThat(etag).startsWith("W/\"1-");
+
+        // Реплика еще не догнала запись: те же строки - тот же ETag, клиент остается со своей копией
+        mockMvc.perform(get("/users").param("role", "CUSTOMER").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        UserResponse updated = new UserResponse();
+        updated.setId(1L);
+        updated.setUsername("testuser");
+        updated.setRole(Role.CUSTOMER);
+        updated.setVersion(4L);
+        Mockito.when(userService.getUsersByRole(Role.CUSTOMER)).thenReturn(List.of(updated));
+        String newEtag = mockMvc.perform(get("/users").param("role", "CUSTOMER").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        assertThat(newEtag).isNotEqualTo(etag);
+    }
+
+    @Test
+    void testGetUsersByRoleInBinaryFormats() throws Exception {
+        Mockito.when(userService.getUsersByRole(Role.CUSTOMER)).thenReturn(List.of(testUser));
+        String json = mockMvc.perform(get("/users").param("role", "CUSTOMER"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getContentAsString();
+
+        byte[] smile = mockMvc.perform(get("/users").param("role", "CUSTOMER")
+                .accept("application/x-jackson-smile"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-jackson-smile"))
+                .andExpect(header().string("Vary", "Accept"))
+                .andReturn().getResponse().getContentAsByteArray();
+        byte[] cbor = mockMvc.perform(get("/users").param("role", "CUSTOMER")
+                .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        // Те же данные, что и в JSON, включая дату в формате ISO
+        TypeReference<List<UserResponse>> list = new TypeReference<>() {
+        };
+        List<UserResponse> expected = objectMapper.readValue(json, list);
+        ObjectMapper smileMapper = objectMapper.copyWith(new SmileFactory());
+        ObjectMapper cborMapper = objectMapper.copyWith(new CBORFactory());
+        JsonNode expectedTree = objectMapper.valueToTree(expected);
+        assertThat((JsonNode) objectMapper.valueToTree(smileMapper.readValue(smile, list))).isEqualTo(expectedTree);
+        assertThat((JsonNode) objectMapper.valueToTree(cborMapper.readValue(cbor, list))).isEqualTo(expectedTree);
+        assertThat(smileMapper.readTree(smile).get(0).get("createdAt").isTextual()).isTrue();
+        assertThat(smile.length).isLessThan(json.length());
+    }
+
+    @Test
+    void testGetUsersPage() throws Exception {
+        UserPageResponse page = new UserPageResponse(Arrays.asList(testAdmin), "dToy");
+
+        Mockito.when(userService.getUsersPage(Role.ADMIN, "dTox", 1)).thenReturn(page);
+
+        mockMvc.perform(get("/users")
+                .param("role", "ADMIN")
+                .param("after", "dTox")
+                .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.items[0].username").value("admin"))
+                .andExpect(jsonPath("$.nextCursor").value("dToy"));
+    }
+
+    @Test
+    void testGetUserStats() throws Exception {
+        UserStatsResponse stats = new UserStatsResponse();
+        stats.setTotal(5);
+        stats.setActive(3);
+        stats.setInactive(2);
+        stats.getRoles().put(Role.COURIER, new UserStatsResponse.RoleCounts(3, 2));
+        Mockito.when(userStats.snapshot()).thenReturn(stats);
+
+        mockMvc.perform(get("/users/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(5))
+                .andExpect(jsonPath("$.roles.COURIER.active").value(3))
+                .andExpect(jsonPath("$.roles.COURIER.inactive").value(2));
+        Mockito.verifyNoInteractions(userService);
+    }
+
+    @Test
+    void testGetUsersPageInvalidLimit() throws Exception {
+        mockMvc.perform(get("/users")
+                .param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testGetChangesLongPoll() throws Exception {
+        DeferredResult<UserChangesResponse> changes = new DeferredResult<>();
+        changes.setResult(new UserChangesResponse(List.of(testUser), "next-token", false));
+        Mockito.when(changeFeed.poll("token", 100, 30)).thenReturn(changes);
+
+        MvcResult result = mockMvc.perform(get("/users/changes")
+                .param("since", "token")
+                .param("wait", "30"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].username").value("testuser"))
+                .andExpect(jsonPath("$.nextToken").value("next-token"))
+                .andExpect(jsonPath("$.hasMore").value(false));
+
+        mockMvc.perform(get("/users/changes")
+                .param("wait", String.valueOf(UserChangeFeed.MAX_WAIT_SECONDS + 1)))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void testRegisterUser() throws Exception {
         UserRequest userRequest = new UserRequest();
@@ -102,6 +257,93 @@ public class UserControllerTest {
                 .andExpect(jsonPath("$.email").value("test@example.com"));
     }
 
+    @Test
+    void testRegisterUserIntegrityViolations() throws Exception {
+        UserRequest userRequest = new UserRequest();
+        userRequest.setUsername("newuser");
+        userRequest.setEmail("new@example.com");
+        userRequest.setPassword("password123");
+        userRequest.setRole(Role.CUSTOMER);
+        String body = objectMapper.writeValueAsString(userRequest);
+
+        // Гонка двух регистраций с одним email
+        Mockito.when(userService.registerUser(any(UserRequest.class))).thenThrow(new DataIntegrityViolationException(
+                "could not execute statement", new SQLException("Unique index or primary key violation: "
+                        + "\"PUBLIC.UK_USERS_EMAIL_INDEX_4 ON PUBLIC.USERS(EMAIL NULLS FIRST)\"")));
+        mockMvc.perform(post("/users").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.error").value("Conflict"));
+
+        // Другое нарушение - не дубликат, а ошибка сервера
+        Mockito.reset(userService);
+        Mockito.when(userService.registerUser(any(UserRequest.class))).thenThrow(new DataIntegrityViolationException(
+                "could not execute statement", new SQLException("NULL not allowed for column \"PASSWORD\"")));
+        mockMvc.perform(post("/users").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isInternalServerError());
+    }
+
+    @Test
+    void testRegisterUserRateLimitedPerClient() throws Exception {
+        UserRequest userRequest = new UserRequest();
+        userRequest.setUsername("botuser");
+        userRequest.setEmail("bot@example.com");
+        userRequest.setPassword("password123");
+        userRequest.setRole(Role.CUSTOMER);
+        String body = objectMapper.writeValueAsString(userRequest);
+        Mockito.when(userService.registerUser(any(UserRequest.class))).thenReturn(testUser);
+
+        // user.rate-limit.endpoints.register: 20 запросов в минуту, отдельная корзина для ключа
+        for (int i = 0; i < 20; i++) {
+            mockMvc.perform(post("/users").header("X-API-Key", "rate-limit-test-key")
+                    .contentType(MediaType.APPLICATION_JSON).content(body))
+                    .andExpect(status().isCreated());
+        }
+        mockMvc.perform(post("/users").header("X-API-Key", "rate-limit-test-key")
+                .contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "3"))
+                .andExpect(jsonPath("$.error").value("Too Many Requests"));
+
+        // Неизвестный ключ не дает своей корзины, запрос считается по IP
+        mockMvc.perform(post("/users").header("X-API-Key", "random-key")
+                .contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isCreated());
+        Mockito.verify(userService, Mockito.times(21)).registerUser(any(UserRequest.class));
+    }
+
+    @Test
+    void testRegisterUsersBatch() throws Exception {
+        UserRequest userRequest = new UserRequest();
+        userRequest.setUsername("newuser");
+        userRequest.setEmail("new@example.com");
+        userRequest.setPassword("password123");
+
+        Mockito.when(userService.registerUsers(anyList())).thenReturn(Arrays.asList(
+                UserBatchResult.created(0, testUser),
+                UserBatchResult.conflict(1, "Username already exists: newuser")));
+
+        mockMvc.perform(post("/users/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Arrays.asList(userRequest, userRequest))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("CREATED"))
+                .andExpect(jsonPath("$[0].user.username").value("testuser"))
+                .andExpect(jsonPath("$[1].status").value("CONFLICT"));
+    }
+
+    @Test
+    void testRegisterUsersBatchValidation() throws Exception {
+        UserRequest invalidRequest = new UserRequest();
+        invalidRequest.setUsername("ab");
+        invalidRequest.setEmail("invalid-email");
+        invalidRequest.setPassword("123");
+
+        mockMvc.perform(post("/users/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Arrays.asList(invalidRequest))))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void testUpdateUser() throws Exception {
         // Тест обновления пользователя
@@ -112,7 +354,7 @@ public class UserControllerTest {
         updatedUser.setRole(Role.CUSTOMER);
         updatedUser.setActive(true);
 
-        Mockito.when(userService.updateUser(eq(1L), any())).thenReturn(updatedUser);
+        Mockito.when(userService.updateUser(eq(1L), any(), isNull())).thenReturn(updatedUser);
 
         mockMvc.perform(put("/users/1")
                 .contentType(MediaType.APPLICATION_JSON)
@@ -121,6 +363,159 @@ public class UserControllerTest {
                 .andExpect(jsonPath("$.username").value("updateduser"));
     }
 
+    @Test
+    void testPatchUserWithMergePatch() throws Exception {
+        UserResponse patchedUser = new UserResponse();
+        patchedUser.setId(1L);
+        patchedUser.setUsername("testuser");
+        patchedUser.setPhone("+79993334455");
+        patchedUser.setVersion(4L);
+
+        Mockito.when(userService.patchUser(eq(1L), any(), eq(3L))).thenReturn(patchedUser);
+
+        mockMvc.perform(patch("/users/1")
+                .contentType(UserController.MERGE_PATCH_JSON)
+                .header("If-Match", "\"3\"")
+                .content("{\"phone\":\"+79993334455\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"4\""))
+                .andExpect(jsonPath("$.phone").value("+79993334455"));
+    }
+
+    @Test
+    void testPatchUserRequiresMergePatchContentType() throws Exception {
+        mockMvc.perform(patch("/users/1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"phone\":\"+79993334455\"}"))
+                .andExpect(status().isUnsupportedMediaType());
+
+        Mockito.verifyNoInteractions(userService);
+    }
+
+    @Test
+    void testSearchUsers() throws Exception {
+        Mockito.when(userService.searchUsers("test", Role.CUSTOMER, 5)).thenReturn(List.of(testUser));
+
+        mockMvc.perform(get("/users/search").param("q", "test").param("role", "CUSTOMER").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].username").value("testuser"));
+
+        mockMvc.perform(get("/users/search").param("q", " "))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testDeactivateUsersByRole() throws Exception {
+        Mockito.when(userService.deactivateUsers(any())).thenReturn(new UserActivationResult(1200));
+
+        mockMvc.perform(post("/users/batch/deactivate")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"role\":\"COURIER\",\"createdTo\":\"2024-01-01T00:00:00\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updated").value(1200));
+    }
+
+    @Test
+    void testActivateUsersRequiresExactlyOneSelector() throws Exception {
+        mockMvc.perform(post("/users/batch/activate")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{}"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(post("/users/batch/activate")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"ids\":[1,2],\"role\":\"COURIER\"}"))
+                .andExpect(status().isBadRequest());
+
+        Mockito.verifyNoInteractions(userService);
+    }
+
+    @Test
+    void testGetUserReturnsEtagAndNotModified() throws Exception {
+        Mockito.when(userService.getUserById(1L)).thenReturn(testUser);
+
+        mockMvc.perform(get("/users/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"3\""))
+                .andExpect(jsonPath("$.version").doesNotExist());
+
+        mockMvc.perform(get("/users/1").header("If-None-Match", "\"3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void testUpdateUserPassesIfMatchVersion() throws Exception {
+        testUser.setVersion(4L);
+        Mockito.when(userService.updateUser(eq(1L), any(), eq(3L))).thenReturn(testUser);
+
+        mockMvc.perform(put("/users/1")
+                .header("If-Match", "\"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"phone\":\"+79990001122\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"4\""));
+    }
+
+    @Test
+    void testGetUserEtagDependsOnFormat() throws Exception {
+        Mockito.when(userService.getUserById(1L)).thenReturn(testUser);
+
+        mockMvc.perform(get("/users/1").accept("application/x-jackson-smile"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-jackson-smile"))
+                .andExpect(header().string("ETag", "\"3-smile\""));
+
+        mockMvc.perform(get("/users/1").accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"3-cbor\""));
+
+        // JSON в кэше не подходит клиенту, который просит Smile
+        mockMvc.perform(get("/users/1").header("If-None-Match", "\"3\"")
+                .accept("application/x-jackson-smile"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/users/1").header("If-None-Match", "\"3-smile\"")
+                .accept("application/x-jackson-smile"))
+                .andExpect(status().isNotModified());
+
+        // Предпочтение клиента решает q, а не порядок в Accept
+        mockMvc.perform(get("/users/1").accept("application/cbor;q=0.5, application/json"))
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(header().string("ETag", "\"3\""));
+    }
+
+    @Test
+    void testUpdateUserAcceptsFormatEtagInIfMatch() throws Exception {
+        testUser.setVersion(4L);
+        Mockito.when(userService.updateUser(eq(1L), any(), eq(3L))).thenReturn(testUser);
+
+        mockMvc.perform(put("/users/1")
+                .header("If-Match", "\"3-smile\"")
+                .accept("application/x-jackson-smile")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"phone\":\"+79990001122\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"4-smile\""));
+
+        mockMvc.perform(put("/users/1")
+                .header("If-Match", "\"3-xml\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"phone\":\"+79990001122\"}"))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void testUpdateUserWithWeakIfMatchIsRejected() throws Exception {
+        mockMvc.perform(put("/users/1")
+                .header("If-Match", "W/\"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"phone\":\"+79990001122\"}"))
+                .andExpect(status().isPreconditionFailed());
+
+        Mockito.verifyNoInteractions(userService);
+    }
+
     @Test
     void testDeactivateUser() throws Exception {
         UserResponse deactivatedUser = new UserResponse();
@@ -159,6 +554,21 @@ public class UserControllerTest {
                 .andExpect(jsonPath("$.username").value("testuser"));
     }
 
+    @Test
+    void testCheckAvailability() throws Exception {
+        UserAvailabilityResponse availability = new UserAvailabilityResponse();
+        availability.setUsername("testuser");
+        availability.setUsernameAvailable(false);
+
+        Mockito.when(userService.checkAvailability("testuser", null)).thenReturn(availability);
+
+        mockMvc.perform(get("/users/availability")
+                .param("username", "testuser"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.usernameAvailable").value(false))
+                .andExpect(jsonPath("$.emailAvailable").doesNotExist());
+    }
+
     @Test
     void testGetUserByIdNotFound() throws Exception {
         Mockito.when(userService.getUserById(999L))
@@ -166,5 +576,8 @@ public class UserControllerTest {
 
         mockMvc.perform(get("/users/999"))
                 .andExpect(status().isNotFound());
+
+        assertThat(meterRegistry.counter("user.errors", "exception", "UserNotFoundException").count())
+                .isEqualTo(1.0);
     }
 }
\ No newline at end of file
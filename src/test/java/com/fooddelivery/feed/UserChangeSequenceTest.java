@@ -0,0 +1,91 @@
+package com.fooddelivery.feed;
+
+import com.fooddelivery.repository.UserRepository;
+import com.fooddelivery.sharding.UserShards;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith(MockitoExtension.class)
+class UserChangeSequenceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private UserChangeSequence sequence;
+
+    @BeforeEach
+    void setUp() {
+        sequence = new UserChangeSequence();
+        ReflectionTestUtils.setField(sequence, "userRepository", userRepository);
+        ReflectionTestUtils.setField(sequence, "shards", new UserShards(1, null, 0));
+        lenient().when(userRepository.findMaxChangeSeq()).thenReturn(10L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void visible_ShouldStopBeforeOldestOpenTransaction() {
+        AtomicInteger advances = new AtomicInteger();
+        sequence.onAdvance(advances::incrementAndGet);
+
+        List<TransactionSynchronization> first = begin();
+        List<TransactionSynchronization> second = begin();
+        assertThat(sequence.visible()).isEqualTo(10L);
+
+        // Вторая транзакция закоммичена раньше первой: ее номер пока не виден
+        complete(second, TransactionSynchronization.STATUS_COMMITTED);
+        assertThat(sequence.visible()).isEqualTo(10L);
+        assertThat(advances).hasValue(0);
+
+        // Откат первой тоже сдвигает границу
+        complete(first, TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertThat(sequence.visible()).isEqualTo(12L);
+        assertThat(advances).hasValue(1);
+    }
+
+    @Test
+    void current_ShouldReuseNumberWithinTransaction() {
+        TransactionSynchronizationManager.initSynchronization();
+        long seq = sequence.current();
+
+        assertThat(seq).isEqualTo(11L);
+        assertThat(sequence.current()).isEqualTo(seq);
+    }
+
+    @Test
+    void current_ShouldRequireTransaction() {
+        assertThatThrownBy(() -> sequence.current()).isInstanceOf(IllegalStateException.class);
+    }
+
+    // Номер выдается в "транзакции", ее синхронизации возвращаются, чтобы завершить ее позже
+    private List<TransactionSynchronization> begin() {
+        TransactionSynchronizationManager.initSynchronization();
+        sequence.current();
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        return synchronizations;
+    }
+
+    private static void complete(List<TransactionSynchronization> synchronizations, int status) {
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+    }
+}
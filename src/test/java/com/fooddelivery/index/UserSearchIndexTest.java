@@ -0,0 +1,127 @@
+package com.fooddelivery.index;
+
+import com.fooddelivery.dto.UserResponse;
+import com.fooddelivery.model.Role;
+import com.fooddelivery.repository.UserRepository;
+import com.fooddelivery.sharding.UserShards;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class UserSearchIndexTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Spy
+    private UserShards shards = new UserShards(1, null, 0);
+
+    @InjectMocks
+    private UserSearchIndex loadedIndex;
+
+    @Test
+    void search_ShouldFindSubstringsAndRankPrefixesFirst() {
+        UserSearchIndex index = new UserSearchIndex();
+        index.put(user(1L, "alexander", "sasha@example.com", null, Role.CUSTOMER));
+        index.put(user(2L, "petr", "alex.petrov@example.com", "+79991234567", Role.COURIER));
+        index.put(user(3L, "malexa", "m@example.com", null, Role.CUSTOMER));
+        index.put(user(4L, "ivan", "ivan@example.com", null, Role.CUSTOMER));
+
+        assertThat(index.search("ALEX", null, 10)).containsExactly(1L, 2L, 3L);
+        assertThat(index.search("1234", null, 10)).containsExactly(2L);
+        assertThat(index.search("alex", Role.CUSTOMER, 10)).containsExactly(1L, 3L);
+        assertThat(index.search("alex", null, 1)).containsExactly(1L);
+        // Все триграммы есть, но не подряд
+        assertThat(index.search("exand_", null, 10)).isEmpty();
+    }
+
+    @Test
+    void search_ShortQuery_ShouldMatchOnlyFieldPrefixes() {
+        UserSearchIndex index = new UserSearchIndex();
+        index.put(user(1L, "ivan", "ivan@example.com", null, Role.CUSTOMER));
+        index.put(user(2L, "sivan", "sivan@example.com", null, Role.CUSTOMER));
+
+        assertThat(index.search("iv", null, 10)).containsExactly(1L);
+        assertThat(index.search("s", null, 10)).containsExactly(2L);
+    }
+
+    @Test
+    void put_ChangedUser_ShouldReplaceOldTerms() {
+        UserSearchIndex index = new UserSearchIndex();
+        index.put(user(1L, "oldname", "user@example.com", null, Role.CUSTOMER));
+
+        index.put(user(1L, "newname", "user@example.com", null, Role.COURIER));
+
+        assertThat(index.search("oldname", null, 10)).isEmpty();
+        assertThat(index.search("newname", Role.COURIER, 10)).containsExactly(1L);
+        assertThat(index.size()).isEqualTo(1);
+
+        // Удаленные документы периодически вычищаются, и индекс не растет от изменений одного пользователя
+        for (int i = 0; i < 20_000; i++) {
+            index.put(user(1L, "name" + i, "user@example.com", null, Role.CUSTOMER));
+        }
+        assertThat(index.search("name19999", null, 10)).containsExactly(1L);
+        assertThat(index.search("name1", null, 10)).containsExactly(1L);
+        assertThat(index.memoryBytes()).isLessThan(512 * 1024);
+    }
+
+    @Test
+    void put_OlderVersionAfterNewer_ShouldBeIgnored() {
+        UserSearchIndex index = new UserSearchIndex();
+        index.put(user(1L, "oldname", "user@example.com", null, Role.CUSTOMER, 1L));
+        // afterCommit второго изменения выполнился раньше первого
+        index.put(user(1L, "newname", "new@example.com", "+79990001122", Role.COURIER, 3L));
+        index.put(user(1L, "midname", "mid@example.com", null, Role.CUSTOMER, 2L));
+
+        assertThat(index.search("midname", null, 10)).isEmpty();
+        assertThat(index.search("newname", Role.COURIER, 10)).containsExactly(1L);
+        assertThat(index.search("0001122", null, 10)).containsExactly(1L);
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    void load_ShouldKeepUsersWrittenDuringLoad() {
+        when(userRepository.streamAllResponses()).thenReturn(Stream.of(
+                user(1L, "oldname", "user@example.com", null, Role.CUSTOMER),
+                user(2L, "ivan", "ivan@example.com", null, Role.CUSTOMER)));
+        assertThat(loadedIndex.isReady()).isFalse();
+        // Изменение, закоммиченное после того, как загрузка прочитала строку
+        loadedIndex.put(user(1L, "newname", "user@example.com", null, Role.CUSTOMER));
+
+        loadedIndex.load();
+
+        assertThat(loadedIndex.isReady()).isTrue();
+        assertThat(loadedIndex.size()).isEqualTo(2);
+        assertThat(loadedIndex.search("newname", null, 10)).containsExactly(1L);
+        assertThat(loadedIndex.search("oldname", null, 10)).isEmpty();
+        assertThat(loadedIndex.search("ivan", null, 10)).containsExactly(2L);
+    }
+
+    private static UserResponse user(Long id, String username, String email, String phone, Role role) {
+        return user(id, username, email, phone, role, null);
+    }
+
+    private static UserResponse user(Long id, String username, String email, String phone, Role role, Long version) {
+        UserResponse user = new UserResponse();
+        user.setId(id);
+        user.setUsername(username);
+        user.setEmail(email);
+        user.setPhone(phone);
+        user.setRole(role);
+        user.setVersion(version);
+        return user;
+    }
+}
@@ -0,0 +1,100 @@
+package com.fooddelivery.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fooddelivery.dto.UserActivationRequest;
+import com.fooddelivery.dto.UserRequest;
+import com.fooddelivery.dto.UserUpdateRequest;
+import com.fooddelivery.model.OutboxEvent;
+import com.fooddelivery.model.Role;
+import com.fooddelivery.model.UserEventType;
+import com.fooddelivery.outbox.OutboxRelay;
+import com.fooddelivery.outbox.UserEventSink;
+import com.fooddelivery.repository.OutboxEventRepository;
+import com.fooddelivery.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Отдельная БД: relay других тестовых контекстов не должен забрать события этого теста
+@SpringBootTest(properties = {
+        "user.password.bcrypt-strength=4",
+        "spring.datasource.url=jdbc:h2:mem:outbox;DB_CLOSE_DELAY=-1",
+        "user.outbox.sink=memory"
+})
+class OutboxIntegrationTest {
+
+        @TestConfiguration
+        static class InMemorySinkConfiguration {
+                @Bean
+                InMemoryUserEventSink inMemoryUserEventSink() {
+                        return new InMemoryUserEventSink();
+                }
+        }
+
+        static class InMemoryUserEventSink implements UserEventSink {
+                private final List<OutboxEvent> events = new CopyOnWriteArrayList<>();
+
+                @Override
+                public void publish(List<OutboxEvent> batch) {
+                        events.addAll(batch);
+                }
+        }
+
+        @Autowired
+        private UserService userService;
+
+        @Autowired
+        private OutboxRelay outboxRelay;
+
+        @Autowired
+        private OutboxEventRepository outboxEventRepository;
+
+        @Autowired
+        private InMemoryUserEventSink sink;
+
+        @Autowired
+        private ObjectMapper objectMapper;
+
+        @Test
+        void userChangesAreDeliveredInOrderAndRemovedFromOutbox() throws Exception {
+                Long id = userService.registerUser(request("outboxuser", "outbox@test.com")).getId();
+                UserUpdateRequest update = new UserUpdateRequest();
+                update.setPhone("+79990001122");
+                userService.updateUser(id, update, null);
+                UserActivationRequest deactivation = new UserActivationRequest();
+                deactivation.setIds(List.of(id));
+                userService.deactivateUsers(deactivation);
+                // Повторная деактивация ничего не меняет и события не дает
+                userService.deactivateUsers(deactivation);
+
+                outboxRelay.drain();
+
+                List<OutboxEvent> events = sink.events.stream()
+                        .filter(event -> event.getUserId().equals(id))
+                        .toList();
+                assertThat(events).extracting(OutboxEvent::getType).containsExactly(
+                        UserEventType.USER_REGISTERED, UserEventType.USER_UPDATED, UserEventType.USER_DEACTIVATED);
+                JsonNode updated = objectMapper.readTree(events.get(1).getPayload());
+                assertThat(updated.get("phone").asText()).isEqualTo("+79990001122");
+                assertThat(updated.get("changedFields").get(0).asText()).isEqualTo("phone");
+                assertThat(objectMapper.readTree(events.get(2).getPayload()).get("active").asBoolean()).isFalse();
+                assertThat(outboxEventRepository.count()).isZero();
+        }
+
+        private static UserRequest request(String username, String email) {
+                UserRequest request = new UserRequest();
+                request.setUsername(username);
+                request.setEmail(email);
+                request.setPassword("password123");
+                request.setRole(Role.CUSTOMER);
+                return request;
+        }
+}
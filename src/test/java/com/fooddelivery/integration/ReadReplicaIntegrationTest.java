@@ -0,0 +1,119 @@
+package com.fooddelivery.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fooddelivery.cache.UserCache;
+import com.fooddelivery.dto.UserRequest;
+import com.fooddelivery.model.Role;
+import com.fooddelivery.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// Две базы H2: основная и "реплика", в которой таблица users подключена из основной как READONLY
+// linked table. Запись, ошибочно отправленная в реплику, завершится ошибкой.
+@SpringBootTest(properties = {
+        "user.password.bcrypt-strength=4",
+        "spring.datasource.url=jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1",
+        "user.datasource.replica.url=jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1;"
+                + "INIT=CREATE LINKED TABLE IF NOT EXISTS USERS("
+                + "'org.h2.Driver', 'jdbc:h2:mem:routing-primary', 'sa', '', 'PUBLIC', 'USERS') READONLY",
+        "user.datasource.replica.username=sa",
+        "user.datasource.read-your-writes=300ms"
+})
+@AutoConfigureMockMvc
+@AutoConfigureObservability(tracing = false)
+class ReadReplicaIntegrationTest {
+
+        @Autowired
+        private MockMvc mockMvc;
+
+        @Autowired
+        private ObjectMapper objectMapper;
+
+        @Autowired
+        private MeterRegistry meterRegistry;
+
+        @Autowired
+        private UserCache userCache;
+
+        @Autowired
+        private UserRepository userRepository;
+
+        @AfterEach
+        void tearDown() {
+                userRepository.deleteAll();
+        }
+
+        @Test
+        void testReadsGoToReplicaOutsideReadYourWritesWindow() throws Exception {
+                UserRequest request = new UserRequest();
+                request.setUsername("replicacourier");
+                request.setEmail("replicacourier@test.com");
+                request.setPassword("password123");
+                request.setRole(Role.COURIER);
+                MvcResult created = mockMvc.perform(post("/users")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(request)))
+                                .andExpect(status().isCreated())
+                                .andReturn();
+                Long id = objectMapper.readTree(created.getResponse().getContentAsString()).get("id").asLong();
+
+                // Сразу после записи список курьеров читается из основной БД
+                long primary = acquired("users-pool");
+                long replica = acquired("users-replica-pool");
+                mockMvc.perform(get("/users").param("role", "COURIER"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$[0].id").value(id));
+                assertThat(acquired("users-pool")).isGreaterThan(primary);
+                assertThat(acquired("users-replica-pool")).isEqualTo(replica);
+
+                Thread.sleep(400);
+
+                // После окна - из реплики
+                mockMvc.perform(get("/users").param("role", "COURIER"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$[0].id").value(id));
+                assertThat(acquired("users-replica-pool")).isGreaterThan(replica);
+
+                replica = acquired("users-replica-pool");
+                userCache.invalidate(id);
+                mockMvc.perform(get("/users/{id}", id))
+                                .andExpect(status().isOk());
+                assertThat(acquired("users-replica-pool")).isGreaterThan(replica);
+
+                // Запись и вход идут в основную БД
+                mockMvc.perform(patch("/users/{id}", id)
+                                .contentType("application/merge-patch+json")
+                                .content("{\"phone\":\"+79990001122\"}"))
+                                .andExpect(status().isOk());
+                mockMvc.perform(post("/users/authenticate")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"username\":\"replicacourier\",\"password\":\"password123\"}"))
+                                .andExpect(status().isOk());
+
+                // Массовая деактивация по роли отбирает id в основной БД: реплика могла еще не получить
+                // новых пользователей
+                replica = acquired("users-replica-pool");
+                mockMvc.perform(post("/users/batch/deactivate")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"role\":\"COURIER\"}"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.updated").value(1));
+                assertThat(acquired("users-replica-pool")).isEqualTo(replica);
+        }
+
+        private long acquired(String pool) {
+                return meterRegistry.get("hikaricp.connections.acquire").tag("pool", pool).timer().count();
+        }
+}
@@ -0,0 +1,151 @@
+package com.fooddelivery.integration;
+
+import com.fooddelivery.datasource.ShardRoutingDataSource;
+import com.fooddelivery.dto.AuthenticationRequest;
+import com.fooddelivery.dto.UserActivationRequest;
+import com.fooddelivery.dto.UserBatchResult;
+import com.fooddelivery.dto.UserPageResponse;
+import com.fooddelivery.dto.UserRequest;
+import com.fooddelivery.dto.UserResponse;
+import com.fooddelivery.dto.UserUpdateRequest;
+import com.fooddelivery.exception.UserAlreadyExistsException;
+import com.fooddelivery.feed.UserChangeFeed;
+import com.fooddelivery.model.Role;
+import com.fooddelivery.outbox.OutboxRelay;
+import com.fooddelivery.repository.UserRepository;
+import com.fooddelivery.service.UserService;
+import com.fooddelivery.sharding.UserShards;
+import com.fooddelivery.stats.UserStats;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Два шарда и справочник - отдельные базы H2 в памяти
+@SpringBootTest(properties = {
+        "user.password.bcrypt-strength=4",
+        "spring.datasource.url=jdbc:h2:mem:sharding-directory;DB_CLOSE_DELAY=-1",
+        "user.sharding.shards[0].url=jdbc:h2:mem:sharding-shard-0;DB_CLOSE_DELAY=-1",
+        "user.sharding.shards[1].url=jdbc:h2:mem:sharding-shard-1;DB_CLOSE_DELAY=-1",
+        "user.outbox.enabled=false",
+        "user.outbox.file=target/sharding-test/user-events.ndjson"
+})
+class ShardingIntegrationTest {
+
+        @Autowired
+        private UserService userService;
+
+        @Autowired
+        private UserRepository userRepository;
+
+        @Autowired
+        private UserShards shards;
+
+        @Autowired
+        private UserChangeFeed changeFeed;
+
+        @Autowired
+        private OutboxRelay outboxRelay;
+
+        @Autowired
+        private UserStats userStats;
+
+        @Test
+        void testUsersAreSpreadAcrossShardsAndReadBackMerged() {
+                List<Long> ids = new ArrayList<>();
+                for (int i = 0; i < 10; i++) {
+                        ids.add(userService.registerUser(request("sharded" + i, i % 2 == 0 ? Role.COURIER : Role.CUSTOMER)).getId());
+                }
+
+                // Id глобально уникальны, пользователи есть на обоих шардах
+                assertThat(ids).doesNotHaveDuplicates();
+                long onFirst = ShardRoutingDataSource.onShard(0, userRepository::count);
+                long onSecond = ShardRoutingDataSource.onShard(1, userRepository::count);
+                assertThat(onFirst).isPositive();
+                assertThat(onSecond).isPositive();
+                assertThat(onFirst + onSecond).isEqualTo(10);
+                for (Long id : ids) {
+                        assertThat(ShardRoutingDataSource.onShard(shards.shardOf(id), () -> userRepository.existsById(id))).isTrue();
+                        assertThat(userService.getUserById(id).getId()).isEqualTo(id);
+                }
+
+                // Уникальность username и email - по всем шардам
+                assertThatThrownBy(() -> userService.registerUser(request("sharded3", Role.ADMIN)))
+                        .isInstanceOf(UserAlreadyExistsException.class);
+                UserRequest sameEmail = request("another", Role.ADMIN);
+                sameEmail.setEmail("sharded4@test.com");
+                assertThatThrownBy(() -> userService.registerUser(sameEmail))
+                        .isInstanceOf(UserAlreadyExistsException.class)
+                        .hasMessageContaining("Email");
+
+                // Списки и страницы сливаются по id
+                assertThat(userService.getAllUsers()).extracting(UserResponse::getId).containsExactlyElementsOf(ids);
+                assertThat(userService.getUsersByRole(Role.COURIER)).extracting(UserResponse::getId)
+                        .containsExactly(ids.get(0), ids.get(2), ids.get(4), ids.get(6), ids.get(8));
+                List<Long> paged = new ArrayList<>();
+                String cursor = null;
+                do {
+                        UserPageResponse page = userService.getUsersPage(null, cursor, 3);
+                        page.getItems().forEach(user -> paged.add(user.getId()));
+                        cursor = page.getNextCursor();
+                } while (cursor != null);
+                assertThat(paged).containsExactlyElementsOf(ids);
+
+                // Смена username освобождает старое значение в справочнике
+                UserUpdateRequest rename = new UserUpdateRequest();
+                rename.setUsername("renamed1");
+                userService.updateUser(ids.get(1), rename, null);
+                UserUpdateRequest taken = new UserUpdateRequest();
+                taken.setUsername("sharded2");
+                assertThatThrownBy(() -> userService.updateUser(ids.get(1), taken, null))
+                        .isInstanceOf(UserAlreadyExistsException.class);
+                UserRequest oldUsername = request("sharded1", Role.ADMIN);
+                oldUsername.setEmail("reused@test.com");
+                Long reused = userService.registerUser(oldUsername).getId();
+                AuthenticationRequest login = new AuthenticationRequest();
+                login.setUsername("renamed1");
+                login.setPassword("password123");
+                assertThat(userService.authenticate(login).getId()).isEqualTo(ids.get(1));
+
+                // Пачка: конфликт с пользователем на другом шарде, остальные распределяются по шардам
+                List<UserRequest> batch = new ArrayList<>();
+                for (int i = 0; i < 6; i++) {
+                        batch.add(request("batch" + i, Role.COURIER));
+                }
+                batch.add(request("sharded5", Role.COURIER));
+                List<UserBatchResult> results = userService.registerUsers(batch);
+                assertThat(results).extracting(UserBatchResult::getStatus).containsOnly(
+                        UserBatchResult.Status.CREATED, UserBatchResult.Status.CONFLICT);
+                assertThat(results.get(6).getStatus()).isEqualTo(UserBatchResult.Status.CONFLICT);
+                assertThat(userService.checkAvailability("batch5", null).getUsernameAvailable()).isFalse();
+
+                UserActivationRequest deactivation = new UserActivationRequest();
+                deactivation.setRole(Role.COURIER);
+                assertThat(userService.deactivateUsers(deactivation).getUpdated()).isEqualTo(11);
+                assertThat(userService.getUsersByRole(Role.COURIER)).noneMatch(UserResponse::isActive);
+                assertThat(userStats.count(Role.COURIER, false)).isEqualTo(11);
+                assertThat(userStats.snapshot().getTotal()).isEqualTo(17);
+                // Сверка суммирует все шарды: расхождение исправлялось бы на второй сверке подряд
+                assertThat(userStats.reconcile()).isZero();
+                assertThat(userStats.reconcile()).isZero();
+
+                // Лента изменений и outbox видят все шарды
+                assertThat(changeFeed.changesSince(null, 1000).getItems()).hasSize(17);
+                assertThat(outboxRelay.drain()).isEqualTo(10 + 1 + 1 + 6 + 11);
+                assertThat(reused).isNotIn(ids);
+        }
+
+        private static UserRequest request(String username, Role role) {
+                UserRequest request = new UserRequest();
+                request.setUsername(username);
+                request.setEmail(username + "@test.com");
+                request.setPassword("password123");
+                request.setRole(role);
+                return request;
+        }
+}
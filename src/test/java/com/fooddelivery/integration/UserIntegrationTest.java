@@ -2,20 +2,29 @@ package com.fooddelivery.integration;
 
 import com.fooddelivery.dto.UserRequest;
 import com.fooddelivery.model.Role;
+import com.fooddelivery.repository.UserRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
-@SpringBootTest
+@SpringBootTest(properties = "user.password.bcrypt-strength=4")
 @AutoConfigureMockMvc
+@AutoConfigureObservability(tracing = false)
 public class UserIntegrationTest {
 
         @Autowired
@@ -24,6 +33,14 @@ public class UserIntegrationTest {
         @Autowired
         private ObjectMapper objectMapper;
 
+        @Autowired
+        private UserRepository userRepository;
+
+        @AfterEach
+        void cleanUp() {
+                userRepository.deleteAll();
+        }
+
         @Test
         void testUserCRUDAndFilterOperations() throws Exception {
                 // Создаем пользователей с разными ролями
@@ -130,4 +147,422 @@ public class UserIntegrationTest {
                                 .content(objectMapper.writeValueAsString(request)))
                                 .andExpect(status().isConflict());
         }
-}
\ No newline at end of file
+
+        @Test
+        void testExportUsersAsNdjson() throws Exception {
+                for (int i = 1; i <= 3; i++) {
+                        UserRequest request = new UserRequest();
+                        request.setUsername("export" + i);
+                        request.setEmail("export" + i + "@test.com");
+                        request.setPassword("password123");
+                        request.setRole(Role.COURIER);
+
+                        mockMvc.perform(post("/users")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(objectMapper.writeValueAsString(request)))
+                                        .andExpect(status().isCreated());
+                }
+
+                MvcResult exportResult = mockMvc.perform(get("/users/export"))
+                                .andExpect(request().asyncStarted())
+                                .andReturn();
+
+                MvcResult result = mockMvc.perform(asyncDispatch(exportResult))
+                                .andExpect(status().isOk())
+                                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                                .andReturn();
+
+                String[] lines = result.getResponse().getContentAsString().split("\n");
+                assertThat(lines).hasSize(3);
+                assertThat(objectMapper.readTree(lines[0]).get("username").asText()).isEqualTo("export1");
+                assertThat(objectMapper.readTree(lines[2]).get("username").asText()).isEqualTo("export3");
+                assertThat(objectMapper.readTree(lines[1]).has("password")).isFalse();
+        }
+
+        @Test
+        void testChangeFeedDeliversInsertsAndUpdates() throws Exception {
+                UserRequest request = new UserRequest();
+                request.setUsername("feeduser");
+                request.setEmail("feeduser@test.com");
+                request.setPassword("password123");
+                request.setRole(Role.COURIER);
+                String created = mockMvc.perform(post("/users")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(request)))
+                                .andExpect(status().isCreated())
+                                .andReturn().getResponse().getContentAsString();
+                Long id = objectMapper.readTree(created).get("id").asLong();
+
+                // Регистрация уже закоммичена: long-poll отвечает сразу
+                MvcResult insertPoll = mockMvc.perform(get("/users/changes").param("wait", "5"))
+                                .andExpect(request().asyncStarted())
+                                .andReturn();
+                String insertChanges = mockMvc.perform(asyncDispatch(insertPoll))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.items.length()").value(1))
+                                .andExpect(jsonPath("$.items[0].username").value("feeduser"))
+                                .andReturn().getResponse().getContentAsString();
+                String afterInsert = objectMapper.readTree(insertChanges).get("nextToken").asText();
+
+                // Ожидающий запрос завершается изменением, закоммиченным после его начала
+                MvcResult updatePoll = mockMvc.perform(get("/users/changes")
+                                .param("since", afterInsert)
+                                .param("wait", "5"))
+                                .andExpect(request().asyncStarted())
+                                .andReturn();
+                mockMvc.perform(patch("/users/{id}", id)
+                                .contentType("application/merge-patch+json")
+                                .content("{\"phone\":\"+79990001122\"}"))
+                                .andExpect(status().isOk());
+                String updateChanges = mockMvc.perform(asyncDispatch(updatePoll))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.items.length()").value(1))
+                                .andExpect(jsonPath("$.items[0].phone").value("+79990001122"))
+                                .andReturn().getResponse().getContentAsString();
+                String afterUpdate = objectMapper.readTree(updateChanges).get("nextToken").asText();
+
+                // Без новых изменений и без ожидания - пустой список и тот же токен
+                MvcResult noChanges = mockMvc.perform(get("/users/changes").param("since", afterUpdate))
+                                .andExpect(request().asyncStarted())
+                                .andReturn();
+                mockMvc.perform(asyncDispatch(noChanges))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.items.length()").value(0))
+                                .andExpect(jsonPath("$.nextToken").value(afterUpdate));
+
+                // SSE с Last-Event-ID продолжает с того же места
+                MvcResult stream = mockMvc.perform(get("/users/changes")
+                                .accept(MediaType.TEXT_EVENT_STREAM)
+                                .header("Last-Event-ID", afterInsert))
+                                .andExpect(request().asyncStarted())
+                                .andReturn();
+                long deadline = System.currentTimeMillis() + 5000;
+                while (!stream.getResponse().getContentAsString().contains("+79990001122")
+                                && System.currentTimeMillis() < deadline) {
+                        Thread.sleep(20);
+                }
+                assertThat(stream.getResponse().getContentAsString())
+                                .contains("event:users")
+                                .contains("id:" + afterUpdate)
+                                .contains("+79990001122");
+
+                mockMvc.perform(get("/users/changes").param("since", "not-a-token"))
+                                .andExpect(status().isBadRequest());
+        }
+
+        @Test
+        void testBatchRegistration() throws Exception {
+                UserRequest existing = new UserRequest();
+                existing.setUsername("manager0");
+                existing.setEmail("manager0@test.com");
+                existing.setPassword("password123");
+
+                mockMvc.perform(post("/users")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(existing)))
+                                .andExpect(status().isCreated());
+
+                List<UserRequest> batch = new ArrayList<>();
+                batch.add(existing);
+                for (int i = 1; i <= 120; i++) {
+                        UserRequest request = new UserRequest();
+                        request.setUsername("manager" + i);
+                        request.setEmail("manager" + i + "@test.com");
+                        request.setPassword("password123");
+                        request.setRole(Role.RESTAURANT_MANAGER);
+                        batch.add(request);
+                }
+
+                mockMvc.perform(post("/users/batch")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(batch)))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.length()").value(121))
+                                .andExpect(jsonPath("$[0].status").value("CONFLICT"))
+                                .andExpect(jsonPath("$[1].status").value("CREATED"))
+                                .andExpect(jsonPath("$[120].user.role").value("RESTAURANT_MANAGER"));
+
+                assertThat(userRepository.findByRole(Role.RESTAURANT_MANAGER)).hasSize(120);
+        }
+
+        @Test
+        void testUserCacheStatsEndpoint() throws Exception {
+                UserRequest request = new UserRequest();
+                request.setUsername("cacheduser");
+                request.setEmail("cached@test.com");
+                request.setPassword("password123");
+
+                MvcResult result = mockMvc.perform(post("/users")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(request)))
+                                .andExpect(status().isCreated())
+                                .andReturn();
+                Long id = objectMapper.readTree(result.getResponse().getContentAsString()).get("id").asLong();
+
+                mockMvc.perform(get("/users/{id}", id)).andExpect(status().isOk());
+                mockMvc.perform(get("/users/{id}", id)).andExpect(status().isOk());
+
+                mockMvc.perform(get("/actuator/usercache"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.size").isNumber())
+                                .andExpect(jsonPath("$.hitCount").isNumber())
+                                .andExpect(jsonPath("$.missCount").isNumber())
+                                .andExpect(jsonPath("$.evictionCount").isNumber());
+        }
+
+        @Test
+        void testAvailabilityReflectsRegistration() throws Exception {
+                mockMvc.perform(get("/users/availability")
+                                .param("username", "signupuser")
+                                .param("email", "signup@test.com"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.usernameAvailable").value(true))
+                                .andExpect(jsonPath("$.emailAvailable").value(true));
+
+                UserRequest request = new UserRequest();
+                request.setUsername("signupuser");
+                request.setEmail("signup@test.com");
+                request.setPassword("password123");
+
+                mockMvc.perform(post("/users")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(request)))
+                                .andExpect(status().isCreated());
+
+                mockMvc.perform(get("/users/availability")
+                                .param("username", "signupuser")
+                                .param("email", "other@test.com"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.usernameAvailable").value(false))
+                                .andExpect(jsonPath("$.emailAvailable").value(true));
+        }
+
+        @Test
+        void testPasswordIsHashedAndAuthenticates() throws Exception {
+                UserRequest request = new UserRequest();
+                request.setUsername("hasheduser");
+                request.setEmail("hashed@test.com");
+                request.setPassword("password123");
+
+                mockMvc.perform(post("/users")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(request)))
+                                .andExpect(status().isCreated());
+
+                assertThat(userRepository.findByUsername("hasheduser").get().getPassword())
+                                .startsWith("$2a$04$")
+                                .doesNotContain("password123");
+
+                mockMvc.perform(post("/users/authenticate")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"username\":\"hasheduser\",\"password\":\"password123\"}"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.username").value("hasheduser"));
+
+                mockMvc.perform(post("/users/authenticate")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"username\":\"hasheduser\",\"password\":\"wrong-password\"}"))
+                                .andExpect(status().isUnauthorized());
+
+                mockMvc.perform(get("/actuator/passwordhashing"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.strength").value(4))
+                                .andExpect(jsonPath("$.rejectedCount").value(0));
+        }
+
+        @Test
+        void testPrometheusMetrics() throws Exception {
+                mockMvc.perform(get("/users/999999"))
+                                .andExpect(status().isNotFound());
+
+                String metrics = mockMvc.perform(get("/actuator/prometheus"))
+                                .andExpect(status().isOk())
+                                .andReturn().getResponse().getContentAsString();
+
+                assertThat(metrics)
+                                .contains("http_server_requests_seconds_bucket{application=\"food-delivery\"")
+                                .containsPattern("user_service_seconds_bucket\\{.*method=\"getUserById\"")
+                                .containsPattern("spring_data_repository_invocations_seconds_bucket\\{.*method=\"findById\"")
+                                .containsPattern("user_errors_total\\{.*exception=\"UserNotFoundException\",\\} 1\\.0")
+                                .containsPattern("user_errors_total\\{.*exception=\"UserAlreadyExistsException\",\\} 0\\.0")
+                                .contains("hikaricp_connections_active{application=\"food-delivery\",pool=\"users-pool\",}")
+                                .contains("cache_gets_total{application=\"food-delivery\",cache=\"users\"")
+                                .contains("user_password_hashing_queue")
+                                .contains("audit_log_dropped_total");
+        }
+
+        @Test
+        void testConditionalRequestsWithEtags() throws Exception {
+                UserRequest request = new UserRequest();
+                request.setUsername("etaguser");
+                request.setEmail("etag@test.com");
+                request.setPassword("password123");
+                request.setRole(Role.COURIER);
+
+                MvcResult created = mockMvc.perform(post("/users")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(request)))
+                                .andExpect(status().isCreated())
+                                .andReturn();
+                Long id = objectMapper.readTree(created.getResponse().getContentAsString()).get("id").asLong();
+
+                mockMvc.perform(get("/users/{id}", id))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"0\""));
+                mockMvc.perform(get("/users/{id}", id).header("If-None-Match", "\"0\""))
+                                .andExpect(status().isNotModified());
+
+                String listEtag = mockMvc.perform(get("/users").param("role", "COURIER"))
+                                .andExpect(status().isOk())
+                                .andReturn().getResponse().getHeader("ETag");
+                // Слабый ETag: со строгим Tomcat не сжимает список
+                assertThat(listEtag).startsWith("W/\"");
+                mockMvc.perform(get("/users").param("role", "COURIER").header("If-None-Match", listEtag))
+                                .andExpect(status().isNotModified());
+
+                // Обновление по актуальной версии проходит, повтор со старой версией - 412
+                mockMvc.perform(put("/users/{id}", id)
+                                .header("If-Match", "\"0\"")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"phone\":\"+79990001122\"}"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"1\""));
+                mockMvc.perform(put("/users/{id}", id)
+                                .header("If-Match", "\"0\"")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"phone\":\"+79990003344\"}"))
+                                .andExpect(status().isPreconditionFailed());
+
+                mockMvc.perform(get("/users/{id}", id).header("If-None-Match", "\"0\""))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"1\""))
+                                .andExpect(jsonPath("$.phone").value("+79990001122"));
+                mockMvc.perform(get("/users").param("role", "COURIER").header("If-None-Match", listEtag))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$[0].phone").value("+79990001122"));
+        }
+
+        @Test
+        void testBatchDeactivationByRoleAndIds() throws Exception {
+                List<UserRequest> requests = new ArrayList<>();
+                for (int i = 0; i < 30; i++) {
+                        UserRequest request = new UserRequest();
+                        request.setUsername("fleet" + i);
+                        request.setEmail("fleet" + i + "@test.com");
+                        request.setPassword("password123");
+                        request.setRole(i < 20 ? Role.COURIER : Role.CUSTOMER);
+                        requests.add(request);
+                }
+                mockMvc.perform(post("/users/batch")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(requests)))
+                                .andExpect(status().isOk());
+
+                mockMvc.perform(post("/users/batch/deactivate")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"role\":\"COURIER\"}"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.updated").value(20));
+                // Повтор ничего не меняет
+                mockMvc.perform(post("/users/batch/deactivate")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"role\":\"COURIER\"}"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.updated").value(0));
+
+                Long courierId = userRepository.findByUsername("fleet0").get().getId();
+                mockMvc.perform(get("/users/{id}", courierId))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.active").value(false))
+                                .andExpect(header().string("ETag", "\"1\""));
+
+                mockMvc.perform(post("/users/batch/activate")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"ids\":[" + courierId + "," + courierId + ",999999]}"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.updated").value(1));
+                mockMvc.perform(get("/users/{id}", courierId))
+                                .andExpect(jsonPath("$.active").value(true));
+        }
+
+        @Test
+        void testMergePatchUpdatesOnlyGivenFields() throws Exception {
+                UserRequest request = new UserRequest();
+                request.setUsername("patchme");
+                request.setEmail("patchme@test.com");
+                request.setPassword("password123");
+                request.setPhone("+79990001122");
+                MvcResult created = mockMvc.perform(post("/users")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(request)))
+                                .andExpect(status().isCreated())
+                                .andReturn();
+                Long id = objectMapper.readTree(created.getResponse().getContentAsString()).get("id").asLong();
+
+                mockMvc.perform(patch("/users/{id}", id)
+                                .contentType("application/merge-patch+json")
+                                .header("If-Match", "\"0\"")
+                                .content("{\"phone\":\"+79993334455\",\"role\":\"COURIER\"}"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"1\""))
+                                .andExpect(jsonPath("$.username").value("patchme"))
+                                .andExpect(jsonPath("$.phone").value("+79993334455"))
+                                .andExpect(jsonPath("$.role").value("COURIER"));
+
+                // Устаревшая версия
+                mockMvc.perform(patch("/users/{id}", id)
+                                .contentType("application/merge-patch+json")
+                                .header("If-Match", "\"0\"")
+                                .content("{\"phone\":null}"))
+                                .andExpect(status().isPreconditionFailed());
+
+                mockMvc.perform(patch("/users/{id}", id)
+                                .contentType("application/merge-patch+json")
+                                .content("{\"phone\":null}"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.phone").doesNotExist());
+
+                // Пароль не затронут ни одним из UPDATE
+                mockMvc.perform(post("/users/authenticate")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"username\":\"patchme\",\"password\":\"password123\"}"))
+                                .andExpect(status().isOk());
+
+                mockMvc.perform(patch("/users/{id}", id)
+                                .contentType("application/merge-patch+json")
+                                .content("{\"email\":null}"))
+                                .andExpect(status().isBadRequest());
+        }
+
+        @Test
+        void testSearchFollowsRegistrationAndUpdate() throws Exception {
+                UserRequest request = new UserRequest();
+                request.setUsername("zebrafinder");
+                request.setEmail("zf@test.com");
+                request.setPassword("password123");
+                request.setPhone("+79995550011");
+                MvcResult created = mockMvc.perform(post("/users")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(request)))
+                                .andExpect(status().isCreated())
+                                .andReturn();
+                Long id = objectMapper.readTree(created.getResponse().getContentAsString()).get("id").asLong();
+
+                mockMvc.perform(get("/users/search").param("q", "brafind"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$[0].id").value(id));
+                mockMvc.perform(get("/users/search").param("q", "5550011").param("role", "COURIER"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.length()").value(0));
+
+                mockMvc.perform(patch("/users/{id}", id)
+                                .contentType("application/merge-patch+json")
+                                .content("{\"username\":\"okapifinder\"}"))
+                                .andExpect(status().isOk());
+
+                mockMvc.perform(get("/users/search").param("q", "brafind"))
+                                .andExpect(jsonPath("$.length()").value(0));
+                mockMvc.perform(get("/users/search").param("q", "okapi"))
+                                .andExpect(jsonPath("$[0].id").value(id));
+        }
+}
@@ -0,0 +1,91 @@
+package com.fooddelivery.outbox;
+
+import com.fooddelivery.model.OutboxEvent;
+import com.fooddelivery.model.UserEventType;
+import com.fooddelivery.repository.OutboxEventRepository;
+import com.fooddelivery.sharding.UserShards;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayTest {
+
+    @Mock
+    private OutboxEventRepository outboxEventRepository;
+
+    @Mock
+    private UserEventSink sink;
+
+    private OutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        relay = new OutboxRelay(2, Duration.ofMillis(200), true);
+        ReflectionTestUtils.setField(relay, "outboxEventRepository", outboxEventRepository);
+        ReflectionTestUtils.setField(relay, "sink", sink);
+        ReflectionTestUtils.setField(relay, "shards", new UserShards(1, null, 0));
+    }
+
+    @Test
+    void drain_ShouldPublishBatchesUntilPartialBatchAndDeleteThem() {
+        OutboxEvent first = event(1L, LocalDateTime.now());
+        OutboxEvent second = event(2L, LocalDateTime.now());
+        OutboxEvent third = event(3L, LocalDateTime.now());
+        when(outboxEventRepository.findNextBatch(any(Pageable.class)))
+                .thenReturn(List.of(first, second))
+                .thenReturn(List.of(third));
+
+        assertThat(relay.drain()).isEqualTo(3);
+
+        verify(sink).publish(List.of(first, second));
+        verify(sink).publish(List.of(third));
+        verify(outboxEventRepository).deleteAllByIdInBatch(List.of(1L, 2L));
+        verify(outboxEventRepository).deleteAllByIdInBatch(List.of(3L));
+        assertThat(relay.getPublishedCount()).isEqualTo(3);
+        assertThat(relay.getLagSeconds()).isZero();
+    }
+
+    @Test
+    void drain_SinkFailure_ShouldKeepEventsForRetryAndReportLag() {
+        OutboxEvent stale = event(1L, LocalDateTime.now().minusSeconds(30));
+        when(outboxEventRepository.findNextBatch(any(Pageable.class))).thenReturn(List.of(stale));
+        doThrow(new IllegalStateException("sink is down")).when(sink).publish(anyList());
+
+        assertThatThrownBy(() -> relay.drain()).isInstanceOf(IllegalStateException.class);
+
+        verify(outboxEventRepository, never()).deleteAllByIdInBatch(any());
+        assertThat(relay.getLagSeconds()).isGreaterThanOrEqualTo(30);
+
+        // Следующий цикл отправляет ту же пачку
+        doNothing().when(sink).publish(anyList());
+        assertThat(relay.drain()).isEqualTo(1);
+        verify(outboxEventRepository).deleteAllByIdInBatch(List.of(1L));
+        assertThat(relay.getLagSeconds()).isZero();
+    }
+
+    private static OutboxEvent event(Long id, LocalDateTime createdAt) {
+        OutboxEvent event = new OutboxEvent(UserEventType.USER_REGISTERED, id, "{\"id\":" + id + "}");
+        event.setId(id);
+        event.setCreatedAt(createdAt);
+        return event;
+    }
+}
@@ -0,0 +1,88 @@
+package com.fooddelivery.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void tryAcquire_ShouldAllowBurstThenRefillOneTokenPerInterval() {
+        TokenBucket bucket = new TokenBucket();
+        // 4 запроса за 4 секунды: один токен в секунду
+        long interval = SECOND;
+        long period = 4 * SECOND;
+        long now = -10 * SECOND;
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(bucket.tryAcquire(now, interval, period)).isZero();
+        }
+        assertThat(bucket.tryAcquire(now, interval, period)).isEqualTo(SECOND);
+        assertThat(bucket.tryAcquire(now + SECOND / 2, interval, period)).isEqualTo(SECOND / 2);
+
+        assertThat(bucket.tryAcquire(now + SECOND, interval, period)).isZero();
+        assertThat(bucket.tryAcquire(now + SECOND, interval, period)).isEqualTo(SECOND);
+
+        // После простоя корзина полная, но не больше capacity
+        long later = now + 60 * SECOND;
+        for (int i = 0; i < 4; i++) {
+            assertThat(bucket.tryAcquire(later, interval, period)).isZero();
+        }
+        assertThat(bucket.tryAcquire(later, interval, period)).isPositive();
+    }
+
+    @Test
+    void tryAcquire_ShouldKeepSeparateBucketsPerClientAndEndpoint() {
+        RateLimiter rateLimiter = rateLimiter(2, Duration.ofMinutes(1));
+
+        assertThat(rateLimiter.tryAcquire("register", "ip:10.0.0.1")).isZero();
+        assertThat(rateLimiter.tryAcquire("register", "ip:10.0.0.1")).isZero();
+        assertThat(rateLimiter.tryAcquire("register", "ip:10.0.0.1"))
+                .isBetween(Duration.ofSeconds(29).toNanos(), Duration.ofSeconds(30).toNanos());
+        assertThat(rateLimiter.tryAcquire("register", "ip:10.0.0.2")).isZero();
+        // Метод без настроенного лимита не ограничивается
+        assertThat(rateLimiter.tryAcquire("unknown", "ip:10.0.0.1")).isZero();
+
+        assertThat(rateLimiter.clients("register")).isEqualTo(2);
+        assertThat(rateLimiter.rejected("register")).isEqualTo(1);
+    }
+
+    @Test
+    void tryAcquire_ConcurrentClients_ShouldNotExceedCapacity() {
+        RateLimiter rateLimiter = rateLimiter(1000, Duration.ofHours(1));
+        AtomicInteger allowed = new AtomicInteger();
+
+        List<CompletableFuture<Void>> workers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            workers.add(CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    if (rateLimiter.tryAcquire("register", "ip:10.0.0.1") == 0) {
+                        allowed.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        workers.forEach(CompletableFuture::join);
+
+        assertThat(allowed.get()).isEqualTo(1000);
+        assertThat(rateLimiter.rejected("register")).isEqualTo(19_000);
+    }
+
+    private static RateLimiter rateLimiter(int capacity, Duration period) {
+        RateLimitProperties.Limit limit = new RateLimitProperties.Limit();
+        limit.setCapacity(capacity);
+        limit.setPeriod(period);
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.getEndpoints().put("register", limit);
+        return new RateLimiter(properties);
+    }
+}
@@ -1,15 +1,23 @@
 package com.fooddelivery.repository;
 
+import com.fooddelivery.dto.UserResponse;
+import com.fooddelivery.exception.DuplicateUserKeys;
 import com.fooddelivery.model.Role;
 import com.fooddelivery.model.User;
+import org.hibernate.Session;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
 
 @DataJpaTest
 class UserRepositoryTest {
@@ -117,4 +125,148 @@ class UserRepositoryTest {
         assertThat(saved.getCreatedAt()).isNotNull();
         assertThat(saved.isActive()).isTrue();
     }
-}
\ No newline at end of file
+
+    @Test
+    void findResponsesByRoleAfter_ShouldReturnNextPageInIdOrder() {
+        // Given
+        User first = new User("courier1", "courier1@example.com", "password", "+79991234561");
+        first.setRole(Role.COURIER);
+        User customer = new User("customer1", "customer1@example.com", "password", "+79991234562");
+        customer.setRole(Role.CUSTOMER);
+        User second = new User("courier2", "courier2@example.com", "password", "+79991234563");
+        second.setRole(Role.COURIER);
+        User third = new User("courier3", "courier3@example.com", "password", "+79991234564");
+        third.setRole(Role.COURIER);
+        entityManager.persist(first);
+        entityManager.persist(customer);
+        entityManager.persist(second);
+        entityManager.persist(third);
+        entityManager.flush();
+
+        // When
+        List<UserResponse> page = userRepository.findResponsesByRoleAfter(
+                Role.COURIER, first.getId(), PageRequest.of(0, 1));
+
+        // Then
+        assertThat(page).extracting(UserResponse::getUsername).containsExactly("courier2");
+    }
+
+    @Test
+    void findResponseById_ShouldNotLoadEntityIntoPersistenceContext() {
+        // Given
+        User user = new User("projected", "projected@example.com", "password", "+79991234565");
+        user.setRole(Role.COURIER);
+        Long id = entityManager.persistAndFlush(user).getId();
+        entityManager.clear();
+
+        // When
+        Optional<UserResponse> found = userRepository.findResponseById(id);
+
+        // Then
+        assertThat(found).isPresent();
+        assertThat(found.get().getUsername()).isEqualTo("projected");
+        assertThat(found.get().getPhone()).isEqualTo("+79991234565");
+        assertThat(found.get().getRole()).isEqualTo(Role.COURIER);
+        assertThat(found.get().getCreatedAt()).isNotNull();
+        assertThat(entityManager.getEntityManager().unwrap(Session.class).getStatistics().getEntityCount())
+                .isZero();
+    }
+
+    @Test
+    void saveAndFlush_ShouldNameViolatedUniqueKey() {
+        // Given
+        entityManager.persistAndFlush(new User("taken", "taken@example.com", "password", null));
+
+        // When
+        DataIntegrityViolationException sameUsername = catchThrowableOfType(() -> userRepository.saveAndFlush(
+                new User("taken", "other@example.com", "password", null)), DataIntegrityViolationException.class);
+        entityManager.clear();
+        DataIntegrityViolationException sameEmail = catchThrowableOfType(() -> userRepository.saveAndFlush(
+                new User("other", "taken@example.com", "password", null)), DataIntegrityViolationException.class);
+
+        // Then
+        assertThat(DuplicateUserKeys.isViolatedBy(sameUsername)).isTrue();
+        assertThat(DuplicateUserKeys.isViolatedBy(sameEmail)).isTrue();
+    }
+
+    @Test
+    void updateActive_ShouldBumpVersionOnlyWhenStateChanges() {
+        // Given
+        User user = new User("toggle", "toggle@example.com", "password", "+79991234566");
+        Long id = entityManager.persistAndFlush(user).getId();
+        entityManager.clear();
+
+        // When
+        int deactivated = userRepository.updateActive(id, false, LocalDateTime.now(), 1L);
+        int repeated = userRepository.updateActive(id, false, LocalDateTime.now(), 2L);
+
+        // Then
+        assertThat(deactivated).isEqualTo(1);
+        assertThat(repeated).isZero();
+        UserResponse found = userRepository.findResponseById(id).get();
+        assertThat(found.isActive()).isFalse();
+        assertThat(found.getVersion()).isEqualTo(1L);
+        assertThat(found.getUpdatedAt()).isNotNull();
+        assertThat(userRepository.findMaxChangeSeq()).isEqualTo(1L);
+    }
+
+    @Test
+    void findChangesAfter_ShouldWalkChangesByChangeSeqAndId() {
+        // Given
+        User first = new User("first", "first@example.com", "password", null);
+        first.setChangeSeq(1L);
+        User second = new User("second", "second@example.com", "password", null);
+        second.setChangeSeq(1L);
+        User third = new User("third", "third@example.com", "password", null);
+        third.setChangeSeq(2L);
+        entityManager.persist(first);
+        entityManager.persist(second);
+        entityManager.persistAndFlush(third);
+        // Одна транзакция дает всем своим строкам один номер, порядок внутри - по id
+        userRepository.updateActiveByIds(List.of(first.getId(), second.getId()), false, LocalDateTime.now(), 3L);
+        entityManager.clear();
+
+        // When
+        List<UserResponse> firstPage = userRepository.findChangesAfter(0L, 0L, 3L, PageRequest.of(0, 2));
+        List<UserResponse> secondPage = userRepository.findChangesAfter(3L, first.getId(), 3L, PageRequest.of(0, 2));
+        // Транзакция с номером 3 еще открыта: граница 2
+        List<UserResponse> beforeOpen = userRepository.findChangesAfter(0L, 0L, 2L, PageRequest.of(0, 2));
+
+        // Then
+        assertThat(firstPage).extracting(UserResponse::getUsername).containsExactly("third", "first");
+        assertThat(firstPage).extracting(UserResponse::getChangeSeq).containsExactly(2L, 3L);
+        assertThat(secondPage).extracting(UserResponse::getUsername).containsExactly("second");
+        assertThat(beforeOpen).extracting(UserResponse::getUsername).containsExactly("third");
+    }
+
+    @Test
+    void findIdsToChangeActive_ShouldFilterByRoleStateAndCreatedRange() {
+        // Given
+        User oldCourier = new User("oldcourier", "oldcourier@example.com", "password", null);
+        oldCourier.setRole(Role.COURIER);
+        oldCourier.setCreatedAt(LocalDateTime.of(2023, 1, 10, 0, 0));
+        User newCourier = new User("newcourier", "newcourier@example.com", "password", null);
+        newCourier.setRole(Role.COURIER);
+        newCourier.setCreatedAt(LocalDateTime.of(2024, 6, 1, 0, 0));
+        User inactiveCourier = new User("inactivecourier", "inactivecourier@example.com", "password", null);
+        inactiveCourier.setRole(Role.COURIER);
+        inactiveCourier.setActive(false);
+        User customer = new User("oldcustomer", "oldcustomer@example.com", "password", null);
+        customer.setCreatedAt(LocalDateTime.of(2023, 1, 10, 0, 0));
+        entityManager.persist(oldCourier);
+        entityManager.persist(newCourier);
+        entityManager.persist(inactiveCourier);
+        entityManager.persist(customer);
+        entityManager.flush();
+
+        // When
+        List<Long> all = userRepository.findIdsToChangeActive(
+                Role.COURIER, false, 0L, null, null, PageRequest.of(0, 10));
+        List<Long> before2024 = userRepository.findIdsToChangeActive(
+                Role.COURIER, false, 0L, null, LocalDateTime.of(2024, 1, 1, 0, 0), PageRequest.of(0, 10));
+
+        // Then
+        assertThat(all).containsExactly(oldCourier.getId(), newCourier.getId());
+        assertThat(before2024).containsExactly(oldCourier.getId());
+    }
+}
@@ -0,0 +1,119 @@
+package com.fooddelivery.security;
+
+import com.fooddelivery.exception.PasswordHashingUnavailableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PasswordHasherTest {
+
+    private final List<PasswordHasher> hashers = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        hashers.forEach(PasswordHasher::destroy);
+    }
+
+    @Test
+    void hash_ShouldProduceVerifiableBcryptHash() {
+        PasswordHasher hasher = hasher(4, 2, 16);
+
+        String hash = hasher.hash("password123");
+
+        assertThat(hash).startsWith("$2a$04$");
+        assertThat(hasher.matches("password123", hash)).isTrue();
+        assertThat(hasher.matches("wrong-password", hash)).isFalse();
+        assertThat(hasher.getHashCount()).isEqualTo(1);
+    }
+
+    @Test
+    void matchesNone_ShouldRunBcryptAndNeverMatch() {
+        PasswordHasher hasher = hasher(4, 1, 4);
+
+        assertThat(hasher.matchesNone("password123")).isFalse();
+        assertThat(hasher.matchesNone("")).isFalse();
+        // Хеш-заглушка не попадает в статистику хеширования
+        assertThat(hasher.getHashCount()).isZero();
+    }
+
+    @Test
+    void needsRehash_ShouldDetectLowerCostFactor() {
+        String weakHash = hasher(4, 1, 4).hash("password123");
+        PasswordHasher strongerHasher = hasher(5, 1, 4);
+
+        assertThat(strongerHasher.needsRehash(weakHash)).isTrue();
+        assertThat(strongerHasher.needsRehash(strongerHasher.hash("password123"))).isFalse();
+        // Значение не в формате BCrypt заменяется при следующем входе, а не дает 500
+        assertThat(strongerHasher.needsRehash("{noop}legacy")).isTrue();
+    }
+
+    @Test
+    void hashAll_ShouldWaitForQueueInsteadOfRejecting() {
+        PasswordHasher hasher = hasher(4, 1, 1);
+
+        List<String> hashes = hasher.hashAll(List.of("password1", "password2", "password3", "password4"));
+
+        assertThat(hashes).hasSize(4);
+        assertThat(hasher.matches("password3", hashes.get(2))).isTrue();
+        assertThat(hasher.getRejectedCount()).isZero();
+    }
+
+    @Test
+    void hash_ShouldNotBeRejectedWhileBatchIsRunning() {
+        PasswordHasher hasher = hasher(6, 1, 4);
+        List<String> batch = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            batch.add("password" + i);
+        }
+        CompletableFuture<List<String>> hashAll = CompletableFuture.supplyAsync(() -> hasher.hashAll(batch));
+        while (hasher.getHashCount() == 0) {
+            Thread.onSpinWait();
+        }
+
+        // Пакет занимает поток, но не очередь
+        for (int i = 0; i < 3; i++) {
+            assertThat(hasher.getQueueSize()).isLessThanOrEqualTo(1);
+            assertThat(hasher.matches("password123", hasher.hash("password123"))).isTrue();
+        }
+
+        assertThat(hashAll.join()).hasSize(200);
+        assertThat(hasher.getRejectedCount()).isZero();
+    }
+
+    @Test
+    void hash_ShouldRejectWhenPoolAndQueueAreFull() {
+        PasswordHasher hasher = hasher(13, 1, 1);
+
+        List<CompletableFuture<String>> calls = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            calls.add(CompletableFuture.supplyAsync(() -> hasher.hash("password123")));
+        }
+
+        long rejectedCalls = calls.stream()
+                .filter(call -> {
+                    try {
+                        call.join();
+                        return false;
+                    } catch (CompletionException e) {
+                        return e.getCause() instanceof PasswordHashingUnavailableException;
+                    }
+                })
+                .count();
+
+        assertThat(rejectedCalls).isEqualTo(1);
+        assertThat(hasher.getRejectedCount()).isEqualTo(1);
+    }
+
+    private PasswordHasher hasher(int strength, int threads, int queueCapacity) {
+        PasswordHasher hasher = new PasswordHasher(strength, threads, queueCapacity, Duration.ofSeconds(30));
+        hashers.add(hasher);
+        return hasher;
+    }
+}
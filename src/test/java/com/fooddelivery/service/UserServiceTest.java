@@ -1,26 +1,69 @@
 package com.fooddelivery.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fooddelivery.audit.UserAuditLogger;
+import com.fooddelivery.cache.UserCache;
+import com.fooddelivery.datasource.ReadYourWrites;
+import com.fooddelivery.dto.AuthenticationRequest;
+import com.fooddelivery.dto.UserActivationRequest;
+import com.fooddelivery.dto.UserActivationResult;
+import com.fooddelivery.dto.UserAvailabilityResponse;
+import com.fooddelivery.dto.UserBatchResult;
+import com.fooddelivery.dto.UserPageResponse;
 import com.fooddelivery.dto.UserRequest;
 import com.fooddelivery.dto.UserResponse;
+import com.fooddelivery.dto.UserUpdateRequest;
+import com.fooddelivery.exception.InvalidCredentialsException;
+import com.fooddelivery.exception.PreconditionFailedException;
+import com.fooddelivery.exception.SearchIndexUnavailableException;
 import com.fooddelivery.exception.UserAlreadyExistsException;
 import com.fooddelivery.exception.UserNotFoundException;
+import com.fooddelivery.feed.UserChangeSequence;
+import com.fooddelivery.index.UserAvailabilityIndex;
+import com.fooddelivery.index.UserSearchIndex;
 import com.fooddelivery.model.Role;
 import com.fooddelivery.model.User;
+import com.fooddelivery.outbox.UserEventOutbox;
 import com.fooddelivery.repository.UserRepository;
+import com.fooddelivery.security.PasswordHasher;
+import com.fooddelivery.sharding.UserShards;
+import com.fooddelivery.stats.UserStats;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -29,11 +72,55 @@ public class UserServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private UserAvailabilityIndex availabilityIndex;
+
+    @Mock
+    private UserSearchIndex searchIndex;
+
+    @Mock
+    private UserAuditLogger auditLogger;
+
+    @Mock
+    private UserEventOutbox eventOutbox;
+
+    @Mock
+    private UserChangeSequence changeSequence;
+
+    @Mock
+    private PasswordHasher passwordHasher;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    @Spy
+    private ReadYourWrites readYourWrites = new ReadYourWrites(Duration.ofSeconds(1));
+
+    @Spy
+    private UserCache userCache = new UserCache(100, Duration.ofMinutes(1));
+
+    @Spy
+    private UserShards shards = new UserShards(1, null, 0);
+
+    @Spy
+    private UserStats userStats = new UserStats(Duration.ZERO);
+
     @InjectMocks
     private UserService userService;
 
     private User testUser;
     private User testAdmin;
+    private UserResponse testUserResponse;
+    private UserResponse testAdminResponse;
 
     @BeforeEach
     void setUp() {
@@ -54,11 +141,16 @@ public class UserServiceTest {
         testAdmin.setRole(Role.ADMIN);
         testAdmin.setActive(true);
         testAdmin.setCreatedAt(LocalDateTime.now());
+
+        testUserResponse = new UserResponse(1L, "testuser", "test@example.com", null, Role.CUSTOMER, true,
+                testUser.getCreatedAt(), null, 0L);
+        testAdminResponse = new UserResponse(2L, "admin", "admin@example.com", null, Role.ADMIN, true,
+                testAdmin.getCreatedAt(), null, 0L);
     }
 
     @Test
     void testGetAllUsers() {
-        when(userRepository.findAll()).thenReturn(Arrays.asList(testUser, testAdmin));
+        when(userRepository.findAllResponses()).thenReturn(Arrays.asList(testUserResponse, testAdminResponse));
 
         List<UserResponse> users = userService.getAllUsers();
 
@@ -69,7 +161,7 @@ public class UserServiceTest {
 
     @Test
     void testGetUsersByRole() {
-        when(userRepository.findByRole(Role.CUSTOMER)).thenReturn(Arrays.asList(testUser));
+        when(userRepository.findResponsesByRole(Role.CUSTOMER)).thenReturn(Arrays.asList(testUserResponse));
 
         List<UserResponse> customers = userService.getUsersByRole(Role.CUSTOMER);
 
@@ -77,39 +169,141 @@ public class UserServiceTest {
         assertEquals(Role.CUSTOMER, customers.get(0).getRole());
     }
 
+    @Test
+    void testGetUsersPageReturnsNextCursor() {
+        when(userRepository.findResponsesAfter(eq(0L), any(Pageable.class)))
+                .thenReturn(Arrays.asList(testUserResponse, testAdminResponse));
+
+        UserPageResponse page = userService.getUsersPage(null, null, 1);
+
+        assertEquals(1, page.getItems().size());
+        assertEquals("testuser", page.getItems().get(0).getUsername());
+        assertEquals(1L, UserService.decodeCursor(page.getNextCursor()));
+    }
+
+    @Test
+    void testGetUsersPageByRoleLastPage() {
+        String cursor = UserService.encodeCursor(1L);
+        when(userRepository.findResponsesByRoleAfter(eq(Role.ADMIN), eq(1L), any(Pageable.class)))
+                .thenReturn(Arrays.asList(testAdminResponse));
+
+        UserPageResponse page = userService.getUsersPage(Role.ADMIN, cursor, 10);
+
+        assertEquals(1, page.getItems().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void testGetUsersPageInvalidCursor() {
+        assertThrows(IllegalArgumentException.class, () -> userService.getUsersPage(null, "not-a-cursor", 10));
+    }
+
     @Test
     void testDeactivateUser() {
-        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-        when(userRepository.save(any(User.class))).thenReturn(testUser);
+        testUserResponse.setActive(false);
+        when(userRepository.updateActive(eq(1L), eq(false), any(LocalDateTime.class), anyLong())).thenReturn(1);
+        when(userRepository.findResponseById(1L)).thenReturn(Optional.of(testUserResponse));
 
         UserResponse response = userService.deactivateUser(1L);
 
         assertFalse(response.isActive());
-        verify(userRepository, times(1)).save(testUser);
+        verify(userRepository, never()).findById(any());
+        verify(userRepository, never()).save(any(User.class));
+        verify(auditLogger).userDeactivated(1L);
+        verify(eventOutbox).userActiveChanged(testUserResponse);
+        verify(userStats).changed(Role.CUSTOMER, true, Role.CUSTOMER, false);
     }
 
     @Test
     void testActivateUser() {
-        testUser.setActive(false);
-        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-        when(userRepository.save(any(User.class))).thenReturn(testUser);
+        when(userRepository.updateActive(eq(1L), eq(true), any(LocalDateTime.class), anyLong())).thenReturn(1);
+        when(userRepository.findResponseById(1L)).thenReturn(Optional.of(testUserResponse));
 
         UserResponse response = userService.activateUser(1L);
 
         assertTrue(response.isActive());
-        verify(userRepository, times(1)).save(testUser);
+        verify(auditLogger).userActivated(1L);
+    }
+
+    @Test
+    void testActivateAlreadyActiveUserIsNoop() {
+        when(userRepository.updateActive(eq(1L), eq(true), any(LocalDateTime.class), anyLong())).thenReturn(0);
+        when(userRepository.findResponseById(1L)).thenReturn(Optional.of(testUserResponse));
+
+        UserResponse response = userService.activateUser(1L);
+
+        assertTrue(response.isActive());
+        verify(auditLogger, never()).userActivated(any());
+        verify(eventOutbox, never()).userActiveChanged(any());
+        verify(readYourWrites, never()).written(any(), any());
+        verify(userStats, never()).changed(any(), anyBoolean(), any(), anyBoolean());
+    }
+
+    @Test
+    void testDeactivateUsersByIdsRunsChunkedUpdates() {
+        List<Long> ids = LongStream.rangeClosed(1, 2500).boxed().collect(Collectors.toList());
+        UserActivationRequest request = new UserActivationRequest();
+        request.setIds(ids);
+        when(userRepository.updateActiveByIds(anyCollection(), eq(false), any(LocalDateTime.class), anyLong()))
+                .thenReturn(1000, 1000, 400);
+
+        UserActivationResult result = userService.deactivateUsers(request);
+
+        assertEquals(2400, result.getUpdated());
+        verify(userRepository).updateActiveByIds(argThat(chunk -> chunk.size() == 500), eq(false), any(LocalDateTime.class), anyLong());
+        verify(userRepository, times(3)).updateActiveByIds(anyCollection(), eq(false), any(LocalDateTime.class), anyLong());
+        verify(auditLogger).usersActiveChanged(false, 2400);
+    }
+
+    @Test
+    void testDeactivateUsersWritesEventsOnlyForChangedRows() {
+        UserActivationRequest request = new UserActivationRequest();
+        request.setIds(List.of(1L, 2L));
+        LocalDateTime earlier = LocalDateTime.now().minusDays(1);
+        testAdminResponse.setActive(false);
+        testAdminResponse.setUpdatedAt(earlier);
+        when(userRepository.updateActiveByIds(anyCollection(), eq(false), any(LocalDateTime.class), anyLong()))
+                .thenAnswer(invocation -> {
+                    // Первый пользователь меняется этим UPDATE, второй был деактивирован раньше
+                    testUserResponse.setActive(false);
+                    testUserResponse.setUpdatedAt(invocation.getArgument(2));
+                    return 1;
+                });
+        when(userRepository.findResponsesByIds(List.of(1L, 2L))).thenReturn(List.of(testUserResponse, testAdminResponse));
+
+        userService.deactivateUsers(request);
+
+        verify(eventOutbox).usersActiveChanged(List.of(testUserResponse));
+    }
+
+    @Test
+    void testDeactivateUsersByRoleWalksIdsInChunks() {
+        List<Long> firstChunk = LongStream.rangeClosed(1, 1000).boxed().collect(Collectors.toList());
+        UserActivationRequest request = new UserActivationRequest();
+        request.setRole(Role.COURIER);
+        when(userRepository.findIdsToChangeActive(eq(Role.COURIER), eq(false), eq(0L), isNull(), isNull(), any(Pageable.class)))
+                .thenReturn(firstChunk);
+        when(userRepository.findIdsToChangeActive(eq(Role.COURIER), eq(false), eq(1000L), isNull(), isNull(), any(Pageable.class)))
+                .thenReturn(List.of(1500L, 1501L));
+        when(userRepository.updateActiveByIds(anyCollection(), eq(false), any(LocalDateTime.class), anyLong()))
+                .thenReturn(1000, 2);
+
+        UserActivationResult result = userService.deactivateUsers(request);
+
+        assertEquals(1002, result.getUpdated());
+        verify(readYourWrites, times(2)).written(anyCollection(), eq(EnumSet.of(Role.COURIER)));
     }
 
     @Test
     void testDeactivateUserNotFound() {
-        when(userRepository.findById(999L)).thenReturn(Optional.empty());
+        when(userRepository.findResponseById(999L)).thenReturn(Optional.empty());
 
         assertThrows(UserNotFoundException.class, () -> userService.deactivateUser(999L));
     }
 
     @Test
     void testGetUserById() {
-        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+        when(userRepository.findResponseById(1L)).thenReturn(Optional.of(testUserResponse));
 
         UserResponse response = userService.getUserById(1L);
 
@@ -117,6 +311,80 @@ public class UserServiceTest {
         assertEquals("testuser", response.getUsername());
     }
 
+    @Test
+    void testGetUserByIdUsesCache() {
+        when(userRepository.findResponseById(1L)).thenReturn(Optional.of(testUserResponse));
+
+        userService.getUserById(1L);
+        UserResponse response = userService.getUserById(1L);
+
+        assertEquals("testuser", response.getUsername());
+        verify(userRepository, times(1)).findResponseById(1L);
+        assertEquals(1, userCache.stats().hitCount());
+    }
+
+    @Test
+    void testDeactivateUsersPutsFreshProjectionsIntoCache() {
+        UserResponse deactivated = new UserResponse(1L, "testuser", "test@example.com", null, Role.CUSTOMER, false,
+                testUser.getCreatedAt(), null, 1L);
+        when(userRepository.findResponseById(1L)).thenReturn(Optional.of(testUserResponse));
+        assertTrue(userService.getUserById(1L).isActive());
+        UserActivationRequest request = new UserActivationRequest();
+        request.setIds(List.of(1L));
+        when(userRepository.updateActiveByIds(anyCollection(), eq(false), any(LocalDateTime.class), anyLong()))
+                .thenAnswer(invocation -> {
+                    deactivated.setUpdatedAt(invocation.getArgument(2));
+                    return 1;
+                });
+        when(userRepository.findResponsesByIds(List.of(1L))).thenReturn(List.of(deactivated));
+
+        userService.deactivateUsers(request);
+
+        assertFalse(userService.getUserById(1L).isActive());
+        verify(userRepository, times(1)).findResponseById(1L);
+    }
+
+    @Test
+    void testGetUserByIdKeepsNewerVersionCachedDuringLoad() {
+        UserResponse updated = new UserResponse(1L, "testuser", "test@example.com", "+79990001122", Role.CUSTOMER, true,
+                testUser.getCreatedAt(), LocalDateTime.now(), 1L);
+        // Пока читалась версия 0, другой запрос закоммитил версию 1 и положил ее в кэш
+        when(userRepository.findResponseById(1L)).thenAnswer(invocation -> {
+            userCache.put(updated);
+            return Optional.of(testUserResponse);
+        });
+
+        assertEquals(1L, userService.getUserById(1L).getVersion());
+        assertEquals("+79990001122", userService.getUserById(1L).getPhone());
+        verify(userRepository, times(1)).findResponseById(1L);
+    }
+
+    @Test
+    void testDeactivateUserRefreshesCache() {
+        UserResponse deactivated = new UserResponse(1L, "testuser", "test@example.com", null, Role.CUSTOMER, false,
+                testUser.getCreatedAt(), LocalDateTime.now(), 1L);
+        when(userRepository.findResponseById(1L))
+                .thenReturn(Optional.of(testUserResponse))
+                .thenReturn(Optional.of(deactivated));
+        when(userRepository.updateActive(eq(1L), eq(false), any(LocalDateTime.class), anyLong())).thenReturn(1);
+
+        assertTrue(userService.getUserById(1L).isActive());
+        userService.deactivateUser(1L);
+
+        assertFalse(userService.getUserById(1L).isActive());
+        verify(userRepository, times(2)).findResponseById(1L);
+    }
+
+    @Test
+    void testGetUserByIdNotFoundIsNotCached() {
+        when(userRepository.findResponseById(999L)).thenReturn(Optional.empty());
+
+        assertThrows(UserNotFoundException.class, () -> userService.getUserById(999L));
+        assertThrows(UserNotFoundException.class, () -> userService.getUserById(999L));
+
+        verify(userRepository, times(2)).findResponseById(999L);
+    }
+
     @Test
     void testRegisterUserSuccess() {
         UserRequest request = new UserRequest();
@@ -127,12 +395,16 @@ public class UserServiceTest {
 
         when(userRepository.existsByUsername("newuser")).thenReturn(false);
         when(userRepository.existsByEmail("new@example.com")).thenReturn(false);
+        when(passwordHasher.hash("password123")).thenReturn("$2a$10$hash");
         when(userRepository.save(any(User.class))).thenReturn(testUser);
 
         UserResponse response = userService.registerUser(request);
 
         assertNotNull(response);
         assertEquals("testuser", response.getUsername());
+        verify(userRepository).save(argThat(user -> "$2a$10$hash".equals(user.getPassword())));
+        verify(eventOutbox).userRegistered(argThat(user -> user.getId().equals(1L)));
+        assertEquals(1, userStats.count(Role.CUSTOMER, true));
     }
 
     @Test
@@ -157,4 +429,386 @@ public class UserServiceTest {
 
         assertThrows(UserAlreadyExistsException.class, () -> userService.registerUser(request));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testRegisterUsersReportsConflictsPerItem() {
+        UserRequest fresh = new UserRequest();
+        fresh.setUsername("courier1");
+        fresh.setEmail("courier1@example.com");
+        fresh.setPassword("password123");
+        fresh.setRole(Role.COURIER);
+
+        UserRequest existing = new UserRequest();
+        existing.setUsername("testuser");
+        existing.setEmail("other@example.com");
+        existing.setPassword("password123");
+
+        UserRequest duplicateInBatch = new UserRequest();
+        duplicateInBatch.setUsername("courier2");
+        duplicateInBatch.setEmail("courier1@example.com");
+        duplicateInBatch.setPassword("password123");
+
+        when(userRepository.findExistingUsernames(anyCollection())).thenReturn(List.of("testuser"));
+        when(userRepository.findExistingEmails(anyCollection())).thenReturn(List.of());
+        // Как и настоящий репозиторий, выдаем id из последовательности
+        when(userRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<User> users = invocation.getArgument(0);
+            for (int i = 0; i < users.size(); i++) {
+                users.get(i).setId(100L + i);
+            }
+            return users;
+        });
+        when(passwordHasher.hashAll(anyList())).thenAnswer(invocation -> invocation.<List<String>>getArgument(0).stream()
+                .map(password -> "hashed:" + password)
+                .toList());
+
+        List<UserBatchResult> results = userService.registerUsers(Arrays.asList(fresh, existing, duplicateInBatch));
+
+        assertEquals(3, results.size());
+        assertEquals(UserBatchResult.Status.CREATED, results.get(0).getStatus());
+        assertEquals(Role.COURIER, results.get(0).getUser().getRole());
+        verify(passwordHasher).hashAll(List.of("password123"));
+        assertEquals(UserBatchResult.Status.CONFLICT, results.get(1).getStatus());
+        assertEquals("Username already exists: testuser", results.get(1).getError());
+        assertEquals(UserBatchResult.Status.CONFLICT, results.get(2).getStatus());
+        assertEquals(2, results.get(2).getIndex());
+        verify(userRepository, times(1)).flush();
+    }
+
+    @Test
+    void testRegisterUsersHashesBeforeTransactionAndRechecksUniqueness() {
+        UserRequest first = new UserRequest();
+        first.setUsername("courier1");
+        first.setEmail("courier1@example.com");
+        first.setPassword("password1");
+
+        UserRequest second = new UserRequest();
+        second.setUsername("courier2");
+        second.setEmail("courier2@example.com");
+        second.setPassword("password2");
+
+        // courier2 свободен при первой проверке и занят к моменту вставки
+        when(userRepository.findExistingUsernames(anyCollection())).thenReturn(List.of())
+                .thenReturn(List.of("courier2"));
+        when(userRepository.findExistingEmails(anyCollection())).thenReturn(List.of());
+        when(userRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<User> users = invocation.getArgument(0);
+            users.forEach(user -> user.setId(200L));
+            return users;
+        });
+        when(passwordHasher.hashAll(anyList())).thenAnswer(invocation -> invocation.<List<String>>getArgument(0).stream()
+                .map(password -> "hashed:" + password)
+                .toList());
+
+        List<UserBatchResult> results = userService.registerUsers(Arrays.asList(first, second));
+
+        assertEquals(UserBatchResult.Status.CREATED, results.get(0).getStatus());
+        assertEquals(UserBatchResult.Status.CONFLICT, results.get(1).getStatus());
+        assertEquals("Username already exists: courier2", results.get(1).getError());
+        verify(passwordHasher).hashAll(List.of("password1", "password2"));
+        verify(userRepository).saveAll(argThat((List<User> users) -> users.size() == 1));
+        // BCrypt не выполняется внутри транзакции
+        InOrder inOrder = inOrder(passwordHasher, transactionManager);
+        inOrder.verify(passwordHasher).hashAll(anyList());
+        inOrder.verify(transactionManager).getTransaction(any());
+    }
+
+    @Test
+    void testCheckAvailabilitySkipsDatabaseWhenIndexMisses() {
+        when(availabilityIndex.mightContainUsername("freeuser")).thenReturn(false);
+
+        UserAvailabilityResponse response = userService.checkAvailability("freeuser", null);
+
+        assertTrue(response.getUsernameAvailable());
+        assertNull(response.getEmailAvailable());
+        verify(userRepository, never()).existsByUsername(any());
+    }
+
+    @Test
+    void testCheckAvailabilityConfirmsPossibleCollision() {
+        when(availabilityIndex.mightContainUsername("testuser")).thenReturn(true);
+        when(availabilityIndex.mightContainEmail("maybe@example.com")).thenReturn(true);
+        when(userRepository.existsByUsername("testuser")).thenReturn(true);
+        when(userRepository.existsByEmail("maybe@example.com")).thenReturn(false);
+
+        UserAvailabilityResponse response = userService.checkAvailability("testuser", "maybe@example.com");
+
+        assertFalse(response.getUsernameAvailable());
+        assertTrue(response.getEmailAvailable());
+    }
+
+    @Test
+    void testCheckAvailabilityRequiresParameter() {
+        assertThrows(IllegalArgumentException.class, () -> userService.checkAvailability(null, null));
+    }
+
+    @Test
+    void testRegisterUserAddsToAvailabilityIndex() {
+        UserRequest request = new UserRequest();
+        request.setUsername("testuser");
+        request.setEmail("test@example.com");
+        request.setPassword("password123");
+
+        when(userRepository.save(any(User.class))).thenReturn(testUser);
+
+        userService.registerUser(request);
+
+        verify(availabilityIndex).addUsername("testuser");
+        verify(availabilityIndex).addEmail("test@example.com");
+        verify(auditLogger).userRegistered(any(UserResponse.class));
+    }
+
+    @Test
+    void testUpdateUserHashesPasswordBeforeTransaction() {
+        UserUpdateRequest request = new UserUpdateRequest();
+        request.setPassword("new-password");
+
+        when(passwordHasher.hash("new-password")).thenReturn("$2a$10$newhash");
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+        when(userRepository.save(any(User.class))).thenReturn(testUser);
+
+        userService.updateUser(1L, request, null);
+
+        assertEquals("$2a$10$newhash", testUser.getPassword());
+        InOrder inOrder = inOrder(passwordHasher, transactionManager, userRepository);
+        inOrder.verify(passwordHasher).hash("new-password");
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(userRepository).findById(1L);
+    }
+
+    @Test
+    void testUpdateUserAuditsChangedFields() {
+        UserUpdateRequest request = new UserUpdateRequest();
+        request.setUsername("testuser");
+        request.setPhone("+79990001122");
+        request.setRole(Role.COURIER);
+
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+        when(userRepository.save(any(User.class))).thenReturn(testUser);
+
+        UserResponse response = userService.updateUser(1L, request, null);
+
+        assertEquals("+79990001122", response.getPhone());
+        verify(userRepository, never()).existsByUsername(any());
+        verify(auditLogger).userUpdated(1L, List.of("phone", "role"));
+        verify(eventOutbox).userUpdated(response, List.of("phone", "role"));
+        assertEquals(-1, userStats.count(Role.CUSTOMER, true));
+        assertEquals(1, userStats.count(Role.COURIER, true));
+    }
+
+    @Test
+    void testPatchUserChangesOnlyPhone() throws Exception {
+        testUser.setPhone("+79990001122");
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+        when(userRepository.save(any(User.class))).thenReturn(testUser);
+
+        UserResponse response = userService.patchUser(1L,
+                objectMapper.readTree("{\"phone\":\"+79993334455\",\"username\":\"testuser\"}"), null);
+
+        assertEquals("+79993334455", response.getPhone());
+        verify(userRepository, never()).existsByUsername(any());
+        verify(userRepository, never()).existsByEmail(any());
+        verify(auditLogger).userUpdated(1L, List.of("phone"));
+    }
+
+    @Test
+    void testPatchUserNullRemovesPhone() throws Exception {
+        testUser.setPhone("+79990001122");
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+        when(userRepository.save(any(User.class))).thenReturn(testUser);
+
+        UserResponse response = userService.patchUser(1L, objectMapper.readTree("{\"phone\":null}"), null);
+
+        assertNull(response.getPhone());
+        verify(auditLogger).userUpdated(1L, List.of("phone"));
+    }
+
+    @Test
+    void testPatchUserWithoutChangesSkipsUpdate() throws Exception {
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+
+        userService.patchUser(1L, objectMapper.readTree("{\"role\":\"CUSTOMER\",\"active\":true}"), null);
+
+        verify(userRepository, never()).save(any(User.class));
+        verify(auditLogger, never()).userUpdated(any(), anyList());
+        verify(readYourWrites, never()).written(any(), any());
+    }
+
+    @Test
+    void testPatchUserRejectsInvalidPatch() throws Exception {
+        assertThrows(IllegalArgumentException.class,
+                () -> userService.patchUser(1L, objectMapper.readTree("[]"), null));
+        assertThrows(IllegalArgumentException.class,
+                () -> userService.patchUser(1L, objectMapper.readTree("{\"nickname\":\"x\"}"), null));
+        assertThrows(IllegalArgumentException.class,
+                () -> userService.patchUser(1L, objectMapper.readTree("{\"email\":null}"), null));
+        assertThrows(IllegalArgumentException.class,
+                () -> userService.patchUser(1L, objectMapper.readTree("{\"role\":\"KING\"}"), null));
+        assertThrows(ConstraintViolationException.class,
+                () -> userService.patchUser(1L, objectMapper.readTree("{\"email\":\"not-an-email\"}"), null));
+        verify(userRepository, never()).findById(any());
+    }
+
+    @Test
+    void testExportUsersFlushesEveryFiveHundredRows() throws Exception {
+        List<User> users = LongStream.rangeClosed(1, 1001).mapToObj(id -> {
+            User user = new User("user" + id, "user" + id + "@test.com", "hash", null);
+            user.setId(id);
+            // ObjectMapper теста без JavaTimeModule
+            user.setCreatedAt(null);
+            return user;
+        }).collect(Collectors.toList());
+        when(userRepository.streamAllOrderById()).thenReturn(users.stream());
+        AtomicInteger flushes = new AtomicInteger();
+        ByteArrayOutputStream output = new ByteArrayOutputStream() {
+            @Override
+            public void flush() {
+                flushes.incrementAndGet();
+            }
+        };
+
+        assertEquals(1001, userService.exportUsers(output));
+
+        assertEquals(1001, output.toString(StandardCharsets.UTF_8).split("\n").length);
+        // Два промежуточных flush и один в конце, а не flush на каждую строку
+        assertEquals(3, flushes.get());
+    }
+
+    @Test
+    void testSearchUsersKeepsIndexOrder() {
+        UserResponse first = new UserResponse();
+        first.setId(7L);
+        UserResponse second = new UserResponse();
+        second.setId(3L);
+        when(searchIndex.isReady()).thenReturn(true);
+        when(searchIndex.search("ivan", Role.COURIER, 10)).thenReturn(List.of(7L, 5L, 3L));
+        // Пользователя 5 уже нет в БД
+        when(userRepository.findResponsesByIds(List.of(7L, 5L, 3L))).thenReturn(List.of(second, first));
+
+        List<UserResponse> result = userService.searchUsers("ivan", Role.COURIER, 10);
+
+        assertEquals(List.of(7L, 3L), result.stream().map(UserResponse::getId).collect(Collectors.toList()));
+        assertThrows(IllegalArgumentException.class, () -> userService.searchUsers(" ", null, 10));
+        assertThrows(IllegalArgumentException.class,
+                () -> userService.searchUsers("ivan", null, UserService.MAX_SEARCH_LIMIT + 1));
+    }
+
+    @Test
+    void testSearchUsersRejectsWhileIndexLoads() {
+        when(searchIndex.isReady()).thenReturn(false);
+
+        assertThrows(SearchIndexUnavailableException.class, () -> userService.searchUsers("ivan", null, 10));
+        verify(searchIndex, never()).search(any(), any(), anyInt());
+    }
+
+    @Test
+    void testUpdateUserRefreshesSearchIndex() {
+        UserUpdateRequest request = new UserUpdateRequest();
+        request.setUsername("renamed");
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+        when(userRepository.existsByUsername("renamed")).thenReturn(false);
+        when(userRepository.save(any(User.class))).thenReturn(testUser);
+
+        userService.updateUser(1L, request, null);
+
+        verify(searchIndex).put(argThat(user -> "renamed".equals(user.getUsername())));
+    }
+
+    @Test
+    void testUpdateUserReadsOwnWritesFromPrimary() {
+        UserUpdateRequest request = new UserUpdateRequest();
+        request.setRole(Role.COURIER);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> {
+            testUser.setVersion(1L);
+            return testUser;
+        });
+        when(userRepository.findResponsesByRole(Role.COURIER)).thenReturn(List.of());
+
+        userService.updateUser(1L, request, null);
+        userService.getUsersByRole(Role.COURIER);
+
+        verify(readYourWrites).written(List.of(1L), EnumSet.of(Role.CUSTOMER, Role.COURIER));
+        verify(readYourWrites).readList(eq(Role.COURIER), any());
+    }
+
+    @Test
+    void testUpdateUserRejectsStaleVersion() {
+        testUser.setVersion(3L);
+        UserUpdateRequest request = new UserUpdateRequest();
+        request.setPhone("+79990001122");
+
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+
+        assertThrows(PreconditionFailedException.class, () -> userService.updateUser(1L, request, 2L));
+        verify(userRepository, never()).save(any(User.class));
+        verify(readYourWrites, never()).written(any(), any());
+    }
+
+    @Test
+    void testActivateUserSendsRoleListReadsToPrimary() {
+        when(userRepository.updateActive(eq(1L), eq(true), any(LocalDateTime.class), anyLong())).thenReturn(1);
+        when(userRepository.findResponseById(1L)).thenReturn(Optional.of(testUserResponse));
+
+        userService.activateUser(1L);
+
+        verify(readYourWrites).written(List.of(1L), EnumSet.of(Role.CUSTOMER));
+    }
+
+    @Test
+    void testAuthenticateRehashesOutdatedHash() {
+        testUser.setPassword("$2a$04$oldhash");
+        AuthenticationRequest request = new AuthenticationRequest();
+        request.setUsername("testuser");
+        request.setPassword("password123");
+
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
+        when(passwordHasher.matches("password123", "$2a$04$oldhash")).thenReturn(true);
+        when(passwordHasher.needsRehash("$2a$04$oldhash")).thenReturn(true);
+        when(passwordHasher.hash("password123")).thenReturn("$2a$10$newhash");
+
+        UserResponse response = userService.authenticate(request);
+
+        assertEquals("testuser", response.getUsername());
+        verify(userRepository).updatePassword(1L, "$2a$10$newhash");
+    }
+
+    @Test
+    void testAuthenticateWrongPassword() {
+        AuthenticationRequest request = new AuthenticationRequest();
+        request.setUsername("testuser");
+        request.setPassword("wrong-password");
+
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
+        when(passwordHasher.matches("wrong-password", "password123")).thenReturn(false);
+
+        assertThrows(InvalidCredentialsException.class, () -> userService.authenticate(request));
+        verify(passwordHasher, never()).hash(any());
+    }
+
+    @Test
+    void testAuthenticateUnknownUserStillChecksPassword() {
+        AuthenticationRequest request = new AuthenticationRequest();
+        request.setUsername("nobody");
+        request.setPassword("password123");
+
+        when(userRepository.findByUsername("nobody")).thenReturn(Optional.empty());
+
+        assertThrows(InvalidCredentialsException.class, () -> userService.authenticate(request));
+        verify(passwordHasher).matchesNone("password123");
+    }
+
+    @Test
+    void testAuthenticateInactiveUserStillChecksPassword() {
+        testUser.setActive(false);
+        AuthenticationRequest request = new AuthenticationRequest();
+        request.setUsername("testuser");
+        request.setPassword("password123");
+
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
+        when(passwordHasher.matches("password123", "password123")).thenReturn(true);
+
+        assertThrows(InvalidCredentialsException.class, () -> userService.authenticate(request));
+        verify(passwordHasher).matches("password123", "password123");
+    }
+}
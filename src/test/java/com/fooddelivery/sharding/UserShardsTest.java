@@ -0,0 +1,48 @@
+package com.fooddelivery.sharding;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UserShardsTest {
+
+    @Test
+    void shardOf_ShouldSpreadSequentialIdsEvenly() throws Exception {
+        UserShards shards = new UserShards(3, null, 0);
+        int[] counts = new int[3];
+        for (long id = 1; id <= 30_000; id++) {
+            counts[shards.shardOf(id)]++;
+        }
+        for (int count : counts) {
+            assertThat(count).isBetween(9_500, 10_500);
+        }
+        assertThat(shards.shardOf(42)).isEqualTo(shards.shardOf(42));
+        shards.destroy();
+    }
+
+    @Test
+    void merge_ShouldInterleaveSortedListsUpToLimit() {
+        List<List<Long>> sorted = List.of(List.of(1L, 4L, 9L), List.of(), List.of(2L, 3L, 10L, 11L));
+
+        assertThat(UserShards.merge(sorted, Comparator.naturalOrder(), Integer.MAX_VALUE))
+                .containsExactly(1L, 2L, 3L, 4L, 9L, 10L, 11L);
+        assertThat(UserShards.merge(sorted, Comparator.naturalOrder(), 4)).containsExactly(1L, 2L, 3L, 4L);
+    }
+
+    @Test
+    void nextId_ShouldHandOutIdsFromDirectoryBlocks() {
+        UserDirectory directory = mock(UserDirectory.class);
+        when(directory.nextIdBlock()).thenReturn(1L, 51L);
+        UserIdAllocator allocator = new UserIdAllocator(directory);
+
+        for (long expected = 1; expected <= UserIdAllocator.BLOCK_SIZE; expected++) {
+            assertThat(allocator.nextId()).isEqualTo(expected);
+        }
+        assertThat(allocator.nextId()).isEqualTo(51L);
+    }
+}
@@ -0,0 +1,93 @@
+package com.fooddelivery.stats;
+
+import com.fooddelivery.model.Role;
+import com.fooddelivery.repository.UserRepository;
+import com.fooddelivery.sharding.UserShards;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class UserStatsTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private UserStats stats;
+
+    @BeforeEach
+    void setUp() {
+        stats = new UserStats(Duration.ZERO);
+        ReflectionTestUtils.setField(stats, "userRepository", userRepository);
+        ReflectionTestUtils.setField(stats, "shards", new UserShards(1, null, 0));
+    }
+
+    @Test
+    void init_ShouldSeedCountersFromAggregateQuery() {
+        when(userRepository.countByRoleAndActive()).thenReturn(List.of(
+                new Object[]{Role.COURIER, true, 7L},
+                new Object[]{Role.COURIER, false, 2L},
+                new Object[]{Role.ADMIN, true, 1L}));
+
+        stats.init();
+
+        assertThat(stats.count(Role.COURIER, true)).isEqualTo(7);
+        assertThat(stats.count(Role.COURIER, false)).isEqualTo(2);
+        assertThat(stats.count(Role.CUSTOMER, true)).isZero();
+        assertThat(stats.snapshot().getTotal()).isEqualTo(10);
+        assertThat(stats.snapshot().getActive()).isEqualTo(8);
+        assertThat(stats.snapshot().getRoles().get(Role.ADMIN).getActive()).isEqualTo(1);
+    }
+
+    @Test
+    void changed_ShouldMoveUserBetweenCells() {
+        stats.added(Role.CUSTOMER, true);
+        stats.added(Role.CUSTOMER, true);
+
+        stats.changed(Role.CUSTOMER, true, Role.COURIER, true);
+        stats.changed(Role.COURIER, true, Role.COURIER, false);
+        stats.changed(Role.CUSTOMER, true, Role.CUSTOMER, true);
+
+        assertThat(stats.count(Role.CUSTOMER, true)).isEqualTo(1);
+        assertThat(stats.count(Role.COURIER, true)).isZero();
+        assertThat(stats.count(Role.COURIER, false)).isEqualTo(1);
+        assertThat(stats.snapshot().getTotal()).isEqualTo(2);
+    }
+
+    @Test
+    void reconcile_ShouldCorrectOnlyDriftSeenTwiceInARow() {
+        stats.added(Role.COURIER, true);
+        List<Object[]> database = List.<Object[]>of(new Object[]{Role.COURIER, true, 3L});
+        when(userRepository.countByRoleAndActive()).thenReturn(database);
+
+        // Первое расхождение может быть изменением, которое еще не дошло до счетчиков
+        assertThat(stats.reconcile()).isZero();
+        assertThat(stats.count(Role.COURIER, true)).isEqualTo(1);
+
+        assertThat(stats.reconcile()).isEqualTo(2);
+        assertThat(stats.count(Role.COURIER, true)).isEqualTo(3);
+        assertThat(stats.reconcile()).isZero();
+        assertThat(stats.getCorrectionCount()).isEqualTo(2);
+    }
+
+    @Test
+    void reconcile_ShouldIgnoreDriftThatDisappears() {
+        when(userRepository.countByRoleAndActive()).thenReturn(List.<Object[]>of(new Object[]{Role.COURIER, true, 1L}));
+
+        // Пользователь уже в БД, но afterCommit еще не выполнился
+        assertThat(stats.reconcile()).isZero();
+        stats.added(Role.COURIER, true);
+
+        assertThat(stats.reconcile()).isZero();
+        assertThat(stats.count(Role.COURIER, true)).isEqualTo(1);
+    }
+}
@@ -0,0 +1,239 @@
+package com.fooddelivery.reactive;
+
+import com.fooddelivery.controller.UserController;
+import com.fooddelivery.dto.UserPageResponse;
+import com.fooddelivery.dto.UserRequest;
+import com.fooddelivery.dto.UserResponse;
+import com.fooddelivery.model.Role;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(classes = ReactiveUserApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.main.web-application-type=reactive", "user.password.bcrypt-strength=4",
+                "spring.r2dbc.url=r2dbc:h2:mem:///reactive-test;DB_CLOSE_DELAY=-1"})
+@ActiveProfiles("reactive")
+public class ReactiveUserControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @AfterEach
+    void cleanUp() {
+        databaseClient.sql("delete from users").fetch().rowsUpdated().block();
+        databaseClient.sql("delete from user_outbox").fetch().rowsUpdated().block();
+    }
+
+    @Test
+    void testRegisterAndGetUser() {
+        UserResponse created = register("reactive1", "reactive1@test.com", Role.CUSTOMER);
+        assertThat(created.getId()).isNotNull();
+        assertThat(created.isActive()).isTrue();
+
+        webTestClient.get().uri("/users/{id}", created.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"0\"")
+                .expectBody()
+                .jsonPath("$.username").isEqualTo("reactive1")
+                .jsonPath("$.password").doesNotExist();
+
+        // Клиент с актуальной версией получает 304 без тела
+        webTestClient.get().uri("/users/{id}", created.getId())
+                .header(HttpHeaders.IF_NONE_MATCH, "\"0\"")
+                .exchange()
+                .expectStatus().isNotModified();
+
+        webTestClient.get().uri("/users/{id}", created.getId() + 1000)
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void testRegisterDuplicateAndInvalidUser() {
+        register("reactive1", "reactive1@test.com", Role.CUSTOMER);
+
+        webTestClient.post().uri("/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request("reactive1", "other@test.com", Role.CUSTOMER))
+                .exchange()
+                .expectStatus().isEqualTo(409)
+                .expectBody()
+                .jsonPath("$.error").isEqualTo("Conflict");
+
+        webTestClient.post().uri("/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request("", "not-an-email", Role.CUSTOMER))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.email").exists();
+    }
+
+    @Test
+    void testStreamUsersAsNdjson() {
+        register("customer1", "customer1@test.com", Role.CUSTOMER);
+        register("customer2", "customer2@test.com", Role.CUSTOMER);
+        register("courier1", "courier1@test.com", Role.COURIER);
+
+        Flux<UserResponse> all = webTestClient.get().uri("/users")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(UserResponse.class)
+                .getResponseBody();
+        StepVerifier.create(all.map(UserResponse::getUsername))
+                .expectNext("customer1", "customer2", "courier1")
+                .verifyComplete();
+
+        // Клиент забирает по одному пользователю, остальные читаются по мере запроса
+        Flux<UserResponse> couriers = webTestClient.get().uri("/users?role=COURIER")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .returnResult(UserResponse.class)
+                .getResponseBody();
+        StepVerifier.create(couriers, 1)
+                .assertNext(user -> assertThat(user.getRole()).isEqualTo(Role.COURIER))
+                .thenRequest(1)
+                .verifyComplete();
+
+        webTestClient.get().uri("/users")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(3);
+    }
+
+    @Test
+    void testGetUsersPage() {
+        for (int i = 0; i < 5; i++) {
+            register("customer" + i, "customer" + i + "@test.com", Role.CUSTOMER);
+        }
+
+        UserPageResponse first = webTestClient.get().uri("/users?limit=3")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(UserPageResponse.class)
+                .returnResult().getResponseBody();
+        assertThat(first.getItems()).hasSize(3);
+        assertThat(first.getNextCursor()).isNotNull();
+
+        UserPageResponse second = webTestClient.get().uri("/users?limit=3&after={cursor}", first.getNextCursor())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(UserPageResponse.class)
+                .returnResult().getResponseBody();
+        assertThat(second.getItems()).extracting(UserResponse::getUsername).containsExactly("customer3", "customer4");
+        assertThat(second.getNextCursor()).isNull();
+
+        webTestClient.get().uri("/users?limit=0")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void testPatchUserWithIfMatchAndDeactivate() {
+        UserResponse created = register("reactive1", "reactive1@test.com", Role.CUSTOMER);
+
+        webTestClient.patch().uri("/users/{id}", created.getId())
+                .contentType(MediaType.parseMediaType(UserController.MERGE_PATCH_JSON))
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .bodyValue("{\"phone\":\"+79990000000\"}")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"1\"")
+                .expectBody()
+                .jsonPath("$.phone").isEqualTo("+79990000000");
+
+        // Устаревшая версия в If-Match
+        webTestClient.patch().uri("/users/{id}", created.getId())
+                .contentType(MediaType.parseMediaType(UserController.MERGE_PATCH_JSON))
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .bodyValue("{\"phone\":null}")
+                .exchange()
+                .expectStatus().isEqualTo(412);
+
+        webTestClient.delete().uri("/users/{id}", created.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.active").isEqualTo(false);
+
+        webTestClient.patch().uri("/users/{id}/activate", created.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.active").isEqualTo(true);
+    }
+
+    @Test
+    void testWritesUserEventsToOutbox() {
+        UserResponse created = register("reactive1", "reactive1@test.com", Role.CUSTOMER);
+
+        webTestClient.patch().uri("/users/{id}", created.getId())
+                .contentType(MediaType.parseMediaType(UserController.MERGE_PATCH_JSON))
+                .bodyValue("{\"phone\":\"+79990000000\"}")
+                .exchange()
+                .expectStatus().isOk();
+        webTestClient.delete().uri("/users/{id}", created.getId())
+                .exchange()
+                .expectStatus().isOk();
+        // Уже неактивен: строка не меняется, события нет
+        webTestClient.delete().uri("/users/{id}", created.getId())
+                .exchange()
+                .expectStatus().isOk();
+        // Отклоненная регистрация события не пишет
+        webTestClient.post().uri("/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request("reactive1", "other@test.com", Role.CUSTOMER))
+                .exchange()
+                .expectStatus().isEqualTo(409);
+
+        List<Map<String, Object>> events = databaseClient.sql("select event_type, user_id, payload from user_outbox order by id")
+                .fetch().all().collectList().block();
+        assertThat(events).extracting(event -> event.get("EVENT_TYPE"))
+                .containsExactly("USER_REGISTERED", "USER_UPDATED", "USER_DEACTIVATED");
+        assertThat(events).extracting(event -> event.get("USER_ID")).containsOnly(created.getId());
+        assertThat((String) events.get(1).get("PAYLOAD"))
+                .contains("\"phone\":\"+79990000000\"")
+                .contains("\"changedFields\":[\"phone\"]");
+    }
+
+    private UserResponse register(String username, String email, Role role) {
+        return webTestClient.post().uri("/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request(username, email, role))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(UserResponse.class)
+                .returnResult().getResponseBody();
+    }
+
+    private static UserRequest request(String username, String email, Role role) {
+        UserRequest request = new UserRequest();
+        request.setUsername(username);
+        request.setEmail(email);
+        request.setPassword("password123");
+        request.setRole(role);
+        return request;
+    }
+}